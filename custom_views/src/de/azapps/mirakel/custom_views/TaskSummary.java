@@ -21,13 +21,13 @@ package de.azapps.mirakel.custom_views;
 import android.content.Context;
 import android.graphics.drawable.GradientDrawable;
 import android.os.Build;
+import android.support.annotation.NonNull;
 import android.view.View;
 import android.widget.CheckBox;
 import android.widget.ImageView;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
 
-import com.google.common.base.Optional;
 import com.todddavies.components.progressbar.ProgressWheel;
 
 import de.azapps.mirakel.customviews.R;
@@ -37,6 +37,7 @@ import de.azapps.mirakel.helper.MirakelCommonPreferences;
 import de.azapps.mirakel.helper.TaskDialogHelpers;
 import de.azapps.mirakel.helper.TaskHelper;
 import de.azapps.mirakel.helper.ViewHelper;
+import de.azapps.mirakel.model.SaveQueue;
 import de.azapps.mirakel.model.list.ListMirakel;
 import de.azapps.mirakel.model.task.Task;
 import de.azapps.tools.Log;
@@ -103,11 +104,26 @@ public class TaskSummary extends TaskDetailSubListBase<Task> implements
 
     @Override
     public void onClick(final View v) {
-        final Optional<Task> task = this.task.toggleDone();
-        save();
-        if (task.isPresent()) {
-            this.task = task.get();
+        final Task oldTask = this.task;
+        // the task and the next occurrence of a recurring task are written in the background
+        SaveQueue.setDone(oldTask, !oldTask.isDone(), new SaveQueue.Callback<Task>() {
+            @Override
+            public void done(@NonNull final Task next) {
+                if (TaskSummary.this.task != oldTask) {
+                    // the view shows another task by now
+                    return;
+                }
+                TaskSummary.this.task = next;
+                updateDone();
+            }
+        });
+        if (this.taskChangedListner != null) {
+            this.taskChangedListner.onTaskChanged(oldTask);
         }
+        updateDone();
+    }
+
+    private void updateDone() {
         TaskSummary.this.taskRowDone.setChecked(this.task.isDone());
         updateName();
         updateProgress();
@@ -24,7 +24,6 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.Looper;
@@ -38,8 +37,8 @@ import com.google.android.apps.dashclock.api.ExtensionData;
 import com.google.common.base.Optional;
 
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -51,6 +50,7 @@ import de.azapps.mirakel.model.ModelBase;
 import de.azapps.mirakel.model.list.ListMirakel;
 import de.azapps.mirakel.model.query_builder.MirakelQueryBuilder;
 import de.azapps.mirakel.model.task.Task;
+import de.azapps.mirakel.model.task.TaskRow;
 
 public class MirakelExtension extends DashClockExtension implements
     SharedPreferences.OnSharedPreferenceChangeListener, MirakelContentObserver.ObserverCallBack {
@@ -103,9 +103,9 @@ public class MirakelExtension extends DashClockExtension implements
         final int maxTasks = SettingsHelper.getMaxTasks();
         final ListMirakel listMirakel = listMirakelOptional.get();
         final MirakelQueryBuilder mirakelQueryBuilder = listMirakel.getTasksQueryBuilder();
-        final Cursor cursor;
+        final List<TaskRow> rows;
         try {
-            cursor = mirakelQueryBuilder.query(Task.URI);
+            rows = mirakelQueryBuilder.getRows();
         } catch (final SecurityException ignored) {
             reportError(this, getString(R.string.no_permission_title), getString(R.string.no_permission));
             return;
@@ -115,7 +115,7 @@ public class MirakelExtension extends DashClockExtension implements
             return;
         }
         // Set Status
-        if (cursor.getCount() == 0 && !SettingsHelper.showEmpty()) {
+        if (rows.isEmpty() && !SettingsHelper.showEmpty()) {
             Log.d(TAG, "hide");
             publishUpdate(new ExtensionData().visible(false));
         } else {
@@ -124,21 +124,17 @@ public class MirakelExtension extends DashClockExtension implements
                 getString(R.string.due_outformat), Locale.getDefault());
 
             final String status = getResources().getQuantityString(R.plurals.status,
-                                  cursor.getCount(), cursor.getCount());
-            final String tasks[] = new String[Math.min(maxTasks, cursor.getCount())];
-            int i = 0;
-            while (cursor.moveToNext() && i < maxTasks) {
-                final Task task = MirakelQueryBuilder.cursorToObject(cursor, Task.class);
-                final Optional<Calendar> dueOptional = task.getDue();
+                                  rows.size(), rows.size());
+            final String tasks[] = new String[Math.min(maxTasks, rows.size())];
+            for (int i = 0; i < tasks.length; i++) {
+                final TaskRow task = rows.get(i);
                 final StringBuilder taskRow = new StringBuilder();
-                if (dueOptional.isPresent() && showDue) {
-                    taskRow.append(dateFormat.format(dueOptional.get().getTime())).append(": ");
+                if (task.hasDue() && showDue) {
+                    taskRow.append(dateFormat.format(task.getDue().get().getTime())).append(": ");
                 }
                 taskRow.append(task.getName());
                 tasks[i] = taskRow.toString();
-                i++;
             }
-            cursor.close();
 
             // Add click-event
             final Intent intent = new Intent(Intent.ACTION_MAIN);
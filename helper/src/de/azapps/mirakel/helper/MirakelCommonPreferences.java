@@ -115,6 +115,14 @@ public class MirakelCommonPreferences extends MirakelPreferences {
         return settings.getInt("mirakel_old_version", -1);
     }
 
+    /**
+     * @return The time in ms the widgets and notifications wait for further
+     * changes before they are updated
+     */
+    public static int getNotificationUpdateDelay() {
+        return settings.getInt("notificationUpdateDelay", 300);
+    }
+
     public static String getPhotoDefaultTitle() {
         return settings.getString("photoDefaultTitle",
                                   context.getString(R.string.photo_default_title));
@@ -19,6 +19,8 @@ public enum ErrorType {
 
     CONTACT_NO_CLIENT, NO_FILEMANAGER,
 
-    OLD_DAVDROID, TASKWARRIOR_NON_STANDARD_PRIORIRTY, TASKWARRIOR_NON_STANDARD_STATUS, TASKWARRIOR_NON_STANDARD_DATE, SPECIAL_LIST_JSON_INVALID, IMPORT_WUNDERLIST
+    OLD_DAVDROID, TASKWARRIOR_NON_STANDARD_PRIORIRTY, TASKWARRIOR_NON_STANDARD_STATUS, TASKWARRIOR_NON_STANDARD_DATE, SPECIAL_LIST_JSON_INVALID, IMPORT_WUNDERLIST,
+
+    SAVE_FAILED
 
 }
@@ -40,6 +40,7 @@ import de.azapps.mirakel.helper.MirakelPreferences;
 import de.azapps.mirakel.helper.error.ErrorReporter;
 import de.azapps.mirakel.helper.export_import.ExportImport;
 import de.azapps.mirakel.model.ModelBase;
+import de.azapps.mirakel.model.SaveQueue;
 import de.azapps.mirakel.reminders.ReminderAlarm;
 import de.azapps.mirakel.services.NotificationService;
 import de.azapps.mirakelandroid.R;
@@ -98,6 +99,7 @@ public class Mirakel extends Application {
                                             .getNextAutoBackup ();
                 if ((nextBackup != null)
                     && (nextBackup.compareTo(new GregorianCalendar()) < 0)) {
+                    SaveQueue.awaitPending ();
                     ExportImport.exportDB (that);
                     final Calendar nextB = new GregorianCalendar ();
                     nextB.add (Calendar.DATE,
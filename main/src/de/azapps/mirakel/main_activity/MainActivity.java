@@ -91,6 +91,7 @@ import de.azapps.mirakel.helper.error.ErrorType;
 import de.azapps.mirakel.main_activity.list_fragment.ListFragment;
 import de.azapps.mirakel.main_activity.task_fragment.TaskFragment;
 import de.azapps.mirakel.main_activity.tasks_fragment.TasksFragment;
+import de.azapps.mirakel.model.MirakelInternalContentProvider;
 import de.azapps.mirakel.model.account.AccountMirakel;
 import de.azapps.mirakel.model.account.AccountMirakel.ACCOUNT_TYPES;
 import de.azapps.mirakel.model.list.ListMirakel;
@@ -580,9 +581,15 @@ public class MainActivity extends FragmentActivity implements ViewPager.OnPageCh
             @Override
             public void onClick(final DialogInterface dialog,
                                 final int which) {
-                for (final Task t : normalTasks) {
-                    t.destroy();
-                }
+                MirakelInternalContentProvider.withNotificationScope(new
+                MirakelInternalContentProvider.DBTransaction() {
+                    @Override
+                    public void exec() {
+                        for (final Task t : normalTasks) {
+                            t.destroy();
+                        }
+                    }
+                });
                 updateAfterDestroy();
             }
         }
@@ -690,16 +697,22 @@ public class MainActivity extends FragmentActivity implements ViewPager.OnPageCh
             @Override
             public void onClick(final DialogInterface dialog,
                                 final int which) {
-                for (final Task t : tasks) {
-                    Optional<ListMirakel> listMirakelOptional = ListMirakel.get(list_ids.get(which));
-                    withOptional(listMirakelOptional, new OptionalUtils.Procedure<ListMirakel>() {
-                        @Override
-                        public void apply(ListMirakel input) {
-                            t.setList(input, true);
-                            t.save();
+                MirakelInternalContentProvider.withNotificationScope(new
+                MirakelInternalContentProvider.DBTransaction() {
+                    @Override
+                    public void exec() {
+                        for (final Task t : tasks) {
+                            Optional<ListMirakel> listMirakelOptional = ListMirakel.get(list_ids.get(which));
+                            withOptional(listMirakelOptional, new OptionalUtils.Procedure<ListMirakel>() {
+                                @Override
+                                public void apply(ListMirakel input) {
+                                    t.setList(input, true);
+                                    t.save();
+                                }
+                            });
                         }
-                    });
-                }
+                    }
+                });
                 /*
                  * There are 3 possibilities how to handle the post-move
                  * of a task: 1: update the currentList to the List, the
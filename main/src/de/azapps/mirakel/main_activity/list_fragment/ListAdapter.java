@@ -40,6 +40,7 @@ import de.azapps.mirakel.model.MirakelInternalContentProvider;
 import de.azapps.mirakel.model.account.AccountMirakel;
 import de.azapps.mirakel.model.account.AccountVanishedException;
 import de.azapps.mirakel.model.list.ListMirakel;
+import de.azapps.mirakel.model.list.ListTaskCounts;
 import de.azapps.mirakel.model.list.SpecialList;
 import de.azapps.mirakelandroid.R;
 
@@ -106,7 +107,7 @@ public class ListAdapter extends MirakelArrayAdapter<ListMirakel> {
         }
         holder.listRowName.setText (list.getName ());
         holder.listRowName.setTag (list);
-        holder.listRowTaskNumber.setText (String.valueOf(list.countTasks()));
+        holder.listRowTaskNumber.setText (String.valueOf(ListTaskCounts.get (this.context, list)));
         if (list.isSpecial () || !MirakelCommonPreferences.isShowAccountName ()) {
             holder.listAccount.setVisibility (View.GONE);
         } else {
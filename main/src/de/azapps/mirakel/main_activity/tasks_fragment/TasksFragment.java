@@ -64,6 +64,7 @@ import com.google.common.base.Optional;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import de.azapps.mirakel.DefenitionsModel.ExecInterfaceWithTask;
@@ -74,6 +75,7 @@ import de.azapps.mirakel.helper.TaskDialogHelpers;
 import de.azapps.mirakel.helper.error.ErrorReporter;
 import de.azapps.mirakel.helper.error.ErrorType;
 import de.azapps.mirakel.main_activity.MainActivity;
+import de.azapps.mirakel.model.MirakelInternalContentProvider;
 import de.azapps.mirakel.model.ModelBase;
 import de.azapps.mirakel.model.list.ListMirakel;
 import de.azapps.mirakel.model.list.SpecialList;
@@ -85,7 +87,7 @@ import de.azapps.mirakelandroid.R;
 import de.azapps.tools.FileUtils;
 import de.azapps.tools.Log;
 
-import static de.azapps.mirakel.model.query_builder.MirakelQueryBuilder.Operation.LIKE;
+import static de.azapps.mirakel.model.query_builder.MirakelQueryBuilder.Operation.MATCH;
 import static de.azapps.mirakel.model.query_builder.MirakelQueryBuilder.Sorting.ASC;
 
 public class TasksFragment extends Fragment implements
@@ -424,10 +426,16 @@ public class TasksFragment extends Fragment implements
                             true);
                         break;
                     case R.id.done_task:
-                        for (final Task t : TasksFragment.this.selectedTasks) {
-                            t.setDone(true);
-                            t.save();
-                        }
+                        MirakelInternalContentProvider.withNotificationScope(new
+                        MirakelInternalContentProvider.DBTransaction() {
+                            @Override
+                            public void exec() {
+                                for (final Task t : TasksFragment.this.selectedTasks) {
+                                    t.setDone(true);
+                                    t.save();
+                                }
+                            }
+                        });
                         getLoaderManager().restartLoader(0, null,
                                                          TasksFragment.this);
                         break;
@@ -662,7 +670,15 @@ public class TasksFragment extends Fragment implements
         ListMirakel list = getList();
         MirakelQueryBuilder mirakelQueryBuilder = new MirakelQueryBuilder(getActivity());
         Task.addBasicFiler(mirakelQueryBuilder);
-        mirakelQueryBuilder.and(ModelBase.NAME, LIKE, "%" + constraint + "%");
+        final String search = constraint.toString();
+        mirakelQueryBuilder.and(Task.FTS_TABLE, MATCH, search);
+        final String match = MirakelQueryBuilder.toPrefixMatch(search);
+        if (!match.isEmpty()) {
+            // rank tasks matching by name before the ones matching by content or tags
+            mirakelQueryBuilder.sort("CASE WHEN " + ModelBase.ID + " IN (SELECT docid FROM " + Task.FTS_TABLE +
+                                     " WHERE " + ModelBase.NAME + " MATCH ?) THEN 0 ELSE 1 END", ASC,
+                                     Collections.singletonList(match));
+        }
         if (list.isSpecial()) {
             MirakelQueryBuilder sortQuery = list.getWhereQueryForTasks().select(ModelBase.ID);
             mirakelQueryBuilder.sort("CASE WHEN " + ModelBase.ID + " IN (" + sortQuery.getQuery(
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Mirakel is an Android App for managing your ToDo-Lists
+ *
+ * Copyright (c) 2013-2014 Anatolij Zelenin, Georg Semmler.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package de.azapps.mirakel.model;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import de.azapps.mirakel.DefinitionsHelper.SYNC_STATE;
+import de.azapps.mirakel.model.list.ListMirakel;
+import de.azapps.mirakel.model.query_builder.MirakelQueryBuilder;
+import de.azapps.mirakel.model.query_builder.MirakelQueryBuilder.Operation;
+import de.azapps.mirakel.model.recurring.Recurring;
+import de.azapps.mirakel.model.tags.Tag;
+import de.azapps.mirakel.model.task.Task;
+import de.azapps.mirakelandroid.test.MirakelTestCase;
+import de.azapps.mirakelandroid.test.RandomHelper;
+
+/**
+ * Runs the lookups of Task, Tag, ListMirakel and TaskWarriorSync through
+ * EXPLAIN QUERY PLAN and fails if one of them scans a whole table. The
+ * selections are built like in the model classes, the tables like in
+ * MirakelInternalContentProvider.query.
+ */
+public class QueryPlanTest extends MirakelTestCase {
+    private static final String TASK_SUBTASK = Task.TABLE + " INNER JOIN " + Task.SUBTASK_TABLE
+            + " ON " + Task.TABLE + '.' + ModelBase.ID + '=' + Task.SUBTASK_TABLE + ".child_id";
+    private static final String TASK_TAG = Tag.TAG_CONNECTION_TABLE + " INNER JOIN " + Tag.TABLE
+                                           + " ON " + Tag.TAG_CONNECTION_TABLE + ".tag_id=" + Tag.TABLE + '.' + ModelBase.ID;
+    // "SCAN TABLE tasks" on older sqlite versions, "SCAN tasks" on newer ones
+    private static final Pattern SCAN = Pattern.compile("^SCAN (TABLE )?(\\S+)(.*)$");
+
+    private SQLiteDatabase db;
+    private Task task;
+    private ListMirakel list;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        RandomHelper.init(getContext());
+        db = DatabaseHelper.getDatabaseHelper(getContext()).getReadableDatabase();
+        task = RandomHelper.getRandomTask();
+        list = RandomHelper.getRandomListMirakel();
+    }
+
+    private MirakelQueryBuilder qb() {
+        return new MirakelQueryBuilder(getContext());
+    }
+
+    private void assertNoTableScan(final String from, final MirakelQueryBuilder qb) {
+        final String sql = "EXPLAIN QUERY PLAN SELECT * FROM " + from + " WHERE " + qb.getSelection();
+        final List<String> args = qb.getSelectionArguments();
+        final Cursor c = db.rawQuery(sql, args.toArray(new String[args.size()]));
+        try {
+            final int detail = c.getColumnIndex("detail");
+            while (c.moveToNext()) {
+                final Matcher scan = SCAN.matcher(c.getString(detail));
+                // a scan of an index is fine, a scan of the table is not
+                if (scan.matches() && !scan.group(3).contains(" USING ")) {
+                    fail(sql + " scans " + scan.group(2));
+                }
+            }
+        } finally {
+            c.close();
+        }
+    }
+
+    @SmallTest
+    public void testTaskByUuid() {
+        assertNoTableScan(Task.TABLE, qb().and(Task.UUID, Operation.EQ, task.getUUID())
+                          .and(DatabaseHelper.SYNC_STATE_FIELD, Operation.NOT_EQ, SYNC_STATE.DELETE.toInt()));
+    }
+
+    @SmallTest
+    public void testTasksOfList() {
+        assertNoTableScan(Task.TABLE, list.getWhereQueryForTasks());
+        assertNoTableScan(Task.TABLE, Task.addBasicFiler(qb().and(Task.DONE, Operation.EQ, false)
+                          .and(Task.LIST_ID, Operation.EQ, list)));
+    }
+
+    @SmallTest
+    public void testTasksWithReminders() {
+        assertNoTableScan(Task.TABLE, qb().and(Task.REMINDER, Operation.NOT_EQ, (String) null)
+                          .and(Task.DONE, Operation.EQ, false));
+    }
+
+    @SmallTest
+    public void testTasksToSync() {
+        final List<Long> lists = Arrays.asList(list.getId(), list.getId() + 1L);
+        assertNoTableScan(Task.TABLE, qb().and(DatabaseHelper.SYNC_STATE_FIELD, Operation.NOT_EQ,
+                                               SYNC_STATE.NOTHING.toInt()).and(Task.LIST_ID, Operation.IN, lists));
+        assertNoTableScan(Task.TABLE, qb().and(qb().and(DatabaseHelper.SYNC_STATE_FIELD, Operation.NOT_EQ,
+                                               SYNC_STATE.NOTHING.toInt()).or(DatabaseHelper.UPDATED_AT, Operation.GT, 0L))
+                          .and(Task.LIST_ID, Operation.IN, lists));
+    }
+
+    @SmallTest
+    public void testSubtasks() {
+        assertNoTableScan(TASK_SUBTASK, qb().and(Task.SUBTASK_TABLE + ".parent_id", Operation.EQ, task));
+        assertNoTableScan(Task.SUBTASK_TABLE, qb().and("parent_id", Operation.EQ, task));
+        assertNoTableScan(Task.SUBTASK_TABLE, qb().and("parent_id", Operation.EQ, task)
+                          .and("child_id", Operation.EQ, task));
+    }
+
+    @SmallTest
+    public void testTags() {
+        assertNoTableScan(TASK_TAG, qb().and(Tag.TAG_CONNECTION_TABLE + ".task_id", Operation.EQ,
+                                             task.getId()));
+        assertNoTableScan(Tag.TAG_CONNECTION_TABLE, qb().and("task_id", Operation.EQ, task)
+                          .and("tag_id", Operation.EQ, 1L));
+    }
+
+    @SmallTest
+    public void testRecurrence() {
+        assertNoTableScan(Recurring.TW_TABLE, qb().and(Recurring.CHILD, Operation.EQ, task));
+        assertNoTableScan(Recurring.TW_TABLE, qb().and(Recurring.PARENT, Operation.EQ, task)
+                          .and(Recurring.OFFSET_COUNT, Operation.EQ, 1L));
+    }
+
+    @SmallTest
+    public void testTaskWarriorSync() {
+        final List<String> uuids = Arrays.asList(task.getUUID(), RandomHelper.getRandomString());
+        assertNoTableScan(Task.TABLE, qb().and(Task.UUID, Operation.IN, uuids));
+        final List<Long> ids = Arrays.asList(task.getId(), task.getId() + 1L);
+        assertNoTableScan(TASK_TAG, qb().and(Tag.TAG_CONNECTION_TABLE + ".task_id", Operation.IN, ids));
+        assertNoTableScan(TASK_SUBTASK, qb().and(Task.SUBTASK_TABLE + ".parent_id", Operation.IN, ids));
+    }
+}
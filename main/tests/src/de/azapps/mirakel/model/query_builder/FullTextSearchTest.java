@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Mirakel is an Android App for managing your ToDo-Lists
+ *
+ * Copyright (c) 2013-2014 Anatolij Zelenin, Georg Semmler.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package de.azapps.mirakel.model.query_builder;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import de.azapps.mirakel.model.DatabaseHelper;
+import de.azapps.mirakel.model.ModelBase;
+import de.azapps.mirakel.model.query_builder.MirakelQueryBuilder.Operation;
+import de.azapps.mirakel.model.task.Task;
+import de.azapps.mirakelandroid.test.MirakelTestCase;
+import de.azapps.mirakelandroid.test.RandomHelper;
+import de.azapps.tools.Log;
+
+/**
+ * Benchmark of the full text search against LIKE on 50k synthetic tasks
+ */
+public class FullTextSearchTest extends MirakelTestCase {
+    private static final String TAG = "FullTextSearchTest";
+    private static final int TASKS = 50000;
+    private static final int RUNS = 5;
+    private static final String[] WORDS = {"meeting", "shopping", "dentist", "report", "birthday",
+                                           "invoice", "garden", "review", "holiday", "laundry"
+                                          };
+
+    private SQLiteDatabase db;
+    private long maxId;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        RandomHelper.init(getContext());
+        db = DatabaseHelper.getDatabaseHelper(getContext()).getWritableDatabase();
+        final Cursor c = db.rawQuery("SELECT MAX(" + ModelBase.ID + ") FROM " + Task.TABLE, null);
+        maxId = c.moveToFirst() ? c.getLong(0) : 0L;
+        c.close();
+        // insert directly, the triggers fill the index like for any other task
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < TASKS; i++) {
+                final Task task = new Task(WORDS[i % WORDS.length] + ' ' + RandomHelper.getRandomString(),
+                                           RandomHelper.getRandomListMirakel());
+                task.setContent(RandomHelper.getRandomString() + ' ' + WORDS[(i * 7) % WORDS.length]);
+                final ContentValues cv = task.getContentValues();
+                cv.remove(ModelBase.ID);
+                db.insert(Task.TABLE, null, cv);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        db.delete(Task.TABLE, ModelBase.ID + ">?", new String[] {String.valueOf(maxId)});
+        super.tearDown();
+    }
+
+    private long time(final MirakelQueryBuilder qb, final long expected) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            final long start = SystemClock.elapsedRealtime();
+            final long count = qb.count(Task.URI);
+            best = Math.min(best, SystemClock.elapsedRealtime() - start);
+            if (expected >= 0L) {
+                assertTrue("found only " + count + " of " + expected + " tasks", count >= expected);
+            }
+        }
+        return best;
+    }
+
+    @LargeTest
+    public void testMatchAgainstLike() {
+        for (final String word : WORDS) {
+            final long expected = TASKS / WORDS.length;
+            final long like = time(new MirakelQueryBuilder(getContext()).and(ModelBase.NAME, Operation.LIKE,
+                                   '%' + word + '%'), expected);
+            final long match = time(new MirakelQueryBuilder(getContext()).and(ModelBase.NAME, Operation.MATCH,
+                                    word), expected);
+            final long prefix = time(new MirakelQueryBuilder(getContext()).and(Task.FTS_TABLE, Operation.MATCH,
+                                     word.substring(0, 4)), expected);
+            Log.i(TAG, word + ": LIKE " + like + "ms, MATCH " + match + "ms, prefix MATCH over name, content and tags "
+                  + prefix + "ms");
+        }
+    }
+
+    @LargeTest
+    public void testRareWord() {
+        final long like = time(new MirakelQueryBuilder(getContext()).and(ModelBase.NAME, Operation.LIKE,
+                               "%qqqqqqqq%"), -1L);
+        final long match = time(new MirakelQueryBuilder(getContext()).and(ModelBase.NAME, Operation.MATCH,
+                                "qqqqqqqq"), -1L);
+        Log.i(TAG, "rare word: LIKE " + like + "ms, MATCH " + match + "ms");
+        // the index finds nothing without looking at every row
+        assertTrue("MATCH took " + match + "ms, LIKE " + like + "ms", match <= like);
+    }
+}
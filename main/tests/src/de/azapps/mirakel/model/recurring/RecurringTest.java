@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Mirakel is an Android App for managing your ToDo-Lists
+ *
+ * Copyright (c) 2013-2014 Anatolij Zelenin, Georg Semmler.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package de.azapps.mirakel.model.recurring;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import junit.framework.TestCase;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+public class RecurringTest extends TestCase {
+    // a fixed time zone, a time in a daylight saving gap is moved by the steps
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private final Random random = new Random(42L);
+
+    /**
+     * How the next date was found before, one interval at a time
+     */
+    private static Calendar addStepByStep(final Calendar c, final Calendar now,
+                                          final int months, final int years) {
+        do {
+            c.add(Calendar.MONTH, months);
+            c.add(Calendar.YEAR, years);
+        } while (c.before(now));
+        return c;
+    }
+
+    private static Calendar calendar(final int year, final int month, final int day) {
+        final Calendar c = new GregorianCalendar(UTC);
+        c.clear();
+        c.set(year, month, day, 12, 30);
+        return c;
+    }
+
+    private Calendar randomCalendar() {
+        final Calendar c = new GregorianCalendar(UTC);
+        c.clear();
+        // mostly the end of a month, that is where the day is clamped
+        final int day = random.nextBoolean() ? (28 + random.nextInt(4)) : (1 + random.nextInt(31));
+        c.set(1970 + random.nextInt(150), random.nextInt(12), 1, random.nextInt(24),
+              random.nextInt(60), random.nextInt(60));
+        c.set(Calendar.DAY_OF_MONTH, Math.min(day, c.getActualMaximum(Calendar.DAY_OF_MONTH)));
+        return c;
+    }
+
+    private void check(final Calendar start, final Calendar now, final int months, final int years) {
+        final Calendar expected = addStepByStep((Calendar) start.clone(), now, months, years);
+        final Calendar actual = (Calendar) start.clone();
+        Recurring.addMonthsAndYears(actual, now, months, years);
+        assertEquals("start " + start.getTime() + " now " + now.getTime() + " every " + months
+                     + " months and " + years + " years", expected.getTimeInMillis(),
+                     actual.getTimeInMillis());
+    }
+
+    @SmallTest
+    public void testEndOfMonthIsClamped() {
+        final Calendar start = calendar(2015, Calendar.JANUARY, 31);
+        final Calendar now = calendar(2015, Calendar.JUNE, 1);
+        final Calendar next = (Calendar) start.clone();
+        Recurring.addMonthsAndYears(next, now, 1, 0);
+        assertEquals(calendar(2015, Calendar.JUNE, 28).getTimeInMillis(), next.getTimeInMillis());
+        check(start, now, 1, 0);
+    }
+
+    @SmallTest
+    public void testLeapDay() {
+        check(calendar(2000, Calendar.FEBRUARY, 29), calendar(2150, Calendar.MARCH, 1), 0, 4);
+        check(calendar(2000, Calendar.FEBRUARY, 29), calendar(2150, Calendar.MARCH, 1), 0, 1);
+        check(calendar(2000, Calendar.FEBRUARY, 29), calendar(2050, Calendar.MARCH, 1), 12, 0);
+    }
+
+    @SmallTest
+    public void testNowBeforeStart() {
+        check(calendar(2015, Calendar.MARCH, 31), calendar(2010, Calendar.MARCH, 1), 1, 0);
+    }
+
+    @SmallTest
+    public void testRandomDates() {
+        for (int i = 0; i < 10000; i++) {
+            final Calendar start = randomCalendar();
+            final Calendar now = (Calendar) start.clone();
+            now.setTimeInMillis(start.getTimeInMillis() + ((long) (random.nextDouble() * 200L * 365L
+                                * 24L * 60L * 60L * 1000L)) - (30L * 24L * 60L * 60L * 1000L));
+            final int years = random.nextInt(4);
+            final int months = ((years == 0) ? 1 : 0) + random.nextInt(15);
+            check(start, now, months, years);
+        }
+    }
+}
@@ -21,16 +21,26 @@ package de.azapps.mirakel.helper;
 
 import android.content.ContentValues;
 import android.content.Context;
-import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
 
+import com.google.common.base.Optional;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import de.azapps.mirakel.DefinitionsHelper;
 import de.azapps.mirakel.model.MirakelInternalContentProvider;
+import de.azapps.mirakel.model.ModelBase;
 import de.azapps.mirakel.model.list.ListMirakel;
+import de.azapps.mirakel.model.query_builder.MirakelQueryBuilder;
+import de.azapps.mirakel.model.query_builder.MirakelQueryBuilder.Sorting;
 import de.azapps.mirakel.model.task.Task;
 import de.azapps.mirakel.model.task.TaskDeserializer;
 import de.azapps.tools.Log;
@@ -38,12 +48,45 @@ import de.azapps.tools.OptionalUtils;
 
 import static de.azapps.tools.OptionalUtils.withOptional;
 
+/**
+ * The undo history is an append-only journal in the undo_history table.
+ *
+ * The newest entries are kept in memory, so logging and undoing never wait
+ * for the database. The journal is written on a background thread in the
+ * order of the calls; every append inserts one row and drops the rows which
+ * fell out of the window of MirakelCommonPreferences.getUndoNumber().
+ */
 public class UndoHistory {
     private static final short LIST = 1;
     private static String TAG = "UndoHistory";
     private static final short TASK = 0;
+    // only used to migrate the old log from the preferences
     public static final String UNDO = "OLD";
 
+    public static final String TABLE = "undo_history";
+    public static final String TYPE = "type";
+    public static final String DATA = "data";
+
+    private static final ExecutorService journalExecutor = Executors.newSingleThreadExecutor();
+
+    // newest entry first
+    private static final Deque<Entry> entries = new ArrayDeque<>();
+    private static boolean loaded = false;
+    private static long lastSeq = 0L;
+
+    private static class Entry {
+        final long seq;
+        final short type;
+        @NonNull
+        final String data;
+
+        Entry(final long seq, final short type, @NonNull final String data) {
+            this.seq = seq;
+            this.type = type;
+            this.data = data;
+        }
+    }
+
     public static void logCreate(final ListMirakel newList, final Context ctx) {
         updateLog(LIST, String.valueOf(newList.getId()), ctx);
     }
@@ -56,84 +99,79 @@ public class UndoHistory {
     }
 
     public static void undoLast(final Context ctx) {
-        final String last = MirakelCommonPreferences.getFromLog(0);
-        if (last != null && !last.isEmpty()) {
-            final short type = Short.parseShort(String.valueOf(last.charAt(0)));
-            if (last.charAt(1) != '{') {
-                try {
-                    final long id = Long.parseLong(last.substring(1));
-                    switch (type) {
-                    case TASK:
-                        withOptional(Task.get(id), new OptionalUtils.Procedure<Task>() {
-                            @Override
-                            public void apply(Task input) {
-                                input.destroy(true);
-                            }
-                        });
-                        break;
-                    case LIST:
-                        withOptional(ListMirakel.get(id), new OptionalUtils.Procedure<ListMirakel>() {
-                            @Override
-                            public void apply(ListMirakel input) {
-                                input.destroy(true);
-                            }
-                        });
-                        break;
-                    default:
-                        Log.wtf(TAG, "unkown Type");
-                        break;
-                    }
-                } catch (NumberFormatException e) {
-                    Log.e(TAG, "cannot parse String", e);
-                }
-            } else {
-                final JsonObject json = new JsonParser().parse(
-                    last.substring(1)).getAsJsonObject();
+        final Optional<Entry> entry = pop(ctx);
+        if (!entry.isPresent()) {
+            return;
+        }
+        final short type = entry.get().type;
+        final String last = entry.get().data;
+        if (last.charAt(0) != '{') {
+            try {
+                final long id = Long.parseLong(last);
                 switch (type) {
                 case TASK:
-                    final Gson gson = new GsonBuilder().registerTypeAdapter(
-                        Task.class, new TaskDeserializer()).create();
-                    final Task t = gson.fromJson(json, Task.class);
-                    if (t.getId() != Task.INVALID_ID) {
-                        t.save(false);
-                        break;
-                    }
-                    try {
-                        t.create(true, true);
-                    } catch (DefinitionsHelper.NoSuchListException e) {
-                        Log.w(TAG, "cannot restore task, list is missing", e);
-                    }
-
+                    withOptional(Task.get(id), new OptionalUtils.Procedure<Task>() {
+                        @Override
+                        public void apply(Task input) {
+                            input.destroy(true);
+                        }
+                    });
                     break;
                 case LIST:
-                    final ListMirakel l = ListMirakel.unsafeParseJson(json);
-                    if (l.getId() != ListMirakel.INVALID_ID) {
-                        l.save(false);
-                    } else {
-                        try {
-                            final ContentValues cv = l.getContentValues();
-                            cv.remove(ListMirakel.ID);
-                            ctx.getContentResolver()
-                            .insert(MirakelInternalContentProvider.LIST_URI,
-                                    cv);
-                        } catch (final RuntimeException e) {
-                            Log.e(TAG, "cannot restore List", e);
+                    withOptional(ListMirakel.get(id), new OptionalUtils.Procedure<ListMirakel>() {
+                        @Override
+                        public void apply(ListMirakel input) {
+                            input.destroy(true);
                         }
-                    }
+                    });
                     break;
                 default:
-                    Log.wtf(TAG, "unknown Type");
+                    Log.wtf(TAG, "unkown Type");
                     break;
                 }
+            } catch (NumberFormatException e) {
+                Log.e(TAG, "cannot parse String", e);
+            }
+        } else {
+            final JsonObject json = new JsonParser().parse(
+                last).getAsJsonObject();
+            switch (type) {
+            case TASK:
+                final Gson gson = new GsonBuilder().registerTypeAdapter(
+                    Task.class, new TaskDeserializer()).create();
+                final Task t = gson.fromJson(json, Task.class);
+                if (t.getId() != Task.INVALID_ID) {
+                    t.save(false);
+                    break;
+                }
+                try {
+                    t.create(true, true);
+                } catch (DefinitionsHelper.NoSuchListException e) {
+                    Log.w(TAG, "cannot restore task, list is missing", e);
+                }
+
+                break;
+            case LIST:
+                final ListMirakel l = ListMirakel.unsafeParseJson(json);
+                if (l.getId() != ListMirakel.INVALID_ID) {
+                    l.save(false);
+                } else {
+                    try {
+                        final ContentValues cv = l.getContentValues();
+                        cv.remove(ListMirakel.ID);
+                        ctx.getContentResolver()
+                        .insert(MirakelInternalContentProvider.LIST_URI,
+                                cv);
+                    } catch (final RuntimeException e) {
+                        Log.e(TAG, "cannot restore List", e);
+                    }
+                }
+                break;
+            default:
+                Log.wtf(TAG, "unknown Type");
+                break;
             }
         }
-        final SharedPreferences.Editor editor = MirakelPreferences.getEditor();
-        for (int i = 0; i < MirakelCommonPreferences.getUndoNumber(); i++) {
-            final String old = MirakelCommonPreferences.getFromLog(i + 1);
-            editor.putString(UNDO + i, old);
-        }
-        editor.putString(UNDO + MirakelCommonPreferences.getUndoNumber(), "");
-        editor.commit();
     }
 
     public static void updateLog(final ListMirakel listMirakel,
@@ -149,14 +187,26 @@ public class UndoHistory {
             Log.e(TAG, "context is null");
             return;
         }
-        // Log.d(TAG, json);
-        final SharedPreferences.Editor editor = MirakelPreferences.getEditor();
-        for (int i = MirakelCommonPreferences.getUndoNumber(); i > 0; i--) {
-            final String old = MirakelCommonPreferences.getFromLog(i - 1);
-            editor.putString(UNDO + i, old);
+        final Context appContext = ctx.getApplicationContext();
+        final Entry entry;
+        final long oldest;
+        synchronized (UndoHistory.class) {
+            load(appContext);
+            entry = new Entry(++lastSeq, type, json);
+            entries.addFirst(entry);
+            oldest = trimEntries();
         }
-        editor.putString(UNDO + 0, type + json);
-        editor.commit();
+        journalExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final ContentValues cv = new ContentValues();
+                cv.put(ModelBase.ID, entry.seq);
+                cv.put(TYPE, entry.type);
+                cv.put(DATA, entry.data);
+                appContext.getContentResolver().insert(MirakelInternalContentProvider.UNDO_HISTORY_URI, cv);
+                deleteOlderThan(appContext, oldest);
+            }
+        });
     }
 
     public static void updateLog(final Task task, final Context ctx) {
@@ -165,4 +215,81 @@ public class UndoHistory {
         }
     }
 
+    /**
+     * Drop the entries which do not fit into the undo number anymore
+     */
+    public static void trim(final Context ctx) {
+        final Context appContext = ctx.getApplicationContext();
+        final long oldest;
+        synchronized (UndoHistory.class) {
+            load(appContext);
+            oldest = trimEntries();
+        }
+        journalExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                deleteOlderThan(appContext, oldest);
+            }
+        });
+    }
+
+    @NonNull
+    private static Optional<Entry> pop(final Context ctx) {
+        final Context appContext = ctx.getApplicationContext();
+        final Entry entry;
+        synchronized (UndoHistory.class) {
+            load(appContext);
+            entry = entries.pollFirst();
+        }
+        if (entry == null) {
+            return Optional.absent();
+        }
+        journalExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                appContext.getContentResolver().delete(MirakelInternalContentProvider.UNDO_HISTORY_URI,
+                                                       ModelBase.ID + "=?", new String[] {String.valueOf(entry.seq)});
+            }
+        });
+        return Optional.of(entry);
+    }
+
+    /**
+     * Read the newest entries of the journal, this happens once per process
+     */
+    private static void load(final Context ctx) {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        final Cursor cursor = new MirakelQueryBuilder(ctx).select(ModelBase.ID, TYPE, DATA)
+        .sort(ModelBase.ID, Sorting.DESC).query(MirakelInternalContentProvider.UNDO_HISTORY_URI);
+        try {
+            final int max = MirakelCommonPreferences.getUndoNumber();
+            while (cursor.moveToNext() && (entries.size() < max)) {
+                entries.addLast(new Entry(cursor.getLong(0), cursor.getShort(1), cursor.getString(2)));
+            }
+        } finally {
+            cursor.close();
+        }
+        if (!entries.isEmpty()) {
+            lastSeq = entries.peekFirst().seq;
+        }
+    }
+
+    /**
+     * @return The seq of the oldest entry which is kept
+     */
+    private static long trimEntries() {
+        while (entries.size() > MirakelCommonPreferences.getUndoNumber()) {
+            entries.removeLast();
+        }
+        return entries.isEmpty() ? (lastSeq + 1L) : entries.peekLast().seq;
+    }
+
+    private static void deleteOlderThan(final Context ctx, final long seq) {
+        ctx.getContentResolver().delete(MirakelInternalContentProvider.UNDO_HISTORY_URI,
+                                        ModelBase.ID + "<?", new String[] {String.valueOf(seq)});
+    }
+
 }
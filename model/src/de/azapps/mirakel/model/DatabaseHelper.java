@@ -30,6 +30,7 @@ import android.database.sqlite.SQLiteOpenHelper;
 import android.graphics.Color;
 import android.net.Uri;
 import android.preference.PreferenceManager;
+import android.text.TextUtils;
 
 import com.google.common.base.Optional;
 
@@ -56,6 +57,7 @@ import de.azapps.mirakel.helper.Helpers;
 import de.azapps.mirakel.helper.MirakelCommonPreferences;
 import de.azapps.mirakel.helper.MirakelModelPreferences;
 import de.azapps.mirakel.helper.MirakelPreferences;
+import de.azapps.mirakel.helper.UndoHistory;
 import de.azapps.mirakel.helper.export_import.ExportImport;
 import de.azapps.mirakel.model.account.AccountMirakel;
 import de.azapps.mirakel.model.account.AccountMirakel.ACCOUNT_TYPES;
@@ -79,7 +81,7 @@ import static com.google.common.base.Optional.fromNullable;
 public class DatabaseHelper extends SQLiteOpenHelper {
 
     public static final String CREATED_AT = "created_at";
-    public static final int DATABASE_VERSION = 47;
+    public static final int DATABASE_VERSION = 52;
 
     private static final String TAG = "DatabaseHelper";
     public static final String UPDATED_AT = "updated_at";
@@ -1002,11 +1004,155 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         case 46:
             db.execSQL("UPDATE " + Task.TABLE + " SET " + UPDATED_AT + " =strftime('%s','now') WHERE " +
                        UPDATED_AT + ">strftime('%s','now');");
+        case 47:
+            createIndexes(db);
+        case 48:
+            createDueDaySort(db);
+        case 49:
+            createFullTextIndex(db);
+        case 50:
+            createUndoHistory(db);
+            moveUndoHistory(db);
+        case 51:
+            createListSortIndex(db);
         default:
             break;
         }
     }
 
+    /**
+     * Create the secondary indexes used by the hot queries (task lists,
+     * sync, reminders, tags, subtasks and taskwarrior recurrence)
+     */
+    private static void createIndexes(final SQLiteDatabase db) {
+        createIndex(db, Task.TABLE, "list_done", Task.LIST_ID, Task.DONE);
+        createIndex(db, Task.TABLE, "uuid", Task.UUID);
+        createIndex(db, Task.TABLE, "sync_state", SYNC_STATE_FIELD);
+        createIndex(db, Task.TABLE, "done_reminder", Task.DONE, Task.REMINDER);
+        createIndex(db, Tag.TAG_CONNECTION_TABLE, "task_tag", "task_id", "tag_id");
+        createIndex(db, Task.SUBTASK_TABLE, "parent_child", "parent_id", "child_id");
+        createIndex(db, Task.SUBTASK_TABLE, "child", "child_id");
+        createIndex(db, Recurring.TW_TABLE, "parent", "parent");
+        createIndex(db, Recurring.TW_TABLE, "child", "child");
+    }
+
+    /**
+     * The local day of the due date as sortable string, tasks without due
+     * are sorted to the end
+     */
+    private static String getDueDaySort(final String due) {
+        return "CASE WHEN " + due + " IS NULL THEN '9999-12-31' ELSE date(" + due
+               + ",'unixepoch','localtime') END";
+    }
+
+    /**
+     * Materialize the day of the due date, so sorting by due can use an index
+     */
+    private static void createDueDaySort(final SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + Task.TABLE + " ADD COLUMN " + Task.DUE_DAY_SORT + " TEXT;");
+        updateDueDaySort(db);
+        db.execSQL("CREATE TRIGGER tasks_due_day_sort_insert_trigger AFTER INSERT ON " + Task.TABLE + "\n"
+                   + "BEGIN\n"
+                   + "UPDATE " + Task.TABLE + " SET " + Task.DUE_DAY_SORT + '=' + getDueDaySort("new." + Task.DUE)
+                   + " WHERE " + ModelBase.ID + "=new." + ModelBase.ID + ";\n"
+                   + "END;");
+        db.execSQL("CREATE TRIGGER tasks_due_day_sort_update_trigger AFTER UPDATE OF " + Task.DUE + " ON "
+                   + Task.TABLE + "\n"
+                   + "BEGIN\n"
+                   + "UPDATE " + Task.TABLE + " SET " + Task.DUE_DAY_SORT + '=' + getDueDaySort("new." + Task.DUE)
+                   + " WHERE " + ModelBase.ID + "=new." + ModelBase.ID + ";\n"
+                   + "END;");
+        createIndex(db, Task.TABLE, "done_due_prio", Task.DONE, Task.DUE_DAY_SORT, Task.PRIORITY + " DESC");
+        createIndex(db, Task.TABLE, "prio_due", Task.PRIORITY + " DESC", Task.DUE_DAY_SORT);
+    }
+
+    /**
+     * The task list of a normal list filters by list_id and sorts by done,
+     * due_day_sort and priority (see ListMirakel.addSortBy), so this index
+     * serves the where and the order by without a temporary b-tree. The
+     * indexes from createDueDaySort only help the special lists. list_done
+     * is a prefix of the new index and not needed anymore.
+     */
+    private static void createListSortIndex(final SQLiteDatabase db) {
+        createIndex(db, Task.TABLE, "list_done_due_prio", Task.LIST_ID, Task.DONE, Task.DUE_DAY_SORT,
+                    Task.PRIORITY + " DESC");
+        db.execSQL("DROP INDEX IF EXISTS " + Task.TABLE + "_list_done_index;");
+    }
+
+    /**
+     * Recompute the due day of all tasks, needed after the timezone changed
+     */
+    public static void updateDueDaySort(final SQLiteDatabase db) {
+        db.execSQL("UPDATE " + Task.TABLE + " SET " + Task.DUE_DAY_SORT + '=' + getDueDaySort(Task.DUE) + ';');
+    }
+
+    /**
+     * The names of all tags of a task separated by spaces
+     */
+    private static String getTagNames(final String taskId) {
+        return "(SELECT group_concat(" + Tag.TABLE + '.' + ModelBase.NAME + ",' ') FROM "
+               + Tag.TAG_CONNECTION_TABLE + " INNER JOIN " + Tag.TABLE + " ON " + Tag.TABLE + '.'
+               + ModelBase.ID + "=" + Tag.TAG_CONNECTION_TABLE + ".tag_id WHERE "
+               + Tag.TAG_CONNECTION_TABLE + ".task_id=" + taskId + ')';
+    }
+
+    /**
+     * Create a fts4 table over the name, content and tags of the tasks. The
+     * docid of the index is the id of the task, the triggers keep it in sync.
+     */
+    private static void createFullTextIndex(final SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE " + Task.FTS_TABLE + " USING fts4(" + ModelBase.NAME + ", "
+                   + Task.CONTENT + ", " + Task.FTS_TAGS + ");");
+        db.execSQL("INSERT INTO " + Task.FTS_TABLE + " (docid, " + ModelBase.NAME + ", " + Task.CONTENT
+                   + ", " + Task.FTS_TAGS + ") SELECT " + ModelBase.ID + ", " + ModelBase.NAME + ", "
+                   + Task.CONTENT + ", " + getTagNames(Task.TABLE + '.' + ModelBase.ID) + " FROM "
+                   + Task.TABLE + ';');
+        // tasks
+        db.execSQL("CREATE TRIGGER tasks_fts_insert_trigger AFTER INSERT ON " + Task.TABLE + "\n"
+                   + "BEGIN\n"
+                   + "INSERT INTO " + Task.FTS_TABLE + " (docid, " + ModelBase.NAME + ", " + Task.CONTENT
+                   + ", " + Task.FTS_TAGS + ") VALUES (new." + ModelBase.ID + ", new." + ModelBase.NAME
+                   + ", new." + Task.CONTENT + ", '');\n"
+                   + "END;");
+        db.execSQL("CREATE TRIGGER tasks_fts_update_trigger AFTER UPDATE OF " + ModelBase.NAME + ", "
+                   + Task.CONTENT + " ON " + Task.TABLE + "\n"
+                   + "BEGIN\n"
+                   + "UPDATE " + Task.FTS_TABLE + " SET " + ModelBase.NAME + "=new." + ModelBase.NAME + ", "
+                   + Task.CONTENT + "=new." + Task.CONTENT + " WHERE docid=new." + ModelBase.ID + ";\n"
+                   + "END;");
+        db.execSQL("CREATE TRIGGER tasks_fts_delete_trigger AFTER DELETE ON " + Task.TABLE + "\n"
+                   + "BEGIN\n"
+                   + "DELETE FROM " + Task.FTS_TABLE + " WHERE docid=old." + ModelBase.ID + ";\n"
+                   + "END;");
+        // tags of a task
+        db.execSQL("CREATE TRIGGER task_tag_fts_insert_trigger AFTER INSERT ON " + Tag.TAG_CONNECTION_TABLE
+                   + "\n"
+                   + "BEGIN\n"
+                   + "UPDATE " + Task.FTS_TABLE + " SET " + Task.FTS_TAGS + '=' + getTagNames("new.task_id")
+                   + " WHERE docid=new.task_id;\n"
+                   + "END;");
+        db.execSQL("CREATE TRIGGER task_tag_fts_delete_trigger AFTER DELETE ON " + Tag.TAG_CONNECTION_TABLE
+                   + "\n"
+                   + "BEGIN\n"
+                   + "UPDATE " + Task.FTS_TABLE + " SET " + Task.FTS_TAGS + '=' + getTagNames("old.task_id")
+                   + " WHERE docid=old.task_id;\n"
+                   + "END;");
+        // renamed tags
+        db.execSQL("CREATE TRIGGER tag_fts_update_trigger AFTER UPDATE OF " + ModelBase.NAME + " ON "
+                   + Tag.TABLE + "\n"
+                   + "BEGIN\n"
+                   + "UPDATE " + Task.FTS_TABLE + " SET " + Task.FTS_TAGS + '=' + getTagNames("docid")
+                   + " WHERE docid IN (SELECT task_id FROM " + Tag.TAG_CONNECTION_TABLE + " WHERE tag_id=new."
+                   + ModelBase.ID + ");\n"
+                   + "END;");
+    }
+
+    private static void createIndex(final SQLiteDatabase db, final String table, final String name,
+                                    final String... columns) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + table + '_' + name + "_index ON " + table + " ("
+                   + TextUtils.join(",", columns) + ");");
+    }
+
     private void updateSpecialLists(final SQLiteDatabase db) {
         final Cursor updateSpecial = db.query(SpecialList.TABLE, new String[] {SpecialList.WHERE_QUERY, ModelBase.ID},
                                               null,
@@ -1126,6 +1272,39 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     }
 
 
+    /**
+     * The undo history is an append-only journal, the rows are ordered by
+     * their id
+     */
+    private static void createUndoHistory(final SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + UndoHistory.TABLE + " (" + ModelBase.ID
+                   + " INTEGER PRIMARY KEY, " + UndoHistory.TYPE + " INTEGER NOT NULL, "
+                   + UndoHistory.DATA + " TEXT NOT NULL);");
+    }
+
+    /**
+     * Move the old undo log from the preferences into the journal
+     */
+    private void moveUndoHistory(final SQLiteDatabase db) {
+        final SharedPreferences settings = PreferenceManager.getDefaultSharedPreferences(context);
+        final SharedPreferences.Editor editor = settings.edit();
+        // OLD0 is the newest entry
+        long seq = MirakelCommonPreferences.getUndoNumber() + 1;
+        for (int i = 0; i <= MirakelCommonPreferences.getUndoNumber(); i++, seq--) {
+            final String old = settings.getString(UndoHistory.UNDO + i, "");
+            editor.remove(UndoHistory.UNDO + i);
+            if (old.length() < 2) {
+                continue;
+            }
+            final ContentValues cv = new ContentValues();
+            cv.put(ModelBase.ID, seq);
+            cv.put(UndoHistory.TYPE, Character.getNumericValue(old.charAt(0)));
+            cv.put(UndoHistory.DATA, old.substring(1));
+            db.insert(UndoHistory.TABLE, null, cv);
+        }
+        editor.commit();
+    }
+
     private void updateSettings() {
         final SharedPreferences settings = PreferenceManager.getDefaultSharedPreferences(context);
         settingsIntToLong(settings, "defaultAccountID");
@@ -26,10 +26,12 @@ import android.database.ContentObserver;
 import android.net.Uri;
 import android.os.Handler;
 import android.support.annotation.NonNull;
+import android.text.TextUtils;
 
 import com.google.common.base.Optional;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import de.azapps.tools.Log;
@@ -99,12 +101,19 @@ public class MirakelContentObserver extends ContentObserver {
                 Log.d(TAG, "uri claims to be hierarchical but is not, no problem, eat it", e);
             }
         }
-        if (doWhat.containsKey(uri)) {
-            final ObserverCallBack doSomething = doWhat.get(uri);
+        Uri registeredUri = uri;
+        if (id.isPresent() && !doWhat.containsKey(uri)) {
+            // the change of a single row, we are registered for its table
+            final List<String> segments = uri.getPathSegments();
+            registeredUri = uri.buildUpon().path(TextUtils.join("/", segments.subList(0,
+                                                 segments.size() - 1))).build();
+        }
+        if (doWhat.containsKey(registeredUri)) {
+            final ObserverCallBack doSomething = doWhat.get(registeredUri);
             if (id.isPresent() && (doSomething != null)) {
                 doSomething.handleChange(id.get());
-            } else {
-                doWhat.get(uri).handleChange();
+            } else if (doSomething != null) {
+                doSomething.handleChange();
             }
         } else {
             Log.wtf(TAG, "no callback found for this uri");
@@ -25,42 +25,55 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import android.accounts.Account;
 import android.accounts.AccountManager;
 import android.accounts.OnAccountsUpdateListener;
 import android.annotation.TargetApi;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
 import android.os.Build;
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
 
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.HashMultiset;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multiset;
 
 import de.azapps.mirakel.DefinitionsHelper;
+import de.azapps.mirakel.helper.UndoHistory;
 import de.azapps.mirakel.model.account.AccountMirakel;
 import de.azapps.mirakel.model.file.FileMirakel;
+import de.azapps.mirakel.model.list.ListCache;
 import de.azapps.mirakel.model.list.ListMirakel;
 import de.azapps.mirakel.model.list.SpecialList;
+import de.azapps.mirakel.model.list.SpecialListWhereCache;
 import de.azapps.mirakel.model.recurring.Recurring;
 import de.azapps.mirakel.model.semantic.Semantic;
 import de.azapps.mirakel.model.tags.Tag;
 import de.azapps.mirakel.model.task.Task;
+import de.azapps.mirakel.services.NotificationService;
 import de.azapps.tools.Log;
 
 public class MirakelInternalContentProvider extends ContentProvider implements
@@ -103,6 +116,8 @@ public class MirakelInternalContentProvider extends ContentProvider implements
     public static final String UPDATE_LIST_MOVE_DOWN = "list_move_down";
     public static final String UPDATE_LIST_MOVE_UP = "list_move_up";
     public static final String UPDATE_LIST_FIX_RGT = "list_fix_rgt";
+    public static final String UPDATE_DUE_DAY_SORT = "update_due_day_sort";
+    public static final String TASK_COUNT_BY_LIST = "task_count_by_list";
 
 
     public static final String CALDAV_INSTANCE_PROPERTIES = "caldav_instance_properties";
@@ -141,6 +156,9 @@ public class MirakelInternalContentProvider extends ContentProvider implements
     public static final Uri UPDATE_LIST_MOVE_DOWN_URI = getUri(UPDATE_LIST_MOVE_DOWN);
     public static final Uri UPDATE_LIST_MOVE_UP_URI = getUri(UPDATE_LIST_MOVE_UP);
     public static final Uri UPDATE_LIST_FIX_RGT_URI = getUri(UPDATE_LIST_FIX_RGT);
+    public static final Uri UPDATE_DUE_DAY_SORT_URI = getUri(UPDATE_DUE_DAY_SORT);
+    public static final Uri TASK_COUNT_BY_LIST_URI = getUri(TASK_COUNT_BY_LIST);
+    public static final Uri UNDO_HISTORY_URI = getUri(UndoHistory.TABLE);
 
     private static final Map<String, String> views = new HashMap<>();
     static {
@@ -159,6 +177,8 @@ public class MirakelInternalContentProvider extends ContentProvider implements
         notifyUris.put(UPDATE_LIST_MOVE_DOWN_URI, LIST_URI);
         notifyUris.put(UPDATE_LIST_MOVE_UP_URI, LIST_URI);
         notifyUris.put(UPDATE_LIST_FIX_RGT_URI, LIST_URI);
+        notifyUris.put(UPDATE_DUE_DAY_SORT_URI, TASK_URI);
+        notifyUris.put(TASK_COUNT_BY_LIST_URI, TASK_URI);
         notifyUris.put(TASK_URI, LIST_URI);
         notifyUris.put(CALDAV_LISTS_URI, LIST_URI);
         notifyUris.put(LIST_URI, LIST_WITH_SPECIAL_URI);
@@ -167,18 +187,45 @@ public class MirakelInternalContentProvider extends ContentProvider implements
     private static final List<String> BLACKLISTED_FOR_MODIFICATIONS = Arrays
             .asList("", TASK_RECURRING_TW_CHILD_JOIN, TASK_RECURRING_TW_PARENT_JOIN, TASK_SUBTASK_JOIN,
                     TASK_TAG_JOIN,
-                    LISTS_SORT_JOIN, LIST_WITH_SPECIAL);
+                    LISTS_SORT_JOIN, LIST_WITH_SPECIAL, TASK_COUNT_BY_LIST);
     private static final List<String> BLACKLISTED_FOR_DELETION = Arrays
             .asList("", TASK_RECURRING_TW_CHILD_JOIN, TASK_RECURRING_TW_PARENT_JOIN, TASK_SUBTASK_JOIN,
                     TASK_TAG_JOIN,
                     LISTS_SORT_JOIN, UPDATE_LIST_MOVE_DOWN, UPDATE_LIST_MOVE_UP, UPDATE_LIST_ORDER_JOIN,
-                    UPDATE_LIST_FIX_RGT, LIST_WITH_SPECIAL);
+                    UPDATE_LIST_FIX_RGT, UPDATE_DUE_DAY_SORT, LIST_WITH_SPECIAL, TASK_COUNT_BY_LIST);
 
     private static final List<String> BLACKLISTED_FOR_QUERY = Arrays.asList(UPDATE_LIST_MOVE_DOWN,
-            UPDATE_LIST_MOVE_UP, UPDATE_LIST_ORDER_JOIN, UPDATE_LIST_FIX_RGT);
+            UPDATE_LIST_MOVE_UP, UPDATE_LIST_ORDER_JOIN, UPDATE_LIST_FIX_RGT, UPDATE_DUE_DAY_SORT);
     private static final List<String> IGNORED = Arrays.asList(CALDAV_INSTANCE_PROPERTIES,
             CALDAV_INSTANCES);
 
+    /**
+     * The uris to notify once the batch of the current thread is committed,
+     * null if there is no batch
+     */
+    private static final ThreadLocal<Set<Uri>> deferredNotifications = new ThreadLocal<>();
+    /**
+     * If more rows of a table changed in a batch, the table is notified
+     * instead of every row
+     */
+    private static final int MAX_ROW_NOTIFICATIONS = 16;
+    /**
+     * True while the current thread runs a batch, see
+     * {@link #withBatchTransaction(DBTransaction)}
+     */
+    private static final ThreadLocal<Boolean> inBatchTransaction = new ThreadLocal<>();
+    /**
+     * True while the ListCache is suspended by the open transaction of the
+     * current thread
+     */
+    private static final ThreadLocal<Boolean> listCacheSuspended = new ThreadLocal<>();
+
+    private static ContentResolver contentResolver = null;
+    /**
+     * Incremented on every write, so readers can tell if their snapshot of the
+     * data is still up to date
+     */
+    private static final AtomicLong dataVersion = new AtomicLong(0L);
     private static DatabaseHelper dbHelper = null;
     private static SQLiteDatabase database;
     private static boolean isPreInit = true;
@@ -232,10 +279,232 @@ public class MirakelInternalContentProvider extends ContentProvider implements
             db.setTransactionSuccessful();
             db.endTransaction();
         }
-        for (Uri notify : transformUriForNotify(uri, new HashSet<Uri>())) {
+        invalidateCaches(table, null);
+        notifyChange(transformUriForNotify(uri, new HashSet<Uri>()));
+        return u;
+    }
+
+    private void notifyChange(@NonNull final Set<Uri> uris) {
+        final Set<Uri> deferred = deferredNotifications.get();
+        if (deferred != null) {
+            deferred.addAll(uris);
+            return;
+        }
+        for (final Uri notify : uris) {
             this.getContext().getContentResolver().notifyChange(notify, null);
         }
-        return u;
+    }
+
+    /**
+     * Collect the notifications of the current thread until
+     * {@link #endDeferredNotifications(boolean)} is called
+     *
+     * @return False if the notifications are already deferred by an outer call
+     */
+    private static boolean beginDeferredNotifications() {
+        if (deferredNotifications.get() != null) {
+            return false;
+        }
+        deferredNotifications.set(new LinkedHashSet<Uri>());
+        return true;
+    }
+
+    /**
+     * @param publish False if the transaction was rolled back, then nothing
+     *                changed and the notifications are dropped
+     */
+    private static void endDeferredNotifications(final boolean publish) {
+        final Set<Uri> uris = deferredNotifications.get();
+        deferredNotifications.remove();
+        if (publish && (uris != null) && (contentResolver != null)) {
+            for (final Uri notify : collapseRowUris(uris)) {
+                contentResolver.notifyChange(notify, null);
+            }
+        }
+    }
+
+    /**
+     * Keep the row uris (e.g. tasks/5), so observers can handle single rows.
+     * They are dropped if their table is notified anyway and replaced by the
+     * table if too many rows of it changed.
+     */
+    @NonNull
+    private static Set<Uri> collapseRowUris(@NonNull final Set<Uri> uris) {
+        final Multiset<Uri> rowsPerTable = HashMultiset.create();
+        for (final Uri uri : uris) {
+            if (getRowId(uri) != -1L) {
+                rowsPerTable.add(getTableUri(uri));
+            }
+        }
+        final Set<Uri> collapsed = new LinkedHashSet<>(uris.size());
+        for (final Uri uri : uris) {
+            if (getRowId(uri) == -1L) {
+                collapsed.add(uri);
+                continue;
+            }
+            final Uri table = getTableUri(uri);
+            if (uris.contains(table)) {
+                continue;
+            }
+            collapsed.add((rowsPerTable.count(table) > MAX_ROW_NOTIFICATIONS) ? table : uri);
+        }
+        return collapsed;
+    }
+
+    /**
+     * @return The id of a row uri like tasks/5 or -1 for the uri of a table
+     */
+    private static long getRowId(@NonNull final Uri uri) {
+        final List<String> segments = uri.getPathSegments();
+        if (segments.size() < 2) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(segments.get(segments.size() - 1));
+        } catch (final NumberFormatException ignored) {
+            return -1L;
+        }
+    }
+
+    @NonNull
+    private static Uri getTableUri(@NonNull final Uri rowUri) {
+        final List<String> segments = rowUri.getPathSegments();
+        return rowUri.buildUpon().path(TextUtils.join("/", segments.subList(0,
+                                       segments.size() - 1))).build();
+    }
+
+    /**
+     * @return The uris with the id of the changed row appended, like the
+     * provider notifies inserts
+     */
+    @NonNull
+    private static Set<Uri> withRowId(@NonNull final Set<Uri> uris, final long rowId) {
+        final Set<Uri> rowUris = new LinkedHashSet<>(uris.size());
+        for (final Uri uri : uris) {
+            rowUris.add(ContentUris.withAppendedId(uri, rowId));
+        }
+        return rowUris;
+    }
+
+    /**
+     * Applies all operations in one transaction, the changed uris are notified
+     * once after the commit
+     */
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull final ArrayList<ContentProviderOperation>
+            operations) throws OperationApplicationException {
+        final SQLiteDatabase db = getWritableDatabase();
+        if (db.inTransaction()) {
+            // the outer transaction takes care of everything
+            return super.applyBatch(operations);
+        }
+        final boolean outermost = beginDeferredNotifications();
+        boolean successful = false;
+        db.beginTransaction();
+        try {
+            final ContentProviderResult[] results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+            successful = true;
+            return results;
+        } finally {
+            db.endTransaction();
+            resumeListCache();
+            if (outermost) {
+                endDeferredNotifications(successful);
+            }
+        }
+    }
+
+    /**
+     * Inserts all rows in one transaction, the changed uris are notified once
+     * after the commit
+     */
+    @Override
+    public int bulkInsert(@NonNull final Uri uri, @NonNull final ContentValues[] values) {
+        final SQLiteDatabase db = getWritableDatabase();
+        if (db.inTransaction()) {
+            return super.bulkInsert(uri, values);
+        }
+        final boolean outermost = beginDeferredNotifications();
+        boolean successful = false;
+        db.beginTransaction();
+        try {
+            final int count = super.bulkInsert(uri, values);
+            db.setTransactionSuccessful();
+            successful = true;
+            return count;
+        } finally {
+            db.endTransaction();
+            resumeListCache();
+            if (outermost) {
+                endDeferredNotifications(successful);
+            }
+        }
+    }
+
+    /**
+     * Drop the cached models which might be affected by a write to this table
+     *
+     * @param table  the table which was modified
+     * @param values the values of the modification, used to find the real
+     *               table of the list order updates
+     */
+    private static void invalidateCaches(final String table, final ContentValues values) {
+        if (UndoHistory.TABLE.equals(table)) {
+            // the journal does not change any data
+            return;
+        }
+        dataVersion.incrementAndGet();
+        final String modifiedTable;
+        switch (table) {
+        case UPDATE_LIST_ORDER_JOIN:
+        case UPDATE_LIST_MOVE_DOWN:
+        case UPDATE_LIST_MOVE_UP:
+        case UPDATE_LIST_FIX_RGT:
+            modifiedTable = (values == null) ? ListMirakel.TABLE : values.getAsString("TABLE");
+            break;
+        default:
+            modifiedTable = table;
+        }
+        if (ListMirakel.TABLE.equals(modifiedTable) || "caldav_lists".equals(modifiedTable)) {
+            suspendListCache();
+            ListCache.invalidateLists();
+        } else if (SpecialList.TABLE.equals(modifiedTable)) {
+            suspendListCache();
+            ListCache.invalidateSpecialLists();
+            SpecialListWhereCache.invalidate();
+        }
+    }
+
+    /**
+     * Keep the ListCache from caching the uncommitted lists until the
+     * transaction of this thread ended
+     */
+    private static void suspendListCache() {
+        if (getWritableDatabase().inTransaction() && (listCacheSuspended.get() == null)) {
+            listCacheSuspended.set(true);
+            ListCache.suspend();
+        }
+    }
+
+    /**
+     * Called after a transaction was committed or rolled back, drops
+     * everything which was cached while it was open
+     */
+    private static void resumeListCache() {
+        if (listCacheSuspended.get() != null) {
+            listCacheSuspended.remove();
+            ListCache.resume();
+        }
+    }
+
+    /**
+     * @return A number which changes whenever something is written to the
+     * database
+     */
+    public static long getDataVersion() {
+        return dataVersion.get();
     }
 
     public static String getTableName(final Uri u) {
@@ -278,10 +547,8 @@ public class MirakelInternalContentProvider extends ContentProvider implements
             db.setTransactionSuccessful();
             db.endTransaction();
         }
-        for (Uri notify : transformUriForNotify(uri, new HashSet<Uri>())) {
-            notify = ContentUris.withAppendedId(notify, ContentUris.parseId(u));
-            this.getContext().getContentResolver().notifyChange(notify, null);
-        }
+        invalidateCaches(table, values);
+        notifyChange(withRowId(transformUriForNotify(uri, new HashSet<Uri>()), ContentUris.parseId(u)));
         return u;
     }
 
@@ -294,6 +561,8 @@ public class MirakelInternalContentProvider extends ContentProvider implements
 
     @Override
     public boolean onCreate() {
+        ListCache.enable();
+        contentResolver = getContext().getContentResolver();
         if (database == null) {
             dbHelper = DatabaseHelper.getDatabaseHelper(getContext());
             isPreInit = false;
@@ -350,6 +619,10 @@ public class MirakelInternalContentProvider extends ContentProvider implements
                               + " AS p ");
             groupBy = "n." + ListMirakel.LFT;
             break;
+        case TASK_COUNT_BY_LIST:
+            builder.setTables(Task.TABLE);
+            groupBy = Task.LIST_ID;
+            break;
         default:
             builder.setTables(table);
         }
@@ -424,6 +697,9 @@ public class MirakelInternalContentProvider extends ContentProvider implements
         case UPDATE_LIST_FIX_RGT:
             db.execSQL ("UPDATE " + update_table + " SET rgt=lft+1;");
             break;
+        case UPDATE_DUE_DAY_SORT:
+            DatabaseHelper.updateDueDaySort(db);
+            break;
         default:
             u = db.update(table, values, selection, selectionArgs);
         }
@@ -431,21 +707,57 @@ public class MirakelInternalContentProvider extends ContentProvider implements
             db.setTransactionSuccessful();
             db.endTransaction();
         }
-        for (Uri notify : transformUriForNotify(uri, new HashSet<Uri>())) {
-            this.getContext().getContentResolver().notifyChange(notify, null);
+        invalidateCaches(table, values);
+        final long rowId = getRowId(uri);
+        if (rowId == -1L) {
+            notifyChange(transformUriForNotify(uri, new HashSet<Uri>()));
+        } else {
+            // the update of a single row, e.g. tasks/5
+            notifyChange(withRowId(transformUriForNotify(getTableUri(uri), new HashSet<Uri>()), rowId));
         }
         return u;
     }
 
+    /**
+     * Runs what with the change notifications and service updates of this
+     * thread deferred. They are published once, when the outermost scope
+     * ends. This does not open a transaction, so the models can be saved as
+     * usual inside.
+     *
+     * @param what The bulk edit
+     */
+    public static void withNotificationScope(@NonNull final DBTransaction what) {
+        final boolean outermost = beginDeferredNotifications();
+        final boolean outermostUpdate = NotificationService.beginDeferredUpdate();
+        try {
+            what.exec();
+        } finally {
+            if (outermost) {
+                endDeferredNotifications(true);
+            }
+            if (outermostUpdate) {
+                NotificationService.endDeferredUpdate();
+            }
+        }
+    }
+
+    /**
+     * Runs what in a transaction, the change notifications and service
+     * updates are deferred until it is committed
+     */
     @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
     public static void withTransaction(final DBTransaction what) {
         if (what != null) {
             final SQLiteDatabase db = getWritableDatabase();
             if (!db.inTransaction()) {
+                final boolean outermost = beginDeferredNotifications();
+                final boolean outermostUpdate = NotificationService.beginDeferredUpdate();
+                boolean successful = false;
                 db.beginTransaction();
                 try {
                     what.exec();
                     db.setTransactionSuccessful();
+                    successful = true;
                 } catch (final Exception e) {
                     Log.w(TAG,
                           "an exception was raised while executing database transaction",
@@ -460,7 +772,17 @@ public class MirakelInternalContentProvider extends ContentProvider implements
                     }
                 } finally {
                     db.endTransaction();
+                    resumeListCache();
+                    if (outermost) {
+                        endDeferredNotifications(successful);
+                    }
+                    if (outermostUpdate) {
+                        NotificationService.endDeferredUpdate();
+                    }
                 }
+            } else if (Boolean.TRUE.equals(inBatchTransaction.get())) {
+                // join the batch
+                what.exec();
             } else {
                 if (!isPreInit) {
                     throw new DataBaseLockedException(
@@ -470,6 +792,25 @@ public class MirakelInternalContentProvider extends ContentProvider implements
         }
     }
 
+    /**
+     * Runs what in one transaction. Unlike {@link #withTransaction(DBTransaction)}
+     * the calls of withTransaction inside what join this transaction, so
+     * several models can be saved at once.
+     */
+    public static void withBatchTransaction(@NonNull final DBTransaction what) {
+        withTransaction(new DBTransaction() {
+            @Override
+            public void exec() {
+                inBatchTransaction.set(true);
+                try {
+                    what.exec();
+                } finally {
+                    inBatchTransaction.set(false);
+                }
+            }
+        });
+    }
+
 
     @Override
     public void onAccountsUpdated(final Account[] accounts) {
@@ -0,0 +1,472 @@
+/*******************************************************************************
+ * Mirakel is an Android App for managing your ToDo-Lists
+ *
+ * Copyright (c) 2013-2014 Anatolij Zelenin, Georg Semmler.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package de.azapps.mirakel.model;
+
+import android.content.ContentValues;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.google.common.base.Optional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import de.azapps.mirakel.helper.error.ErrorReporter;
+import de.azapps.mirakel.helper.error.ErrorType;
+import de.azapps.mirakel.model.task.Task;
+import de.azapps.tools.Log;
+
+/**
+ * Saves tasks edited by the ui on a background thread.
+ *
+ * Edits are applied to the task at once, so the ui can show them, and the
+ * task is queued. A single writer saves all queued tasks in one transaction.
+ * A task which is queued again before it was written is saved only once.
+ * Until a task is written, loading it through the MirakelQueryBuilder returns
+ * a task with the queued values, so the ui reads its own writes without
+ * waiting for the writer.
+ *
+ * If a batch fails, its tasks are saved one by one. A task which still fails
+ * is queued again, after MAX_ATTEMPTS failures it is dropped and the user is
+ * told.
+ *
+ * The writer copies a task under its monitor and saves the copy, so only
+ * change queued tasks through {@link #edit(Task, Edit)}. Edits made while
+ * the copy is written are saved with the next batch.
+ */
+public final class SaveQueue {
+    private static final String TAG = "SaveQueue";
+    // a batch is one transaction, keep it small
+    private static final int MAX_BATCH_SIZE = 50;
+    private static final int MAX_ATTEMPTS = 3;
+
+    public interface Edit<T> {
+        void apply(@NonNull final T model);
+    }
+
+    public interface Callback<T> {
+        void done(@NonNull final T result);
+    }
+
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor();
+    private static volatile Thread writerThread = null;
+    private static final ThreadLocal<Boolean> inEdit = new ThreadLocal<>();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // guarded by SaveQueue.class
+    private static final List<Task> pending = new ArrayList<>();
+    private static final Set<Task> pendingTasks = Collections.newSetFromMap(
+                new IdentityHashMap<Task, Boolean>());
+    // the latest queued instance per task, until it is written
+    private static final Map<Long, Task> unsavedTasks = new HashMap<>();
+    private static final Map<Task, Integer> failures = new IdentityHashMap<>();
+    private static boolean drainScheduled = false;
+    private static int depth = 0;
+    private static long requestedSaves = 0L;
+    private static long commits = 0L;
+    private static long totalCommitLatency = 0L;
+    private static long lastCommitLatency = 0L;
+    // the size of unsavedTasks, read without the lock by overlay()
+    private static volatile int unsavedCount = 0;
+
+    private SaveQueue() {
+        // only static stuff here
+    }
+
+    /**
+     * Apply the edit to the task and queue the task for saving
+     */
+    public static void edit(@NonNull final Task task, @NonNull final Edit<Task> edit) {
+        apply(task, edit);
+        save(task);
+    }
+
+    /**
+     * Set the done state of the task and queue it. The next occurrence of a
+     * recurring task is created by the writer, because that reads and writes
+     * the database.
+     *
+     * @param onNext Called on the main thread with the next occurrence, if
+     *               one was created
+     */
+    public static void setDone(@NonNull final Task task, final boolean done,
+                               @Nullable final Callback<Task> onNext) {
+        final boolean[] recurring = {false};
+        apply(task, new Edit<Task>() {
+            @Override
+            public void apply(@NonNull final Task model) {
+                recurring[0] = model.markDone(done) && model.needsNextRecurrence();
+            }
+        });
+        if (!recurring[0]) {
+            save(task);
+            return;
+        }
+        synchronized (SaveQueue.class) {
+            requestedSaves++;
+            // awaitPending waits for the next occurrence too
+            depth++;
+        }
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                writerThread = Thread.currentThread();
+                Optional<Task> next = Optional.absent();
+                try {
+                    next = task.createNextRecurrence();
+                } catch (final RuntimeException e) {
+                    Log.e(TAG, "could not create the next occurrence of " + task.getId(), e);
+                } finally {
+                    save(task);
+                    synchronized (SaveQueue.class) {
+                        depth--;
+                        SaveQueue.class.notifyAll();
+                    }
+                }
+                if (next.isPresent() && (onNext != null)) {
+                    final Task nextTask = next.get();
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            onNext.done(nextTask);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    private static void apply(@NonNull final Task task, @NonNull final Edit<Task> edit) {
+        // loads inside the edit see the database
+        final boolean outermost = !Boolean.TRUE.equals(inEdit.get());
+        inEdit.set(true);
+        try {
+            synchronized (task) {
+                edit.apply(task);
+            }
+        } finally {
+            if (outermost) {
+                inEdit.set(false);
+            }
+        }
+    }
+
+    public static synchronized void save(@NonNull final Task task) {
+        requestedSaves++;
+        remember(task);
+        if (!pendingTasks.add(task)) {
+            // already queued, the writer saves the latest state
+            return;
+        }
+        pending.add(task);
+        depth++;
+        scheduleDrain();
+    }
+
+    // guarded by SaveQueue.class
+    private static void remember(@NonNull final Task task) {
+        if (task.getId() == 0L) {
+            return;
+        }
+        unsavedTasks.put(task.getId(), task);
+        unsavedCount = unsavedTasks.size();
+    }
+
+    // guarded by SaveQueue.class
+    private static void forget(@NonNull final Task task) {
+        if (pendingTasks.contains(task)) {
+            // queued again while it was written
+            return;
+        }
+        if (unsavedTasks.get(task.getId()) == task) {
+            unsavedTasks.remove(task.getId());
+            unsavedCount = unsavedTasks.size();
+        }
+    }
+
+    // guarded by SaveQueue.class
+    private static void scheduleDrain() {
+        if (drainScheduled) {
+            return;
+        }
+        drainScheduled = true;
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                writerThread = Thread.currentThread();
+                try {
+                    drain();
+                } finally {
+                    synchronized (SaveQueue.class) {
+                        drainScheduled = false;
+                        // something may have been queued after the last batch
+                        if (!pending.isEmpty()) {
+                            scheduleDrain();
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private static void drain() {
+        while (true) {
+            final List<Task> batch;
+            synchronized (SaveQueue.class) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                final int size = Math.min(pending.size(), MAX_BATCH_SIZE);
+                batch = new ArrayList<>(pending.subList(0, size));
+                pending.subList(0, size).clear();
+                pendingTasks.removeAll(batch);
+            }
+            final long start = SystemClock.elapsedRealtime();
+            final Set<Task> failed = Collections.newSetFromMap(new IdentityHashMap<Task, Boolean>());
+            try {
+                failed.addAll(saveBatch(batch));
+            } catch (final Throwable e) {
+                // something broke outside of the tasks, keep them for the next try
+                Log.e(TAG, "could not save " + batch.size() + " tasks", e);
+                failed.addAll(batch);
+            } finally {
+                final long latency = SystemClock.elapsedRealtime() - start;
+                boolean lost = false;
+                synchronized (SaveQueue.class) {
+                    depth -= batch.size();
+                    commits++;
+                    lastCommitLatency = latency;
+                    totalCommitLatency += latency;
+                    for (final Task task : batch) {
+                        if (failed.contains(task)) {
+                            lost |= !retry(task);
+                        } else {
+                            failures.remove(task);
+                            forget(task);
+                        }
+                    }
+                    SaveQueue.class.notifyAll();
+                }
+                if (lost) {
+                    ErrorReporter.report(ErrorType.SAVE_FAILED);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return false if the task failed too often and is dropped
+     */
+    // guarded by SaveQueue.class
+    private static boolean retry(@NonNull final Task task) {
+        final Integer count = failures.get(task);
+        final int attempts = (count == null) ? 1 : (count + 1);
+        if (attempts >= MAX_ATTEMPTS) {
+            Log.wtf(TAG, "giving up to save task " + task.getId());
+            failures.remove(task);
+            forget(task);
+            return false;
+        }
+        failures.put(task, attempts);
+        if (pendingTasks.add(task)) {
+            pending.add(task);
+            depth++;
+        }
+        return true;
+    }
+
+    /**
+     * Save the batch in one transaction. If that fails, save every task on
+     * its own to find the broken ones.
+     *
+     * @return The tasks which could not be saved
+     */
+    @NonNull
+    private static List<Task> saveBatch(@NonNull final List<Task> batch) {
+        try {
+            saveCopies(batch);
+            return Collections.emptyList();
+        } catch (final RuntimeException e) {
+            Log.e(TAG, "could not save a batch of " + batch.size() + " tasks", e);
+        }
+        // the transaction was rolled back, only the copies think they are written
+        final List<Task> failed = new ArrayList<>(1);
+        for (final Task task : batch) {
+            try {
+                saveCopies(Collections.singletonList(task));
+            } catch (final RuntimeException e) {
+                Log.e(TAG, "could not save task " + task.getId(), e);
+                failed.add(task);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Copy the tasks under their monitors and save the copies in one
+     * transaction, so the ui is never blocked by the database. After the
+     * commit the tasks learn what was written.
+     */
+    private static void saveCopies(@NonNull final List<Task> batch) {
+        final List<Task> copies = new ArrayList<>(batch.size());
+        final List<ContentValues> before = new ArrayList<>(batch.size());
+        for (final Task task : batch) {
+            synchronized (task) {
+                copies.add(task.copy());
+                before.add(task.getColumnValues());
+            }
+        }
+        MirakelInternalContentProvider.withBatchTransaction(new MirakelInternalContentProvider.DBTransaction() {
+            @Override
+            public void exec() {
+                for (final Task copy : copies) {
+                    // an older instance of the task may have been written before
+                    copy.refreshRow();
+                    copy.save();
+                }
+            }
+        });
+        for (int i = 0; i < batch.size(); i++) {
+            final Task task = batch.get(i);
+            synchronized (task) {
+                task.takeSavedState(copies.get(i), before.get(i));
+            }
+        }
+    }
+
+    private static boolean seesDatabase() {
+        return (Thread.currentThread() == writerThread) || Boolean.TRUE.equals(inEdit.get());
+    }
+
+    /**
+     * Apply the values of the queued instance of a freshly loaded task, if it
+     * was not written yet. The caller gets its own object, the queued one is
+     * only changed through edit(). The loaded task keeps the snapshot of its
+     * row, so saving it writes the queued values too. The writer and edits
+     * always get the loaded model, because they have to compare against the
+     * database.
+     */
+    @NonNull
+    public static <T extends ModelBase> T overlay(@NonNull final T loaded) {
+        if ((unsavedCount == 0) || !(loaded instanceof Task) || seesDatabase()) {
+            return loaded;
+        }
+        final Task unsaved;
+        synchronized (SaveQueue.class) {
+            unsaved = unsavedTasks.get(loaded.getId());
+        }
+        if ((unsaved != null) && (unsaved != loaded)) {
+            synchronized (unsaved) {
+                ((Task) loaded).takeValuesFrom(unsaved);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Like {@link #overlay(ModelBase)} for all models of a query, the queue is
+     * locked only once
+     */
+    public static <T extends ModelBase> void overlay(@NonNull final List<T> loaded) {
+        if ((unsavedCount == 0) || loaded.isEmpty() || seesDatabase()) {
+            return;
+        }
+        final Map<Long, Task> unsaved;
+        synchronized (SaveQueue.class) {
+            if (unsavedTasks.isEmpty()) {
+                return;
+            }
+            unsaved = new HashMap<>(unsavedTasks);
+        }
+        for (final T model : loaded) {
+            if (!(model instanceof Task)) {
+                continue;
+            }
+            final Task queued = unsaved.get(model.getId());
+            if ((queued != null) && (queued != model)) {
+                synchronized (queued) {
+                    ((Task) model).takeValuesFrom(queued);
+                }
+            }
+        }
+    }
+
+    /**
+     * Blocks until all tasks queued so far are written. Call this on the
+     * worker thread of everything which reads the tasks from the database
+     * instead of the ui, e.g. the sync or a backup. Never call this on the ui
+     * thread.
+     */
+    public static void awaitPending() {
+        if (seesDatabase()) {
+            return;
+        }
+        synchronized (SaveQueue.class) {
+            while (depth > 0) {
+                try {
+                    SaveQueue.class.wait();
+                } catch (final InterruptedException e) {
+                    Log.w(TAG, "interrupted while waiting for the queue", e);
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of tasks which are queued or being written
+     */
+    public static synchronized int getQueueDepth() {
+        return depth;
+    }
+
+    public static synchronized long getRequestedSaves() {
+        return requestedSaves;
+    }
+
+    public static synchronized long getCommits() {
+        return commits;
+    }
+
+    /**
+     * @return The time in ms the last batch took to be written
+     */
+    public static synchronized long getLastCommitLatency() {
+        return lastCommitLatency;
+    }
+
+    /**
+     * @return The average time in ms a batch took to be written
+     */
+    public static synchronized long getAverageCommitLatency() {
+        return (commits == 0L) ? 0L : (totalCommitLatency / commits);
+    }
+}
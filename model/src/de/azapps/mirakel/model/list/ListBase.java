@@ -84,6 +84,23 @@ abstract class ListBase extends ModelBase {
         super(id, name);
     }
 
+    /**
+     * Copy all fields of other, used by the ListCache
+     */
+    ListBase(final long id, @NonNull final ListBase other) {
+        super(id, other.getName());
+        this.sortBy = other.sortBy;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.syncState = other.syncState;
+        this.lft = other.lft;
+        this.rgt = other.rgt;
+        this.color = other.color;
+        this.accountID = other.accountID;
+        this.accountMirakel = other.accountMirakel;
+        this.isSpecial = other.isSpecial;
+    }
+
     protected ListBase(final long id, @NonNull final String name, @NonNull final SORT_BY sortBy,
                        @NonNull final String createdAt, @NonNull final String updatedAt,
                        @NonNull final SYNC_STATE syncState, final int lft, final int rgt,
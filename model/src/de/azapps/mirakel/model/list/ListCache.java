@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * Mirakel is an Android App for managing your ToDo-Lists
+ *
+ * Copyright (c) 2013-2014 Anatolij Zelenin, Georg Semmler.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package de.azapps.mirakel.model.list;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory cache for lists and special lists.
+ *
+ * The lists are keyed by their id (negative for special lists) and by their
+ * name and account. The map is invalidated by the MirakelInternalContentProvider
+ * whenever the lists or special_lists table are written. Because that only
+ * works in the process hosting the provider, the cache stays disabled
+ * everywhere else (e.g. in the dashclock extension).
+ *
+ * The callers get their own copy of a cached list, so they can change it
+ * without touching the cache. A list is only put if nothing was invalidated
+ * since it was read ({@link #getGeneration()}) and while a transaction with
+ * uncommitted list changes is open ({@link #suspend()}) nothing is cached.
+ */
+public class ListCache {
+    private static final int MAX_SIZE = 512;
+
+    private static boolean enabled = false;
+    private static long hits = 0L;
+    private static long misses = 0L;
+    private static long generation = 0L;
+    private static int suspended = 0;
+
+    private static final Map<Long, ListMirakel> byId = new LinkedHashMap<Long, ListMirakel>(16, 0.75F,
+    true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long, ListMirakel> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+    private static final Map<String, Long> byName = new HashMap<>();
+    @Nullable
+    private static Long firstListId = null;
+
+    private ListCache() {
+        // only static stuff here
+    }
+
+    /**
+     * Called by the content provider, the cache works only in its process
+     */
+    public static synchronized void enable() {
+        enabled = true;
+    }
+
+    public static synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    @Nullable
+    private static ListMirakel hitOrMiss(@Nullable final ListMirakel list) {
+        if (list == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return list.copy();
+    }
+
+    /**
+     * Read this before loading a list from the database and pass it to put
+     *
+     * @return A number which changes on every invalidation
+     */
+    static synchronized long getGeneration() {
+        return generation;
+    }
+
+    @NonNull
+    private static String nameKey(@NonNull final String name, final long accountId) {
+        return accountId + ":" + name;
+    }
+
+    @Nullable
+    static synchronized ListMirakel get(final long id) {
+        if (!enabled) {
+            return null;
+        }
+        return hitOrMiss(byId.get(id));
+    }
+
+    @Nullable
+    static synchronized ListMirakel getByName(@NonNull final String name, final long accountId) {
+        if (!enabled) {
+            return null;
+        }
+        final Long id = byName.get(nameKey(name, accountId));
+        return hitOrMiss((id == null) ? null : byId.get(id));
+    }
+
+    @Nullable
+    static synchronized ListMirakel getFirst() {
+        if (!enabled) {
+            return null;
+        }
+        return hitOrMiss((firstListId == null) ? null : byId.get(firstListId));
+    }
+
+    /**
+     * @param readAt The generation from before the list was read, if the cache
+     *               was invalidated since then the list is dropped
+     * @return False if the list was not cached
+     */
+    static synchronized boolean put(@NonNull final ListMirakel list, final long readAt) {
+        if (!enabled || (suspended > 0) || (readAt != generation)) {
+            return false;
+        }
+        byId.put(list.getId(), list.copy());
+        if (!list.isSpecial()) {
+            byName.put(nameKey(list.getName(), list.accountID), list.getId());
+        }
+        return true;
+    }
+
+    static synchronized void putFirst(@NonNull final ListMirakel list, final long readAt) {
+        if (put(list, readAt)) {
+            firstListId = list.getId();
+        }
+    }
+
+    /**
+     * Called by the content provider when a list table is written inside a
+     * transaction. Until {@link #resume()} is called after the transaction
+     * ended, nothing is cached, so neither uncommitted nor rolled back lists
+     * end up in the cache.
+     */
+    public static synchronized void suspend() {
+        suspended++;
+        invalidateLists();
+    }
+
+    /**
+     * Called by the content provider after the transaction which called
+     * {@link #suspend()} was committed or rolled back
+     */
+    public static synchronized void resume() {
+        suspended--;
+        invalidateLists();
+    }
+
+    /**
+     * Drop all normal lists. Special lists are dropped as well, because they
+     * hold a reference to their default list.
+     */
+    public static synchronized void invalidateLists() {
+        generation++;
+        byId.clear();
+        byName.clear();
+        firstListId = null;
+    }
+
+    /**
+     * Drop all special lists
+     */
+    public static synchronized void invalidateSpecialLists() {
+        generation++;
+        final Iterator<Long> it = byId.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next() < 0L) {
+                it.remove();
+            }
+        }
+    }
+
+    public static synchronized long getHits() {
+        return hits;
+    }
+
+    public static synchronized long getMisses() {
+        return misses;
+    }
+
+    public static synchronized int size() {
+        return byId.size();
+    }
+}
@@ -33,10 +33,13 @@ import com.google.gson.JsonObject;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import de.azapps.mirakel.DefinitionsHelper.SYNC_STATE;
 import de.azapps.mirakel.helper.MirakelCommonPreferences;
@@ -132,26 +135,22 @@ public class ListMirakel extends ListBase {
     @NonNull
     public static MirakelQueryBuilder addSortBy(final MirakelQueryBuilder qb, final SORT_BY sorting,
             final long listId) {
-        final String dueSort = "CASE WHEN (" + Task.DUE
-                               + " IS NULL) THEN datetime('now','+50 years') ELSE datetime("
-                               + Task.DUE
-                               + ",'unixepoch','localtime','start of day') END ";
         switch (sorting) {
         case PRIO:
             qb.sort(Task.PRIORITY, Sorting.DESC);
             break;
         case OPT:
             qb.sort(Task.DONE, Sorting.ASC);
-            qb.sort(dueSort, Sorting.ASC);
+            qb.sort(Task.DUE_DAY_SORT, Sorting.ASC);
             qb.sort(Task.PRIORITY, Sorting.DESC);
             break;
         case DUE:
             qb.sort(Task.DONE, Sorting.ASC);
-            qb.sort(dueSort, Sorting.ASC);
+            qb.sort(Task.DUE_DAY_SORT, Sorting.ASC);
             break;
         case REVERT_DEFAULT:
             qb.sort(Task.PRIORITY, Sorting.DESC);
-            qb.sort(dueSort, Sorting.ASC);
+            qb.sort(Task.DUE_DAY_SORT, Sorting.ASC);
         //$FALL-THROUGH$
         default:
             qb.sort(Task.ID, Sorting.ASC);
@@ -269,9 +268,7 @@ public class ListMirakel extends ListBase {
 
     @NonNull
     public static ListMirakel getInboxList(final AccountMirakel account) {
-        final Optional<ListMirakel> l = new MirakelQueryBuilder(context).and(NAME, Operation.EQ,
-                context.getString(R.string.inbox)).and(ACCOUNT_ID, Operation.EQ,
-                        account).get(ListMirakel.class);
+        final Optional<ListMirakel> l = getByName(context.getString(R.string.inbox), account);
         if (l.isPresent()) {
             return l.get();
         }
@@ -293,7 +290,45 @@ public class ListMirakel extends ListBase {
                 return absent();
             }
         }
-        return new MirakelQueryBuilder(context).get(ListMirakel.class, listId);
+        final ListMirakel cached = ListCache.get(listId);
+        if (cached != null) {
+            return of(cached);
+        }
+        final long generation = ListCache.getGeneration();
+        final Optional<ListMirakel> list = new MirakelQueryBuilder(context).get(ListMirakel.class, listId);
+        if (list.isPresent()) {
+            ListCache.put(list.get(), generation);
+        }
+        return list;
+    }
+
+    /**
+     * Get all lists with the given ids in one query
+     *
+     * @param listIds ids of normal lists
+     * @return The lists which exist
+     */
+    @NonNull
+    public static List<ListMirakel> getByIds(@NonNull final Collection<Long> listIds) {
+        final List<ListMirakel> lists = new ArrayList<>(listIds.size());
+        final List<Long> missing = new ArrayList<>(listIds.size());
+        for (final Long id : listIds) {
+            final ListMirakel cached = ListCache.get(id);
+            if (cached == null) {
+                missing.add(id);
+            } else {
+                lists.add(cached);
+            }
+        }
+        if (!missing.isEmpty()) {
+            final long generation = ListCache.getGeneration();
+            for (final ListMirakel list : new MirakelQueryBuilder(context).and(ID, Operation.IN,
+                    missing).getList(ListMirakel.class)) {
+                ListCache.put(list, generation);
+                lists.add(list);
+            }
+        }
+        return lists;
     }
 
     public static void setDefaultAccount(@NonNull final AccountMirakel account) {
@@ -361,10 +396,19 @@ public class ListMirakel extends ListBase {
     @NonNull
     public static Optional<ListMirakel> getByName(final String name,
             final AccountMirakel accountMirakel) {
-        return new MirakelQueryBuilder(context)
-               .and(ListBase.NAME, Operation.EQ, name)
-               .and(ListMirakel.ACCOUNT_ID, Operation.EQ, accountMirakel)
-               .get(ListMirakel.class);
+        final ListMirakel cached = ListCache.getByName(name, accountMirakel.getId());
+        if (cached != null) {
+            return of(cached);
+        }
+        final long generation = ListCache.getGeneration();
+        final Optional<ListMirakel> list = new MirakelQueryBuilder(context)
+        .and(ListBase.NAME, Operation.EQ, name)
+        .and(ListMirakel.ACCOUNT_ID, Operation.EQ, accountMirakel)
+        .get(ListMirakel.class);
+        if (list.isPresent()) {
+            ListCache.put(list.get(), generation);
+        }
+        return list;
     }
 
     @NonNull
@@ -460,12 +504,18 @@ public class ListMirakel extends ListBase {
 
     @NonNull
     public static ListMirakel safeFirst() {
+        final ListMirakel cached = ListCache.getFirst();
+        if (cached != null) {
+            return cached;
+        }
+        final long generation = ListCache.getGeneration();
         Optional<ListMirakel> s = new MirakelQueryBuilder(context).and(DatabaseHelper.SYNC_STATE_FIELD,
                 Operation.NOT_EQ, SYNC_STATE.DELETE.toInt()).sort(LFT,
                         Sorting.ASC).get(ListMirakel.class);
         if (!s.isPresent()) {
             return getInboxList(MirakelModelPreferences.getDefaultAccount());
         } else {
+            ListCache.putFirst(s.get(), generation);
             return s.get();
         }
     }
@@ -484,6 +534,17 @@ public class ListMirakel extends ListBase {
         super();
     }
 
+    /**
+     * Create a copy of other
+     */
+    ListMirakel(@NonNull final ListMirakel other) {
+        this(other.getId(), other);
+    }
+
+    ListMirakel(final long id, @NonNull final ListMirakel other) {
+        super(id, other);
+    }
+
     public ListMirakel(final long id, @NonNull final String name, @NonNull final SORT_BY sort_by,
                        @NonNull final String created_at, @NonNull final String updated_at,
                        @NonNull final SYNC_STATE sync_state, final int lft, final int rgt,
@@ -500,6 +561,15 @@ public class ListMirakel extends ListBase {
               color, account);
     }
 
+    /**
+     * @return A copy of this list, which can be changed without touching this
+     * one
+     */
+    @NonNull
+    public ListMirakel copy() {
+        return new ListMirakel(this);
+    }
+
     /**
      * Count the tasks of that list
      *
@@ -522,6 +592,24 @@ public class ListMirakel extends ListBase {
         return Task.addBasicFiler(qb).count(Task.URI);
     }
 
+    /**
+     * Count the tasks of all normal lists with one query
+     *
+     * @return The number of tasks per list id, lists without tasks are missing
+     */
+    @NonNull
+    public static Map<Long, Long> countTasksByList() {
+        final Cursor c = Task.addBasicFiler(new MirakelQueryBuilder(context).and(Task.DONE, Operation.EQ,
+                                            false)).select(Task.LIST_ID, "count(*)")
+                         .query(MirakelInternalContentProvider.TASK_COUNT_BY_LIST_URI);
+        final Map<Long, Long> counts = new HashMap<>(c.getCount());
+        while (c.moveToNext()) {
+            counts.put(c.getLong(0), c.getLong(1));
+        }
+        c.close();
+        return counts;
+    }
+
 
     public void destroy() {
         destroy(false);
@@ -597,7 +685,9 @@ public class ListMirakel extends ListBase {
                                      Locale.getDefault()).format(new Date()));
                     ContentValues values = getContentValues();
                     if (log) {
-                        UndoHistory.updateLog(ListMirakel.get(getId()).get(), context);
+                        // bypass the cache, it may already hold this modified instance
+                        UndoHistory.updateLog(new MirakelQueryBuilder(context).and(ID, Operation.EQ,
+                                              getId()).getStored(ListMirakel.class).get(), context);
                     }
                     update(URI, values, ModelBase.ID
                            + " = " + getId(), null);
@@ -680,6 +770,15 @@ public class ListMirakel extends ListBase {
         return json;
     }
 
+    /**
+     * @return The time (in ms) until the tasks of this list can only change
+     * by writing the database, Long.MAX_VALUE if the list does not depend on
+     * the current time
+     */
+    public long getQueryValidUntil() {
+        return Long.MAX_VALUE;
+    }
+
     @NonNull
     public MirakelQueryBuilder getWhereQueryForTasks() {
         final MirakelQueryBuilder qb = Task.addBasicFiler(new MirakelQueryBuilder(context).and(Task.LIST_ID,
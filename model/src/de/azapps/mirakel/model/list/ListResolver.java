@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Mirakel is an Android App for managing your ToDo-Lists
+ *
+ * Copyright (c) 2013-2014 Anatolij Zelenin, Georg Semmler.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package de.azapps.mirakel.model.list;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import com.google.common.base.Optional;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import de.azapps.mirakel.model.task.Task;
+
+/**
+ * Resolves the lists referenced by the rows of a task cursor.
+ *
+ * All lists are loaded at once when the resolver is created, so hydrating the
+ * rows does not need a query per task. The instances are shared across rows.
+ */
+public class ListResolver {
+
+    @NonNull
+    private final Map<Long, ListMirakel> lists;
+    private int queryCount;
+
+    /**
+     * Creates an empty resolver, which loads the lists on demand
+     */
+    public ListResolver() {
+        this.lists = new HashMap<>();
+        this.queryCount = 0;
+    }
+
+    private ListResolver(@NonNull final Set<Long> listIds) {
+        this();
+        final Set<Long> normalIds = new HashSet<>(listIds.size());
+        final Set<Long> specialIds = new HashSet<>();
+        for (final Long id : listIds) {
+            if (id < 0L) {
+                specialIds.add(id);
+            } else {
+                normalIds.add(id);
+            }
+        }
+        if (!normalIds.isEmpty()) {
+            for (final ListMirakel list : ListMirakel.getByIds(normalIds)) {
+                this.lists.put(list.getId(), list);
+            }
+            this.queryCount++;
+        }
+        if (!specialIds.isEmpty()) {
+            for (final SpecialList list : SpecialList.getSpecials(specialIds)) {
+                this.lists.put(list.getId(), list);
+            }
+            this.queryCount++;
+        }
+    }
+
+    /**
+     * Scans the list_id column of the cursor and loads all referenced lists
+     * in one pass. The position of the cursor is restored afterwards.
+     *
+     * @param cursor A cursor over the tasks table
+     * @return A resolver containing all lists of the cursor
+     */
+    @NonNull
+    public static ListResolver forCursor(@NonNull final Cursor cursor) {
+        final int listColumn = cursor.getColumnIndex(Task.LIST_ID);
+        if (listColumn == -1) {
+            return new ListResolver();
+        }
+        final int position = cursor.getPosition();
+        final Set<Long> listIds = new HashSet<>();
+        if (cursor.moveToFirst()) {
+            do {
+                listIds.add(cursor.getLong(listColumn));
+            } while (cursor.moveToNext());
+        }
+        cursor.moveToPosition(position);
+        return new ListResolver(listIds);
+    }
+
+    /**
+     * Returns the list with this id. Lists which were not loaded in advance are
+     * fetched from the database and remembered.
+     *
+     * @param listId id of the list, negative for special lists
+     * @return The list
+     */
+    @NonNull
+    public ListMirakel get(final long listId) {
+        ListMirakel list = this.lists.get(listId);
+        if (list == null) {
+            final Optional<ListMirakel> listMirakelOptional = ListMirakel.get(listId);
+            this.queryCount++;
+            list = listMirakelOptional.get();
+            this.lists.put(listId, list);
+        }
+        return list;
+    }
+
+    /**
+     * @return The number of list queries this resolver issued
+     */
+    public int getQueryCount() {
+        return this.queryCount;
+    }
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Mirakel is an Android App for managing your ToDo-Lists
+ *
+ * Copyright (c) 2013-2014 Anatolij Zelenin, Georg Semmler.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package de.azapps.mirakel.model.list;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.List;
+import java.util.Map;
+
+import de.azapps.mirakel.model.MirakelInternalContentProvider;
+
+/**
+ * Number of undone tasks for all lists, used by the list drawers.
+ *
+ * The counts of all normal lists are loaded with one grouped query and those
+ * of the special lists with one conditional count, so binding a row does not
+ * need a query. The counts are dropped as soon as the tasks or lists change
+ * and when the query of a date-based special list moves on (e.g. "Today"
+ * after midnight).
+ */
+public class ListTaskCounts {
+    @Nullable
+    private static Map<Long, Long> counts = null;
+    private static long countsValidUntil = 0L;
+    @Nullable
+    private static ContentObserver observer = null;
+    private static long hits = 0L;
+    private static long loads = 0L;
+
+    private ListTaskCounts() {
+        // only static stuff here
+    }
+
+    /**
+     * @param ctx  Any context, used to register for changes
+     * @param list The list
+     * @return The number of undone tasks in this list
+     */
+    public static synchronized long get(@NonNull final Context ctx, @NonNull final ListMirakel list) {
+        if (observer == null) {
+            register(ctx.getApplicationContext().getContentResolver());
+        }
+        if ((counts != null) && (System.currentTimeMillis() >= countsValidUntil)) {
+            counts = null;
+        }
+        if (counts == null) {
+            final List<SpecialList> specialLists = SpecialList.allSpecial();
+            countsValidUntil = Long.MAX_VALUE;
+            for (final SpecialList specialList : specialLists) {
+                countsValidUntil = Math.min(countsValidUntil, specialList.getQueryValidUntil());
+            }
+            counts = ListMirakel.countTasksByList();
+            counts.putAll(SpecialList.countTasks(specialLists));
+            loads++;
+        } else {
+            hits++;
+        }
+        Long count = counts.get(list.getId());
+        if (count == null) {
+            if (!list.isSpecial()) {
+                // the grouped query skips empty lists
+                return 0L;
+            }
+            // an inactive special list
+            count = list.countTasks();
+            counts.put(list.getId(), count);
+            countsValidUntil = Math.min(countsValidUntil, list.getQueryValidUntil());
+        }
+        return count;
+    }
+
+    private static void register(@NonNull final ContentResolver contentResolver) {
+        observer = new ContentObserver(null) {
+            @Override
+            public void onChange(final boolean selfChange) {
+                invalidate();
+            }
+        };
+        // the provider notifies the row uris (tasks/<id>) on inserts and single updates
+        contentResolver.registerContentObserver(MirakelInternalContentProvider.TASK_URI, true, observer);
+        contentResolver.registerContentObserver(MirakelInternalContentProvider.LIST_URI, true, observer);
+        contentResolver.registerContentObserver(MirakelInternalContentProvider.SPECIAL_LISTS_URI, true,
+                                                observer);
+    }
+
+    public static synchronized void invalidate() {
+        counts = null;
+    }
+
+    public static synchronized long getHits() {
+        return hits;
+    }
+
+    public static synchronized long getLoads() {
+        return loads;
+    }
+}
@@ -30,7 +30,10 @@ import com.google.common.base.Function;
 import com.google.common.base.Optional;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import de.azapps.mirakel.DefinitionsHelper.SYNC_STATE;
 import de.azapps.mirakel.helper.error.ErrorReporter;
@@ -72,7 +75,25 @@ public class SpecialList extends ListMirakel {
 
     @Override
     public MirakelQueryBuilder getWhereQueryForTasks() {
-        return packWhere(getWhere());
+        final SpecialListWhereCache.Compiled compiled = getCompiledWhere();
+        return Task.addBasicFiler(new MirakelQueryBuilder(context).and(compiled.selection,
+                                  compiled.arguments));
+    }
+
+    @Override
+    public long getQueryValidUntil() {
+        return getCompiledWhere().validUntil;
+    }
+
+    @NonNull
+    private SpecialListWhereCache.Compiled getCompiledWhere() {
+        final int whereHash = (whereString == null) ? 0 : whereString.hashCode();
+        SpecialListWhereCache.Compiled compiled = SpecialListWhereCache.get(getId(), whereHash);
+        if (compiled == null) {
+            compiled = compileWhere(getWhere(), whereHash);
+            SpecialListWhereCache.put(getId(), compiled);
+        }
+        return compiled;
     }
 
     @Override
@@ -148,6 +169,25 @@ public class SpecialList extends ListMirakel {
         setRgt(rgt);
     }
 
+    /**
+     * Create a copy of other, the where tree is parsed again when needed
+     */
+    SpecialList(@NonNull final SpecialList other) {
+        // the id is stored positive
+        super(-other.getId(), other);
+        this.active = other.active;
+        this.defaultList = other.defaultList.isPresent() ? Optional.of(new ListMirakel(
+                               other.defaultList.get())) : other.defaultList;
+        this.defaultDate = other.defaultDate;
+        this.whereString = other.whereString;
+    }
+
+    @NonNull
+    @Override
+    public SpecialList copy() {
+        return new SpecialList(this);
+    }
+
     /**
      * Get all Tasks
      *
@@ -230,17 +270,17 @@ public class SpecialList extends ListMirakel {
         }
     }
 
-    private static MirakelQueryBuilder packWhere(
-        final @NonNull Optional<SpecialListsBaseProperty> where) {
-
-        final MirakelQueryBuilder qb;
-        if (where.isPresent()) {
-            qb = where.get().getWhereQueryBuilder(context);
-        } else {
-            qb = new MirakelQueryBuilder(context);
+    @NonNull
+    private static SpecialListWhereCache.Compiled compileWhere(
+        final @NonNull Optional<SpecialListsBaseProperty> where, final int whereHash) {
+        if (!where.isPresent()) {
+            return new SpecialListWhereCache.Compiled("", new ArrayList<String>(0), whereHash,
+                    Long.MAX_VALUE);
         }
+        final MirakelQueryBuilder qb = where.get().getWhereQueryBuilder(context);
         Log.d(TAG, "Query:<" + qb.getSelection() + ">");
-        return Task.addBasicFiler(qb);
+        return new SpecialListWhereCache.Compiled(qb.getSelection(), qb.getSelectionArguments(),
+                whereHash, where.get().getQueryValidUntil());
     }
 
     @Override
@@ -257,6 +297,7 @@ public class SpecialList extends ListMirakel {
                      getSyncState() == SYNC_STATE.IS_SYNCED ? getSyncState() : SYNC_STATE.NEED_SYNC);
         update(URI, getContentValues(),
                ModelBase.ID + " = " + Math.abs(getId()), null);
+        SpecialListWhereCache.invalidate();
     }
 
     /**
@@ -306,6 +347,45 @@ public class SpecialList extends ListMirakel {
         return cv;
     }
 
+    /**
+     * Count the tasks of all given special lists with one query, every where
+     * clause becomes a conditional count over the undone tasks
+     *
+     * @param lists The special lists
+     * @return The number of tasks per list id
+     */
+    @NonNull
+    public static Map<Long, Long> countTasks(@NonNull final List<SpecialList> lists) {
+        final Map<Long, Long> counts = new HashMap<>(lists.size());
+        if (lists.isEmpty()) {
+            return counts;
+        }
+        final String[] projection = new String[lists.size()];
+        // the arguments of the projection come before the ones of the selection
+        final List<String> args = new ArrayList<>();
+        for (int i = 0; i < lists.size(); i++) {
+            final MirakelQueryBuilder where = lists.get(i).getWhereQueryForTasks();
+            if (where.getSelection().trim().isEmpty()) {
+                projection[i] = "count(*)";
+            } else {
+                projection[i] = "count(CASE WHEN (" + where.getSelection() + ") THEN 1 END)";
+                args.addAll(where.getSelectionArguments());
+            }
+        }
+        final MirakelQueryBuilder filter = Task.addBasicFiler(new MirakelQueryBuilder(context).and(
+                                               Task.DONE, Operation.EQ, false));
+        args.addAll(filter.getSelectionArguments());
+        final Cursor c = query(Task.URI, projection, filter.getSelection(),
+                               args.toArray(new String[args.size()]), null);
+        if (c.moveToFirst()) {
+            for (int i = 0; i < lists.size(); i++) {
+                counts.put(lists.get(i).getId(), c.getLong(i));
+            }
+        }
+        c.close();
+        return counts;
+    }
+
     /**
      * Get all SpecialLists
      *
@@ -336,7 +416,46 @@ public class SpecialList extends ListMirakel {
      * @return List
      */
     public static Optional<SpecialList> getSpecial(final long listId) {
-        return new MirakelQueryBuilder(context).get(SpecialList.class, Math.abs(listId));
+        final ListMirakel cached = ListCache.get(-Math.abs(listId));
+        if (cached instanceof SpecialList) {
+            return Optional.of((SpecialList) cached);
+        }
+        final long generation = ListCache.getGeneration();
+        final Optional<SpecialList> specialList = new MirakelQueryBuilder(context).get(SpecialList.class,
+                Math.abs(listId));
+        if (specialList.isPresent()) {
+            ListCache.put(specialList.get(), generation);
+        }
+        return specialList;
+    }
+
+    /**
+     * Get all special lists with the given ids in one query
+     *
+     * @param listIds List–IDs, the sign is ignored
+     * @return The special lists which exist
+     */
+    @NonNull
+    public static List<SpecialList> getSpecials(@NonNull final Collection<Long> listIds) {
+        final List<SpecialList> lists = new ArrayList<>(listIds.size());
+        final List<Long> missing = new ArrayList<>(listIds.size());
+        for (final Long id : listIds) {
+            final ListMirakel cached = ListCache.get(-Math.abs(id));
+            if (cached instanceof SpecialList) {
+                lists.add((SpecialList) cached);
+            } else {
+                missing.add(Math.abs(id));
+            }
+        }
+        if (!missing.isEmpty()) {
+            final long generation = ListCache.getGeneration();
+            for (final SpecialList list : new MirakelQueryBuilder(context).and(ID, Operation.IN,
+                    missing).getList(SpecialList.class)) {
+                ListCache.put(list, generation);
+                lists.add(list);
+            }
+        }
+        return lists;
     }
 
     /**
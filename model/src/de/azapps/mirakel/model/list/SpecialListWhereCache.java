@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Mirakel is an Android App for managing your ToDo-Lists
+ *
+ * Copyright (c) 2013-2014 Anatolij Zelenin, Georg Semmler.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package de.azapps.mirakel.model.list;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled where clauses of the special lists.
+ *
+ * Every where tree is turned into a selection and its arguments once. The
+ * entries are keyed by the id of the special list and checked against the hash
+ * of its serialized where. Trees with date-relative properties are compiled
+ * again when their reference date changes. All entries are dropped whenever a
+ * special list is written, because a where may include other special lists.
+ * Like the ListCache this only works in the process of the content provider.
+ */
+public class SpecialListWhereCache {
+
+    static class Compiled {
+        @NonNull
+        final String selection;
+        @NonNull
+        final List<String> arguments;
+        private final int whereHash;
+        final long validUntil;
+
+        Compiled(@NonNull final String selection, @NonNull final List<String> arguments,
+                 final int whereHash, final long validUntil) {
+            this.selection = selection;
+            this.arguments = Collections.unmodifiableList(new ArrayList<>(arguments));
+            this.whereHash = whereHash;
+            this.validUntil = validUntil;
+        }
+    }
+
+    private static final Map<Long, Compiled> compiled = new HashMap<>();
+
+    private SpecialListWhereCache() {
+        // only static stuff here
+    }
+
+    @Nullable
+    static synchronized Compiled get(final long listId, final int whereHash) {
+        if (!ListCache.isEnabled()) {
+            return null;
+        }
+        final Compiled entry = compiled.get(listId);
+        if ((entry == null) || (entry.whereHash != whereHash)
+            || (System.currentTimeMillis() >= entry.validUntil)) {
+            return null;
+        }
+        return entry;
+    }
+
+    static synchronized void put(final long listId, @NonNull final Compiled entry) {
+        if (ListCache.isEnabled()) {
+            compiled.put(listId, entry);
+        }
+    }
+
+    /**
+     * Drop all compiled where clauses
+     */
+    public static synchronized void invalidate() {
+        compiled.clear();
+    }
+}
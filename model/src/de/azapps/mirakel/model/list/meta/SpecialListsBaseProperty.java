@@ -39,6 +39,14 @@ public abstract class SpecialListsBaseProperty implements Parcelable {
     @NonNull
     abstract public MirakelQueryBuilder getWhereQueryBuilder(final @NonNull Context ctx);
 
+    /**
+     * @return The time (in ms) until the query of getWhereQueryBuilder stays the
+     * same, Long.MAX_VALUE if it does not depend on the current time
+     */
+    public long getQueryValidUntil() {
+        return Long.MAX_VALUE;
+    }
+
     // for db
     @NonNull
     abstract public String serialize();
@@ -103,6 +103,15 @@ public class SpecialListsConjunctionList extends SpecialListsBaseProperty {
         return qb;
     }
 
+    @Override
+    public long getQueryValidUntil() {
+        long validUntil = Long.MAX_VALUE;
+        for (final SpecialListsBaseProperty c : childs) {
+            validUntil = Math.min(validUntil, c.getQueryValidUntil());
+        }
+        return validUntil;
+    }
+
     @NonNull
     @Override
     public String serialize() {
@@ -49,6 +49,11 @@ public class SpecialListsContentProperty extends SpecialListsStringProperty {
         return Task.CONTENT;
     }
 
+    @Override
+    public boolean isFullTextIndexed() {
+        return true;
+    }
+
     @NonNull
     @Override
     public String getTitle(@NonNull Context ctx) {
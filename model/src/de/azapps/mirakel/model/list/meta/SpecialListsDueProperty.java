@@ -98,11 +98,7 @@ public class SpecialListsDueProperty extends SpecialListsBooleanProperty {
     public MirakelQueryBuilder getWhereQueryBuilder(@NonNull final Context ctx) {
         final MirakelQueryBuilder qb = new MirakelQueryBuilder(ctx).and(Task.DUE,
                 MirakelQueryBuilder.Operation.NOT_EQ, (String)null);
-        final Calendar date = new GregorianCalendar();
-        date.setTimeZone(TimeZone.getTimeZone(TimeZone.getAvailableIDs(0)[0]));
-        date.set(Calendar.SECOND, 0);
-        date.set(Calendar.MINUTE, 0);
-        date.set(Calendar.HOUR, 0);
+        final Calendar date = getReferenceDate();
         switch (this.unit) {
         case DAY:
             date.add(Calendar.DAY_OF_MONTH, length);
@@ -117,6 +113,28 @@ public class SpecialListsDueProperty extends SpecialListsBooleanProperty {
         return qb.and(Task.DUE, isSet ? Operation.GT : Operation.LT, date.getTimeInMillis() / 1000L);
     }
 
+    @NonNull
+    private static Calendar getReferenceDate() {
+        final Calendar date = new GregorianCalendar();
+        date.setTimeZone(TimeZone.getTimeZone(TimeZone.getAvailableIDs(0)[0]));
+        date.set(Calendar.SECOND, 0);
+        date.set(Calendar.MINUTE, 0);
+        date.set(Calendar.HOUR, 0);
+        return date;
+    }
+
+    /**
+     * The reference date only keeps AM/PM of the current time (in UTC), so the
+     * query changes every twelve hours
+     */
+    @Override
+    public long getQueryValidUntil() {
+        final Calendar next = getReferenceDate();
+        next.set(Calendar.MILLISECOND, 0);
+        next.add(Calendar.HOUR, 12);
+        return next.getTimeInMillis();
+    }
+
     @NonNull
     @Override
     public String serialize() {
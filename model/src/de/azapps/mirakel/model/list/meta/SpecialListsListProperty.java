@@ -25,6 +25,7 @@ import android.support.annotation.NonNull;
 import android.text.TextUtils;
 
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
 
@@ -97,6 +98,21 @@ public class SpecialListsListProperty extends SpecialListsSetProperty {
         }
     }
 
+    @Override
+    public long getQueryValidUntil() {
+        // the queries of the included special lists become part of this one
+        long validUntil = Long.MAX_VALUE;
+        for (final int p : this.content) {
+            if (p < 0) {
+                final Optional<SpecialList> special = SpecialList.getSpecial(p);
+                if (special.isPresent() && special.get().getWhere().isPresent()) {
+                    validUntil = Math.min(validUntil, special.get().getWhere().get().getQueryValidUntil());
+                }
+            }
+        }
+        return validUntil;
+    }
+
     @NonNull
     @Override
     public String getSummary(@NonNull final Context ctx) {
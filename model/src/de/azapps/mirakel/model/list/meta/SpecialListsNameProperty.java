@@ -47,6 +47,11 @@ public class SpecialListsNameProperty extends SpecialListsStringProperty {
         return ModelBase.NAME;
     }
 
+    @Override
+    public boolean isFullTextIndexed() {
+        return true;
+    }
+
     @NonNull
     @Override
     public String getTitle(@NonNull Context ctx) {
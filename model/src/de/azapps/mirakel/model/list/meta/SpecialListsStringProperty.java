@@ -29,8 +29,13 @@ import de.azapps.mirakel.model.query_builder.MirakelQueryBuilder.Operation;
 
 public abstract class SpecialListsStringProperty extends
     SpecialListsBooleanProperty {
+    /**
+     * CONTAINS matches any substring, WORDS uses the full text index and
+     * matches words starting with the search string. Only append new types,
+     * the ordinal is stored.
+     */
     public enum Type {
-        BEGIN, END, CONTAINS;
+        BEGIN, END, CONTAINS, WORDS;
     }
 
     @NonNull
@@ -100,11 +105,22 @@ public abstract class SpecialListsStringProperty extends
         case CONTAINS:
             return mContext.getString(R.string.where_like_contain_text,
                                       "\"" + this.searchString + "\"");
+        case WORDS:
+            return mContext.getString(R.string.where_like_words_text,
+                                      "\"" + this.searchString + "\"");
         default:
             return "";
         }
     }
 
+    /**
+     * @return true if the property is a column of the full text index of the
+     * tasks, only then Type.WORDS can be used
+     */
+    public boolean isFullTextIndexed() {
+        return false;
+    }
+
     @NonNull
     @Override
     public MirakelQueryBuilder getWhereQueryBuilder(@NonNull final Context ctx) {
@@ -117,6 +133,11 @@ public abstract class SpecialListsStringProperty extends
         switch (this.type) {
         case BEGIN:
             return qb.and(getPropertyName(), op, searchString + "%");
+        case WORDS:
+            if (isFullTextIndexed()) {
+                return qb.and(getPropertyName(), isSet ? Operation.NOT_MATCH : Operation.MATCH, searchString);
+            }
+        //$FALL-THROUGH$
         case CONTAINS:
             return qb.and(getPropertyName(), op, "%" + searchString + "%");
         case END:
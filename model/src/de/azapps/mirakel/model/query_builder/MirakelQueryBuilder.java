@@ -30,9 +30,6 @@ import android.text.TextUtils;
 
 import com.google.common.base.Optional;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -40,7 +37,9 @@ import java.util.List;
 
 import de.azapps.mirakel.model.MirakelInternalContentProvider;
 import de.azapps.mirakel.model.ModelBase;
-import de.azapps.tools.Log;
+import de.azapps.mirakel.model.SaveQueue;
+import de.azapps.mirakel.model.task.Task;
+import de.azapps.mirakel.model.task.TaskRow;
 
 import static com.google.common.base.Optional.absent;
 import static com.google.common.base.Optional.of;
@@ -173,30 +172,10 @@ public class MirakelQueryBuilder {
         final boolean isModel = !isNull && (filterInput.get(0) instanceof ModelBase);
         final boolean isBoolean = !isNull && ((clazz.equals(boolean.class))
                                               || (clazz.equals(Boolean.class)));
-        Method getId = null;
-        if (isModel) {
-            try {
-                getId = clazz.getMethod("getId");
-            } catch (final NoSuchMethodException e) {
-                Log.wtf(TAG,
-                        "go and implement getId in " + clazz.getCanonicalName());
-                throw new IllegalArgumentException("go and implement getId in "
-                                                   + clazz.getCanonicalName(), e);
-            }
-        }
         final List<String> filter = new ArrayList<>(filterInput.size());
         for (final T el : filterInput) {
             if (isModel) {
-                try {
-                    filter.add(String.valueOf(getId.invoke(el)));
-                } catch (IllegalAccessException | InvocationTargetException e) {
-                    Log.wtf(TAG,
-                            "go and make getId in " + clazz.getCanonicalName()
-                            + " accessible");
-                    throw new IllegalArgumentException(
-                        "go and implement getId in "
-                        + clazz.getCanonicalName(), e);
-                }
+                filter.add(String.valueOf(((ModelBase) el).getId()));
             } else if (isBoolean) {
                 filter.add((Boolean) el ? "1" : "0");
             } else if (!isNull) {
@@ -235,6 +214,62 @@ public class MirakelQueryBuilder {
         return this;
     }
 
+    /**
+     * Appends a full text search over the tasks
+     * <p/>
+     * Every word of the search string is matched as prefix, all words must be
+     * found. If the search string has no words (e.g. "-"), the name or the
+     * column is searched with LIKE instead.
+     *
+     * @param conjunction
+     *            How to connect the old query with the new one
+     * @param field
+     *            A column of the full text index (name, content, tags) or the
+     *            index itself to search all columns
+     * @param op
+     *            MATCH or NOT_MATCH
+     * @param search
+     *            What the user typed
+     * @return
+     */
+    private MirakelQueryBuilder appendMatch(final Conjunction conjunction, final String field,
+                                            final Operation op, final String search) {
+        final String match = toPrefixMatch(search);
+        if (match.isEmpty()) {
+            // nothing the index could search for
+            final String column = Task.FTS_TABLE.equals(field) ? ModelBase.NAME : field;
+            return appendCondition(conjunction, column,
+                                   NOT.contains(op) ? Operation.NOT_LIKE : Operation.LIKE,
+                                   Collections.singletonList("?"),
+                                   Collections.singletonList('%' + search + '%'));
+        }
+        String not = "";
+        if (NOT.contains(op)) {
+            not = "NOT ";
+        }
+        return appendCondition(conjunction, ModelBase.ID + ' ' + not + "IN (SELECT docid FROM "
+                               + Task.FTS_TABLE + " WHERE " + field + " MATCH ?)", Collections.singletonList(match));
+    }
+
+    /**
+     * Converts the search string into a fts query, where every word is
+     * matched as prefix
+     */
+    @NonNull
+    public static String toPrefixMatch(@NonNull final String search) {
+        final StringBuilder match = new StringBuilder(search.length() + 8);
+        for (final String word : search.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                // quoted, so words like OR are no operators
+                match.append('"').append(word).append("*\"");
+            }
+        }
+        return match.toString();
+    }
+
     /**
      * Builds the query and returns it
      * <p/>
@@ -306,6 +341,8 @@ public class MirakelQueryBuilder {
         } else if (op == Operation.IN || op == Operation.NOT_IN) {
             return appendCondition(Conjunction.AND, field, op, Collections.singletonList(filter),
                                    new ArrayList<String>(0));
+        } else if (op == Operation.MATCH || op == Operation.NOT_MATCH) {
+            return appendMatch(Conjunction.AND, field, op, filter);
         }
         return and (field, op, Arrays.asList(new String[] { "?" }),
                     Collections.singletonList(filter));
@@ -355,6 +392,10 @@ public class MirakelQueryBuilder {
         return appendCondition(Conjunction.AND, condition);
     }
 
+    public MirakelQueryBuilder and (final String condition, final List<String> conditionArguments) {
+        return appendCondition(Conjunction.AND, condition, conditionArguments);
+    }
+
     // or
     public <T extends Number> MirakelQueryBuilder or (final String field,
             final Operation op, final T filter) {
@@ -391,6 +432,8 @@ public class MirakelQueryBuilder {
         } else if (op == Operation.IN) {
             return appendCondition(Conjunction.OR, field, Operation.IN, Collections.singletonList(filter),
                                    new ArrayList<String>(0));
+        } else if (op == Operation.MATCH || op == Operation.NOT_MATCH) {
+            return appendMatch(Conjunction.OR, field, op, filter);
         }
         return or (field, op, Arrays.asList(new String[] {"?"}),
                    Collections.singletonList(filter));
@@ -439,33 +482,39 @@ public class MirakelQueryBuilder {
     }
 
     public static <T> T cursorToObject(final Cursor c, final Class<T> clazz) {
-        try {
-            final Constructor<T> constructor = clazz.getConstructor(Cursor.class);
-            return constructor.newInstance(c);
-        } catch (final NoSuchMethodException e) {
-            Log.wtf(TAG, "go and implement a the constructor " + clazz.getCanonicalName() + "(Cursor)");
-            throw new IllegalArgumentException("go and implement a the constructor " + clazz.getCanonicalName()
-                                               + "(Cursor)", e);
-        } catch (IllegalAccessException | InvocationTargetException | InstantiationException e) {
-            Log.wtf(TAG, "go and make the constructor " + clazz.getCanonicalName() + "(Cursor) accessible");
-            throw new IllegalArgumentException("go and make the constructor " + clazz.getCanonicalName() +
-                                               "(Cursor) accessible", e);
-        }
+        return RowMappers.get(clazz).fromRow(c);
     }
 
     public <T extends ModelBase> List<T> getList(final Class<T> clazz) {
-        final Cursor c = query(setupQueryBuilder(clazz));
+        final RowMapper<T> mapper = RowMappers.get(clazz);
+        final Cursor c = query(setupQueryBuilder(mapper));
+        final RowMapper<T> rowMapper = mapper.forCursor(c);
         final List<T> l = new ArrayList<>(c.getCount());
         if (c.moveToFirst()) {
             do {
-                final T obj = cursorToObject(c, clazz);
-                l.add(obj);
+                l.add(rowMapper.fromRow(c));
             } while (c.moveToNext());
         }
         c.close();
+        SaveQueue.overlay(l);
         return l;
     }
 
+    /**
+     * Query the tasks matching this builder as {@link TaskRow}s. The projection
+     * is replaced by {@link TaskRow#PROJECTION}.
+     */
+    @NonNull
+    public List<TaskRow> getRows() {
+        final Cursor c = select(TaskRow.PROJECTION).query(Task.URI);
+        final List<TaskRow> rows = new ArrayList<>(c.getCount());
+        while (c.moveToNext()) {
+            rows.add(new TaskRow(c));
+        }
+        c.close();
+        return rows;
+    }
+
     @NonNull
     public <T extends ModelBase> Optional<T> get(final Class<T> clazz, final long id) {
         and (ModelBase.ID, Operation.EQ, id);
@@ -475,40 +524,34 @@ public class MirakelQueryBuilder {
 
     @NonNull
     public <T extends ModelBase> Optional<T> get(final Class<T> clazz) {
+        final Optional<T> stored = getStored(clazz);
+        if (stored.isPresent()) {
+            return of(SaveQueue.overlay(stored.get()));
+        }
+        return stored;
+    }
+
+    /**
+     * Like {@link #get(Class)}, but always returns the row as it is stored,
+     * even if edits of it are still waiting in the {@link SaveQueue}
+     */
+    @NonNull
+    public <T extends ModelBase> Optional<T> getStored(final Class<T> clazz) {
         Optional<T> a = absent();
-        final Cursor c = query(setupQueryBuilder(clazz));
+        final RowMapper<T> mapper = RowMappers.get(clazz);
+        final Cursor c = query(setupQueryBuilder(mapper));
         if (c.moveToFirst()) {
-            a = of(cursorToObject(c, clazz));
+            a = of(mapper.forCursor(c).fromRow(c));
         }
         c.close();
         return a;
     }
 
-    private <T> Uri setupQueryBuilder(final Class<T> clazz) {
-        final Uri uri;
-        try {
-            uri = (Uri) clazz.getField("URI").get(null);
-        } catch (NoSuchFieldException | IllegalAccessException e) {
-            Log.wtf(TAG,
-                    "go and implement a URI  for" + clazz.getCanonicalName());
-            throw new IllegalArgumentException("go and implement a URI for "
-                                               + clazz.getCanonicalName(), e);
-        }
+    private Uri setupQueryBuilder(final RowMapper<?> mapper) {
         if (this.projection.isEmpty()) {
-            try {
-                // can be null, because field should be static
-                this.projection = Arrays.asList((String[]) clazz.getField(
-                                                    "allColumns").get(null));
-            } catch (NoSuchFieldException | IllegalAccessException e) {
-                Log.wtf(TAG,
-                        "go and implement allColumns for "
-                        + clazz.getCanonicalName());
-                throw new IllegalArgumentException(
-                    "go and implement allColumns for "
-                    + clazz.getCanonicalName(), e);
-            }
+            this.projection = mapper.getColumns();
         }
-        return uri;
+        return mapper.getUri();
     }
 
 
@@ -539,10 +582,11 @@ public class MirakelQueryBuilder {
 
     static final List<Operation> NOT = Arrays.asList(Operation.NOT_EQ,
                                        Operation.NOT_LIKE, Operation.NOT_GT, Operation.NOT_GE,
-                                       Operation.NOT_LT, Operation.NOT_LE, Operation.NOT_IN);
+                                       Operation.NOT_LT, Operation.NOT_LE, Operation.NOT_IN, Operation.NOT_MATCH);
 
     public enum Operation {
-        EQ, LIKE, GT, GE, LT, LE, IN, NOT_EQ, NOT_LIKE, NOT_GT, NOT_GE, NOT_LT, NOT_LE, NOT_IN;
+        EQ, LIKE, GT, GE, LT, LE, IN, MATCH, NOT_EQ, NOT_LIKE, NOT_GT, NOT_GE, NOT_LT, NOT_LE, NOT_IN,
+        NOT_MATCH;
 
         @Override
         public String toString() {
@@ -568,6 +612,9 @@ public class MirakelQueryBuilder {
             case IN:
             case NOT_IN:
                 return "IN";
+            case MATCH:
+            case NOT_MATCH:
+                return "MATCH";
             default:
                 throw new IllegalArgumentException("Unknown Operation "
                 + super.toString());
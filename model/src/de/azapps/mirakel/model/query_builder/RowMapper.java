@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Mirakel is an Android App for managing your ToDo-Lists
+ *
+ * Copyright (c) 2013-2014 Anatolij Zelenin, Georg Semmler.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package de.azapps.mirakel.model.query_builder;
+
+import android.database.Cursor;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Creates model objects from the rows of a cursor, see {@link RowMappers}.
+ *
+ * @param <T> The model class
+ */
+public abstract class RowMapper<T> {
+    @NonNull
+    private final Uri uri;
+    @NonNull
+    private final List<String> columns;
+
+    protected RowMapper(@NonNull final Uri uri, @NonNull final String[] columns) {
+        this.uri = uri;
+        this.columns = Collections.unmodifiableList(Arrays.asList(columns));
+    }
+
+    /**
+     * @return The uri to query the objects from
+     */
+    @NonNull
+    public Uri getUri() {
+        return this.uri;
+    }
+
+    /**
+     * @return The default projection
+     */
+    @NonNull
+    public List<String> getColumns() {
+        return this.columns;
+    }
+
+    /**
+     * Called once per cursor before reading its rows. Override this if the
+     * mapper can share something between the rows of one cursor.
+     *
+     * @param cursor The cursor which will be read
+     * @return A mapper for the rows of this cursor
+     */
+    @NonNull
+    public RowMapper<T> forCursor(@NonNull final Cursor cursor) {
+        return this;
+    }
+
+    /**
+     * @param cursor A cursor pointing to the row
+     * @return The object of the current row
+     */
+    @NonNull
+    public abstract T fromRow(@NonNull final Cursor cursor);
+}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Mirakel is an Android App for managing your ToDo-Lists
+ *
+ * Copyright (c) 2013-2014 Anatolij Zelenin, Georg Semmler.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package de.azapps.mirakel.model.query_builder;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import de.azapps.mirakel.model.account.AccountMirakel;
+import de.azapps.mirakel.model.file.FileMirakel;
+import de.azapps.mirakel.model.list.ListMirakel;
+import de.azapps.mirakel.model.list.ListResolver;
+import de.azapps.mirakel.model.list.SpecialList;
+import de.azapps.mirakel.model.recurring.Recurring;
+import de.azapps.mirakel.model.semantic.Semantic;
+import de.azapps.mirakel.model.tags.Tag;
+import de.azapps.mirakel.model.task.Task;
+import de.azapps.tools.Log;
+
+/**
+ * The row mappers of all models which can be queried by the
+ * {@link MirakelQueryBuilder}. If you add a model, register it here.
+ */
+public final class RowMappers {
+    private static final String TAG = "RowMappers";
+
+    private static final Map<Class<?>, RowMapper<?>> mappers = new HashMap<>();
+
+    static {
+        register(Task.class, new RowMapper<Task>(Task.URI, Task.allColumns) {
+            @NonNull
+            @Override
+            public RowMapper<Task> forCursor(@NonNull final Cursor cursor) {
+                // resolve the lists of all tasks at once
+                final ListResolver resolver = ListResolver.forCursor(cursor);
+                return new RowMapper<Task>(Task.URI, Task.allColumns) {
+                    @NonNull
+                    @Override
+                    public Task fromRow(@NonNull final Cursor cursor) {
+                        return new Task(cursor, resolver);
+                    }
+                };
+            }
+
+            @NonNull
+            @Override
+            public Task fromRow(@NonNull final Cursor cursor) {
+                return new Task(cursor);
+            }
+        });
+        register(ListMirakel.class, new RowMapper<ListMirakel>(ListMirakel.URI, ListMirakel.allColumns) {
+            @NonNull
+            @Override
+            public ListMirakel fromRow(@NonNull final Cursor cursor) {
+                return new ListMirakel(cursor);
+            }
+        });
+        register(SpecialList.class, new RowMapper<SpecialList>(SpecialList.URI, SpecialList.allColumns) {
+            @NonNull
+            @Override
+            public SpecialList fromRow(@NonNull final Cursor cursor) {
+                return new SpecialList(cursor);
+            }
+        });
+        register(Tag.class, new RowMapper<Tag>(Tag.URI, Tag.allColumns) {
+            @NonNull
+            @Override
+            public Tag fromRow(@NonNull final Cursor cursor) {
+                return new Tag(cursor);
+            }
+        });
+        register(Recurring.class, new RowMapper<Recurring>(Recurring.URI, Recurring.allColumns) {
+            @NonNull
+            @Override
+            public Recurring fromRow(@NonNull final Cursor cursor) {
+                return new Recurring(cursor);
+            }
+        });
+        register(Semantic.class, new RowMapper<Semantic>(Semantic.URI, Semantic.allColumns) {
+            @NonNull
+            @Override
+            public Semantic fromRow(@NonNull final Cursor cursor) {
+                return new Semantic(cursor);
+            }
+        });
+        register(FileMirakel.class, new RowMapper<FileMirakel>(FileMirakel.URI, FileMirakel.allColumns) {
+            @NonNull
+            @Override
+            public FileMirakel fromRow(@NonNull final Cursor cursor) {
+                return new FileMirakel(cursor);
+            }
+        });
+        register(AccountMirakel.class, new RowMapper<AccountMirakel>(AccountMirakel.URI,
+        AccountMirakel.allColumns) {
+            @NonNull
+            @Override
+            public AccountMirakel fromRow(@NonNull final Cursor cursor) {
+                return new AccountMirakel(cursor);
+            }
+        });
+    }
+
+    private RowMappers() {
+        // only static stuff here
+    }
+
+    private static <T> void register(@NonNull final Class<T> clazz, @NonNull final RowMapper<T> mapper) {
+        mappers.put(clazz, mapper);
+    }
+
+    @SuppressWarnings("unchecked")
+    @NonNull
+    public static <T> RowMapper<T> get(@NonNull final Class<T> clazz) {
+        final RowMapper<T> mapper = (RowMapper<T>) mappers.get(clazz);
+        if (mapper == null) {
+            Log.wtf(TAG, "go and register a RowMapper for " + clazz.getCanonicalName());
+            throw new IllegalArgumentException("go and register a RowMapper for "
+                                               + clazz.getCanonicalName());
+        }
+        return mapper;
+    }
+}
@@ -309,15 +309,24 @@ public class Recurring extends RecurringBase {
         if (weekdays.isEmpty()) {
             if ((!getStartDate().isPresent() || now.after(getStartDate().get()))
                 && (!getEndDate().isPresent() || now.before(getEndDate().get()))) {
-                do {
-                    c.add(Calendar.DAY_OF_MONTH, getDays());
-                    c.add(Calendar.MONTH, getMonths());
-                    c.add(Calendar.YEAR, getYears());
-                    if (!isForDue()) {
-                        c.add(Calendar.MINUTE, getMinutes());
-                        c.add(Calendar.HOUR, getHours());
+                final long maxInterval = getMaxIntervalMillis();
+                if (onlyOnce || (maxInterval <= 0L)) {
+                    addInterval(c, 1);
+                } else if ((getMonths() != 0) || (getYears() != 0)) {
+                    if (hasOnlyMonthsAndYears()) {
+                        addMonthsAndYears(c, now, getMonths(), getYears());
+                    } else {
+                        do {
+                            addInterval(c, 1);
+                        } while (c.before(now));
                     }
-                } while (c.before(now) && !onlyOnce);
+                } else {
+                    do {
+                        // jump over all intervals which certainly end before now
+                        final long times = (now.getTimeInMillis() - c.getTimeInMillis()) / maxInterval;
+                        addInterval(c, (int) Math.max(1L, Math.min(times, Integer.MAX_VALUE / 1000L)));
+                    } while (c.before(now));
+                }
             }
         } else {
             int diff = 8;
@@ -339,6 +348,87 @@ public class Recurring extends RecurringBase {
         return of(c);
     }
 
+    private void addInterval(final @NonNull Calendar c, final int times) {
+        c.add(Calendar.DAY_OF_MONTH, getDays() * times);
+        c.add(Calendar.MONTH, getMonths() * times);
+        c.add(Calendar.YEAR, getYears() * times);
+        if (!isForDue()) {
+            c.add(Calendar.MINUTE, getMinutes() * times);
+            c.add(Calendar.HOUR, getHours() * times);
+        }
+    }
+
+    private boolean hasOnlyMonthsAndYears() {
+        return (getDays() == 0) && (getMonths() >= 0) && (getYears() >= 0)
+               && (isForDue() || ((getMinutes() == 0) && (getHours() == 0)));
+    }
+
+    /**
+     * Add months and years until c is not before now, like adding them one
+     * step at a time. Every step clamps the day to the length of the month it
+     * ends in, so the day of the result is the smallest month length crossed
+     * (Jan 31 -> Feb 28 -> Mar 28). Only a time of day in a daylight saving
+     * gap, which the steps would move once, is kept.
+     */
+    static void addMonthsAndYears(@NonNull final Calendar c, @NonNull final Calendar now,
+                                  final int months, final int years) {
+        final int step = months + (12 * years);
+        // now in the time zone of c
+        final Calendar end = (Calendar) c.clone();
+        end.setTimeInMillis(now.getTimeInMillis());
+        final int start = (c.get(Calendar.YEAR) * 12) + c.get(Calendar.MONTH);
+        final int monthsBetween = ((end.get(Calendar.YEAR) * 12) + end.get(Calendar.MONTH)) - start;
+        // all but the last step end in a month before now, so they are taken
+        final int times = (step > 0) ? Math.max(0, (monthsBetween / step) - 1) : 0;
+        if (times > 0) {
+            int day = c.get(Calendar.DAY_OF_MONTH);
+            int month = start;
+            // the calendar repeats every 400 years, so the later steps cross no new month lengths
+            final int crossed = Math.min(times, 400 * 12);
+            for (int i = 0; (i < crossed) && (day > 28); i++) {
+                month += months;
+                day = Math.min(day, getMonthLength(month / 12, month % 12));
+                month += 12 * years;
+                day = Math.min(day, getMonthLength(month / 12, month % 12));
+            }
+            final int target = start + (times * step);
+            c.set(target / 12, target % 12, day);
+        }
+        do {
+            c.add(Calendar.MONTH, months);
+            c.add(Calendar.YEAR, years);
+        } while (c.before(now));
+    }
+
+    private static int getMonthLength(final int year, final int month) {
+        switch (month) {
+        case Calendar.FEBRUARY:
+            final boolean leap = ((year % 4) == 0) && (((year % 100) != 0) || ((year % 400) == 0));
+            return leap ? 29 : 28;
+        case Calendar.APRIL:
+        case Calendar.JUNE:
+        case Calendar.SEPTEMBER:
+        case Calendar.NOVEMBER:
+            return 30;
+        default:
+            return 31;
+        }
+    }
+
+    /**
+     * An upper bound for the length of one interval, days may be longer than
+     * 24 hours because of daylight saving time and months have up to 31 days
+     */
+    private long getMaxIntervalMillis() {
+        final long hour = 60L * 60L * 1000L;
+        long interval = (getDays() * 26L * hour) + (getMonths() * 32L * 24L * hour)
+                        + (getYears() * 367L * 24L * hour);
+        if (!isForDue()) {
+            interval += (getMinutes() * 60L * 1000L) + (getHours() * hour);
+        }
+        return interval;
+    }
+
     public static List<Pair<Integer, String>> getForDialog(final boolean isDue) {
         final MirakelQueryBuilder qb = new MirakelQueryBuilder(context).and(TEMPORARY,
                 Operation.EQ, false);
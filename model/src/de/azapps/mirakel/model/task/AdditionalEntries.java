@@ -0,0 +1,292 @@
+/*******************************************************************************
+ * Mirakel is an Android App for managing your ToDo-Lists
+ *
+ * Copyright (c) 2013-2014 Anatolij Zelenin, Georg Semmler.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package de.azapps.mirakel.model.task;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.ArrayMap;
+
+import java.util.Map;
+
+import de.azapps.tools.Log;
+
+/**
+ * Reads and writes the additional_entries column.
+ *
+ * The column holds a flat JSON object. The keys are plain strings, the values
+ * are kept as raw JSON (strings with their quotes, numbers, arrays, …), so a
+ * value is only decoded by the getter which needs it. Most tasks have none or
+ * only a few entries, so they are stored in an ArrayMap instead of a HashMap.
+ */
+final class AdditionalEntries {
+    private static final String TAG = "AdditionalEntries";
+
+    private AdditionalEntries() {
+        // only static stuff here
+    }
+
+    /**
+     * Parse the JSON object in one pass. Values may contain commas, colons and
+     * nested arrays or objects. If the string is broken, the entries before
+     * the error are returned.
+     */
+    @NonNull
+    static Map<String, String> parse(@Nullable final String json) {
+        final Map<String, String> entries = new ArrayMap<>();
+        if (json == null) {
+            return entries;
+        }
+        final int length = json.length();
+        int pos = skipWhitespace(json, 0);
+        if ((pos == length) || (json.charAt(pos) != '{')) {
+            // "" or "null"
+            return entries;
+        }
+        pos = skipWhitespace(json, pos + 1);
+        while ((pos < length) && (json.charAt(pos) != '}')) {
+            if (json.charAt(pos) != '"') {
+                break;
+            }
+            final int keyEnd = skipString(json, pos);
+            if (keyEnd == -1) {
+                break;
+            }
+            final String key = decodeString(json, pos + 1, keyEnd - 1);
+            pos = skipWhitespace(json, keyEnd);
+            if ((pos == length) || (json.charAt(pos) != ':')) {
+                break;
+            }
+            pos = skipWhitespace(json, pos + 1);
+            final int valueEnd = skipValue(json, pos);
+            if (valueEnd == -1) {
+                break;
+            }
+            entries.put(key, json.substring(pos, valueEnd).trim());
+            pos = skipWhitespace(json, valueEnd);
+            if ((pos < length) && (json.charAt(pos) == ',')) {
+                pos = skipWhitespace(json, pos + 1);
+            }
+        }
+        if ((pos == length) || (json.charAt(pos) != '}')) {
+            Log.w(TAG, "malformed additional entries: " + json);
+        }
+        return entries;
+    }
+
+    /**
+     * Write the entries as JSON object. The values are raw JSON and written as
+     * they are, missing values are written as null.
+     */
+    @NonNull
+    static String serialize(@NonNull final Map<String, String> entries) {
+        if (entries.isEmpty()) {
+            return "{}";
+        }
+        final StringBuilder json = new StringBuilder(entries.size() * 16);
+        json.append('{');
+        boolean first = true;
+        for (final Map.Entry<String, String> entry : entries.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appendQuoted(json, entry.getKey());
+            json.append(':').append((entry.getValue() == null) ? "null" : entry.getValue());
+        }
+        return json.append('}').toString();
+    }
+
+    /**
+     * @return The string as JSON string literal
+     */
+    @NonNull
+    static String quote(@NonNull final String value) {
+        final StringBuilder json = new StringBuilder(value.length() + 2);
+        appendQuoted(json, value);
+        return json.toString();
+    }
+
+    /**
+     * Decode a raw JSON string value. For other values the first and the last
+     * char are stripped, as it was always done.
+     */
+    @NonNull
+    static String unquote(@NonNull final String raw) {
+        if ((raw.length() >= 2) && (raw.charAt(0) == '"') && (skipString(raw, 0) == raw.length())) {
+            return decodeString(raw, 1, raw.length() - 1);
+        }
+        return raw.substring(1, raw.length() - 1);
+    }
+
+    private static void appendQuoted(@NonNull final StringBuilder json, @NonNull final String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                json.append("\\\"");
+                break;
+            case '\\':
+                json.append("\\\\");
+                break;
+            case '\n':
+                json.append("\\n");
+                break;
+            case '\r':
+                json.append("\\r");
+                break;
+            case '\t':
+                json.append("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    json.append(String.format("\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+                break;
+            }
+        }
+        json.append('"');
+    }
+
+    private static int skipWhitespace(@NonNull final String json, int pos) {
+        while ((pos < json.length()) && Character.isWhitespace(json.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * @param pos position of the opening quote
+     * @return position after the closing quote or -1 if the string does not end
+     */
+    private static int skipString(@NonNull final String json, int pos) {
+        pos++;
+        while (pos < json.length()) {
+            final char c = json.charAt(pos);
+            if (c == '\\') {
+                pos += 2;
+            } else if (c == '"') {
+                return pos + 1;
+            } else {
+                pos++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return position after the value or -1 if there is no valid value
+     */
+    private static int skipValue(@NonNull final String json, int pos) {
+        if (pos == json.length()) {
+            return -1;
+        }
+        final char first = json.charAt(pos);
+        if (first == '"') {
+            return skipString(json, pos);
+        }
+        if ((first == '[') || (first == '{')) {
+            int depth = 0;
+            while (pos < json.length()) {
+                final char c = json.charAt(pos);
+                if (c == '"') {
+                    pos = skipString(json, pos);
+                    if (pos == -1) {
+                        return -1;
+                    }
+                    continue;
+                }
+                if ((c == '[') || (c == '{')) {
+                    depth++;
+                } else if ((c == ']') || (c == '}')) {
+                    depth--;
+                    if (depth == 0) {
+                        return pos + 1;
+                    }
+                }
+                pos++;
+            }
+            return -1;
+        }
+        // number, true, false or null
+        final int start = pos;
+        while ((pos < json.length()) && (json.charAt(pos) != ',') && (json.charAt(pos) != '}')) {
+            pos++;
+        }
+        return (pos == start) ? -1 : pos;
+    }
+
+    /**
+     * Decode the chars between start (inclusive) and end (exclusive), which
+     * are the content of a JSON string without the quotes
+     */
+    @NonNull
+    private static String decodeString(@NonNull final String json, final int start, final int end) {
+        final int firstEscape = json.indexOf('\\', start);
+        if ((firstEscape == -1) || (firstEscape >= end)) {
+            return json.substring(start, end);
+        }
+        final StringBuilder decoded = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            final char c = json.charAt(i);
+            if ((c != '\\') || (i + 1 == end)) {
+                decoded.append(c);
+                continue;
+            }
+            final char escaped = json.charAt(++i);
+            switch (escaped) {
+            case 'b':
+                decoded.append('\b');
+                break;
+            case 'f':
+                decoded.append('\f');
+                break;
+            case 'n':
+                decoded.append('\n');
+                break;
+            case 'r':
+                decoded.append('\r');
+                break;
+            case 't':
+                decoded.append('\t');
+                break;
+            case 'u':
+                if (i + 4 < end) {
+                    try {
+                        decoded.append((char) Integer.parseInt(json.substring(i + 1, i + 5), 16));
+                        i += 4;
+                        break;
+                    } catch (final NumberFormatException ignored) {
+                        // keep it as it is
+                    }
+                }
+                decoded.append('\\').append(escaped);
+                break;
+            default:
+                // \" \\ \/
+                decoded.append(escaped);
+                break;
+            }
+        }
+        return decoded.toString();
+    }
+}
@@ -20,6 +20,7 @@
 package de.azapps.mirakel.model.task;
 
 import android.accounts.Account;
+import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
@@ -52,6 +53,7 @@ import de.azapps.mirakel.model.account.AccountMirakel;
 import de.azapps.mirakel.model.file.FileMirakel;
 import de.azapps.mirakel.model.list.ListMirakel;
 import de.azapps.mirakel.model.list.ListMirakel.SORT_BY;
+import de.azapps.mirakel.model.list.ListResolver;
 import de.azapps.mirakel.model.query_builder.MirakelQueryBuilder;
 import de.azapps.mirakel.model.query_builder.MirakelQueryBuilder.Operation;
 import de.azapps.mirakel.model.query_builder.MirakelQueryBuilder.Sorting;
@@ -62,7 +64,7 @@ import de.azapps.tools.Log;
 import de.azapps.tools.OptionalUtils;
 
 import static com.google.common.base.Optional.absent;
-import static com.google.common.base.Optional.fromNullable;
+import static com.google.common.base.Optional.of;
 
 public class Task extends TaskBase {
 
@@ -83,6 +85,8 @@ public class Task extends TaskBase {
 
     public static final String SUBTASK_TABLE = "subtasks";
     public static final String TABLE = "tasks";
+    public static final String FTS_TABLE = "tasks_fts";
+    public static final String FTS_TAGS = "tags";
     public static final String NO_PROJECT = "NO_PROJECT";
 
     private static final String TAG = "TasksDataSource";
@@ -135,42 +139,28 @@ public class Task extends TaskBase {
     }
 
     public Task(@NonNull final Cursor cursor) {
+        this(cursor, new ListResolver());
+    }
+
+    /**
+     * Create a task from a cursor and take the list from the resolver
+     *
+     * @param cursor   cursor pointing to the task
+     * @param resolver shared between all rows of the cursor
+     */
+    public Task(@NonNull final Cursor cursor, @NonNull final ListResolver resolver) {
         if (cursor.isAfterLast()) {
             throw new IllegalArgumentException("cursor out of bounds");
         }
-        if (cursor.isNull(cursor.getColumnIndex(DUE))) {
-            setDue(Optional.<Calendar>absent());
-        } else {
-            setDue(fromNullable(DateTimeHelper.createLocalCalendar(
-                                    cursor.getLong(cursor.getColumnIndex(DUE)), true)));
-        }
-        if (cursor.isNull(cursor.getColumnIndex(REMINDER))) {
-            setReminder(Optional.<Calendar>absent());
-        } else {
-            setReminder(fromNullable(DateTimeHelper.createLocalCalendar(cursor
-                                     .getLong(cursor.getColumnIndex(REMINDER)))));
-        }
-        final Calendar created_at;
-        if (cursor.isNull(cursor.getColumnIndex(DatabaseHelper.CREATED_AT))) {
-            created_at = new GregorianCalendar();
-        } else {
-            created_at = new GregorianCalendar();
-            created_at.setTimeInMillis(cursor.getLong(cursor
-                                       .getColumnIndex(DatabaseHelper.CREATED_AT)) * 1000L);
-        }
-        setCreatedAt(created_at);
-        final Calendar updated_at;
-        if (cursor.isNull(cursor.getColumnIndex(DatabaseHelper.UPDATED_AT))) {
-            updated_at = new GregorianCalendar();
-        } else {
-            updated_at = new GregorianCalendar();
-            updated_at.setTimeInMillis(cursor.getLong(cursor
-                                       .getColumnIndex(DatabaseHelper.UPDATED_AT)) * 1000L);
-        }
-        setUpdatedAt(updated_at);
+        // keep the timestamps as they are stored, the calendars are created on demand
+        this.due = getSeconds(cursor, DUE, NO_DATE);
+        this.reminder = getSeconds(cursor, REMINDER, NO_DATE);
+        final long now = System.currentTimeMillis() / 1000L;
+        this.createdAt = getSeconds(cursor, DatabaseHelper.CREATED_AT, now);
+        this.updatedAt = getSeconds(cursor, DatabaseHelper.UPDATED_AT, now);
         setId(cursor.getLong(cursor.getColumnIndex(ID)));
         setUUID(cursor.getString(cursor.getColumnIndex(UUID)));
-        this.list = ListMirakel.get(cursor.getLong(cursor.getColumnIndex(LIST_ID))).get();
+        this.list = resolver.get(cursor.getLong(cursor.getColumnIndex(LIST_ID)));
         setName(cursor.getString(cursor.getColumnIndex(NAME)));
         final String content = cursor.getString(cursor.getColumnIndex(CONTENT));
         setContent((content == null) ? "" : content); // keep that!
@@ -186,6 +176,13 @@ public class Task extends TaskBase {
         setProgress(cursor.getInt(cursor.getColumnIndex(PROGRESS)));
         setIsRecurringShown(cursor.getShort(cursor
                                             .getColumnIndex(RECURRING_SHOWN)) == 1);
+        markLoaded();
+    }
+
+    private static long getSeconds(@NonNull final Cursor cursor, @NonNull final String column,
+                                   final long fallback) {
+        final int index = cursor.getColumnIndex(column);
+        return cursor.isNull(index) ? fallback : cursor.getLong(index);
     }
 
     public Task(@NonNull final String name, @NonNull final ListMirakel listMirakel) {
@@ -223,10 +220,11 @@ public class Task extends TaskBase {
 
     @NonNull
     public static List<Task> cursorToTaskList(@NonNull final Cursor cursor) {
+        final ListResolver resolver = ListResolver.forCursor(cursor);
         cursor.moveToFirst();
-        final List<Task> tasks = new ArrayList<>();
+        final List<Task> tasks = new ArrayList<>(cursor.getCount());
         while (!cursor.isAfterLast()) {
-            tasks.add(new Task(cursor));
+            tasks.add(new Task(cursor, resolver));
             cursor.moveToNext();
         }
         cursor.close();
@@ -244,9 +242,10 @@ public class Task extends TaskBase {
                        + " AND done=1", null);
                 delete(URI, "sync_state=" + SYNC_STATE.ADD
                        + " AND done=1", null);
+                // deferred until the transaction is committed
+                NotificationService.updateServices(context);
             }
         });
-        NotificationService.updateServices(context);
     }
 
     /**
@@ -277,6 +276,20 @@ public class Task extends TaskBase {
         return qb.get(Task.class);
     }
 
+    /**
+     * Get the task as it is stored in the database, ignoring unsaved edits
+     * waiting in the SaveQueue
+     *
+     * @param id id of the task
+     * @return task
+     */
+    @NonNull
+    public static Optional<Task> getStored(final long id) {
+        return new MirakelQueryBuilder(context).and(ID, Operation.EQ, id)
+               .and(DatabaseHelper.SYNC_STATE_FIELD, Operation.NOT_EQ,
+                    SYNC_STATE.DELETE.toInt()).getStored(Task.class);
+    }
+
     @NonNull
     public static Optional<Task> getByUUID(final String uuid) {
         return new MirakelQueryBuilder(context)
@@ -329,6 +342,24 @@ public class Task extends TaskBase {
         return getTasks(list.getId(), sorting, showDone);
     }
 
+    /**
+     * Get the rows of all Tasks of a list, for showing them
+     *
+     * @param list
+     * @param sorting  The Sorting (@see ListMirakel.SORT_BY)
+     * @param showDone
+     * @return
+     */
+    @NonNull
+    public static List<TaskRow> getTaskRows(final ListMirakel list,
+                                            final SORT_BY sorting, final boolean showDone) {
+        final Optional<MirakelQueryBuilder> qb = getTasksQuery(list.getId(), sorting, showDone);
+        if (!qb.isPresent()) {
+            return new ArrayList<>(0);
+        }
+        return qb.get().getRows();
+    }
+
     /**
      * Get a Cursor with all Tasks of a list
      *
@@ -338,33 +369,37 @@ public class Task extends TaskBase {
      */
     private static Cursor getTasksCursor(final long listId, final SORT_BY sorting,
                                          final boolean showDone) {
-        final Optional<ListMirakel> l = ListMirakel.get(listId);
-        if (!l.isPresent()) {
-            Log.wtf(TAG, "list not found");
+        final Optional<MirakelQueryBuilder> qb = getTasksQuery(listId, sorting, showDone);
+        if (!qb.isPresent()) {
             // TODO throw something
             return new MatrixCursor(allColumns);
-        } else {
-            final MirakelQueryBuilder qb = l.get().getWhereQueryForTasks();
-            if (!showDone) {
-                qb.and(DONE, Operation.EQ, false);
-            }
-            return getTasksCursor(listId, sorting, qb);
         }
+        return qb.get().select(allColumns).query(URI);
     }
 
     /**
-     * Get a Cursor with all Tasks of a list
+     * Get the query for all Tasks of a list
      *
      * @param listId
      * @param sorting
-     * @return
+     * @return absent if the list does not exist
      */
-    private static Cursor getTasksCursor(final long listId, final SORT_BY sorting,
-                                         final MirakelQueryBuilder qb) {
+    @NonNull
+    private static Optional<MirakelQueryBuilder> getTasksQuery(final long listId,
+            final SORT_BY sorting, final boolean showDone) {
+        final Optional<ListMirakel> l = ListMirakel.get(listId);
+        if (!l.isPresent()) {
+            Log.wtf(TAG, "list not found");
+            return absent();
+        }
+        final MirakelQueryBuilder qb = l.get().getWhereQueryForTasks();
+        if (!showDone) {
+            qb.and(DONE, Operation.EQ, false);
+        }
         addBasicFiler(qb);
         qb.sort(Task.DONE, Sorting.ASC);
         ListMirakel.addSortBy(qb, sorting, listId);
-        return qb.select(allColumns).query(URI);
+        return of(qb);
     }
 
     private static Cursor getTasksCursor(final Task subtask) {
@@ -394,6 +429,38 @@ public class Task extends TaskBase {
         }
     }
 
+    /**
+     * Returns all tasks of the account which need to be synced or were
+     * modified after the given point in time
+     *
+     * @param account The account
+     * @param since Unix timestamp in seconds
+     * @return The tasks
+     */
+    public static List<Task> getTasksModifiedSince(final Account account, final long since) {
+        final Optional<AccountMirakel> accountMirakelOptional = AccountMirakel
+                .get(account);
+        if (!accountMirakelOptional.isPresent()) {
+            return new ArrayList<>();
+        }
+        return new MirakelQueryBuilder(context)
+               .and(new MirakelQueryBuilder(context)
+                    .and(DatabaseHelper.SYNC_STATE_FIELD, Operation.NOT_EQ,
+                         SYNC_STATE.NOTHING.toInt())
+                    .or(DatabaseHelper.UPDATED_AT, Operation.GT, since))
+               .and(LIST_ID,
+                    Operation.IN,
+                    ListMirakel.getListsForAccount(accountMirakelOptional.get())).getList(Task.class);
+    }
+
+    /**
+     * Recompute the materialized due day of all tasks, it depends on the
+     * timezone
+     */
+    public static void updateDueDaySort() {
+        update(MirakelInternalContentProvider.UPDATE_DUE_DAY_SORT_URI, new ContentValues(), null, null);
+    }
+
     public static List<Task> getTasksWithReminders() {
         return new MirakelQueryBuilder(context)
                .and(REMINDER, Operation.NOT_EQ, (String) null)
@@ -586,14 +653,7 @@ public class Task extends TaskBase {
     }
 
     public List<Task> getSubtasks() {
-        final Cursor c = Task.getTasksCursor(this);
-        final List<Task> subTasks = new ArrayList<>();
-        c.moveToFirst();
-        while (!c.isAfterLast()) {
-            subTasks.add(new Task(c));
-            c.moveToNext();
-        }
-        c.close();
+        final List<Task> subTasks = cursorToTaskList(Task.getTasksCursor(this));
 
         if (getRecurrence().isPresent()) {
             final Optional<Task> master = getRecurrenceMaster();
@@ -627,6 +687,35 @@ public class Task extends TaskBase {
                .count(MirakelInternalContentProvider.SUBTASK_URI) > 0;
     }
 
+    /**
+     * @return A copy of this task, which can be saved while this one is
+     * changed further
+     */
+    @NonNull
+    public Task copy() {
+        final Task copy = new Task();
+        copy.setId(getId());
+        copy.clearEdited();
+        copy.takeValuesFrom(this);
+        copy.takeRowFrom(this);
+        copy.dependencies = this.dependencies;
+        return copy;
+    }
+
+    /**
+     * Compare the next save with the row as it is stored now and not as it
+     * was loaded, another instance of this task may have been saved since
+     */
+    public void refreshRow() {
+        if (getId() == 0L) {
+            return;
+        }
+        final Optional<Task> stored = getStored(getId());
+        if (stored.isPresent()) {
+            takeRowFrom(stored.get());
+        }
+    }
+
     @Override
     public void save() {
         save(true);
@@ -649,16 +738,20 @@ public class Task extends TaskBase {
 
     private void unsafeSave(final boolean log, final boolean calledFromSync,
                             final boolean updateUpdatedAt) throws NoSuchListException {
-        if (!isEdited()) {
-            Log.d(Task.TAG, "new Task equals old, did not need to save it");
-            return;
-        }
         if (isStub()) {
             Log.d(TAG, "It's a stub, don't save it");
             return;
         }
+        // a loaded task is compared with its row, so changes to the calendars
+        // are found even if no setter was called
+        final Optional<ContentValues> changed = getChangedValues();
+        if (changed.isPresent() ? ((changed.get().size() == 0) && !isEdited("tags")) : !isEdited()) {
+            Log.d(Task.TAG, "new Task equals old, did not need to save it");
+            clearEdited();
+            return;
+        }
         if (isEdited(RECURRING) && !calledFromSync) {
-            final Optional<Task> oldOptional = Task.get(getId());
+            final Optional<Task> oldOptional = Task.getStored(getId());
             if (oldOptional.isPresent()) {
                 final Task old = oldOptional.get();
                 if ((old.getRecurrenceId() == -1) && (getRecurrenceId() != -1)) {
@@ -698,9 +791,13 @@ public class Task extends TaskBase {
         if (updateUpdatedAt && (Task.context != null)) {
             setUpdatedAt(new GregorianCalendar());
         }
-        final ContentValues values = getContentValues();
+        // write only the changed columns if we know the row, the recurrence
+        // handling above may have moved this task to another row
+        final Optional<ContentValues> changedValues = getChangedValues();
+        final ContentValues values = changedValues.isPresent() ? changedValues.get() :
+                                     getContentValues();
         if (log && !calledFromSync) {
-            final Optional<Task> old = Task.get(getId());
+            final Optional<Task> old = Task.getStored(getId());
             OptionalUtils.withOptional(old, new OptionalUtils.Procedure<Task>() {
                 @Override
                 public void apply(Task input) {
@@ -730,12 +827,15 @@ public class Task extends TaskBase {
                            + Recurring.TW_TABLE + " WHERE parent="
                            + master + ')', null);
                 }
-                update(URI, values, ModelBase.ID + " = " + getId(),
-                       null);
+                if (values.size() > 0) {
+                    // the row uri lets the observers handle just this task
+                    update(ContentUris.withAppendedId(URI, getId()), values,
+                           ModelBase.ID + " = " + getId(), null);
+                }
                 for (final Tag t : tags) {
                     saveTag(t);
                 }
-                clearEdited();
+                markLoaded();
             }
         });
         boolean updateReminders = false;
@@ -791,9 +891,10 @@ public class Task extends TaskBase {
             new Thread(new Runnable() {
                 @Override
                 public void run() {
+                    final ListResolver resolver = ListResolver.forCursor(c);
                     Task old = null;
                     do {
-                        final Task child = new Task(c);
+                        final Task child = new Task(c, resolver);
                         final int offset = c.getInt(allColumns.length);
                         if ((offset > 0) && (old != null) && (r != null) && old.getDue().isPresent()) {
                             child.setDue(r.addRecurring(old.getDue()));
@@ -985,18 +1086,18 @@ public class Task extends TaskBase {
         dest.writeStringArray(this.dependencies);
         dest.writeString(this.additionalEntriesString);
         dest.writeString(this.content);
-        dest.writeSerializable(this.createdAt);
+        dest.writeLong(getCreatedAtSeconds());
         dest.writeByte(done ? (byte) 1 : (byte) 0);
-        dest.writeSerializable(this.due.orNull());
+        dest.writeLong(getDueSeconds());
         dest.writeLong(this.list.getId());
         dest.writeInt(this.priority);
         dest.writeInt(this.progress);
         dest.writeLong(this.recurrence);
         dest.writeLong(this.recurringReminder);
         dest.writeByte(isRecurringShown ? (byte) 1 : (byte) 0);
-        dest.writeSerializable(this.reminder.orNull());
+        dest.writeLong(getReminderSeconds());
         dest.writeInt(this.syncState.ordinal());
-        dest.writeSerializable(this.updatedAt);
+        dest.writeLong(getUpdatedAtSeconds());
         dest.writeString(this.uuid);
         dest.writeTypedList(getTags());
         dest.writeLong(this.getId());
@@ -1008,9 +1109,9 @@ public class Task extends TaskBase {
         this.dependencies = in.createStringArray();
         this.additionalEntriesString = in.readString();
         this.content = in.readString();
-        this.createdAt = (Calendar) in.readSerializable();
+        this.createdAt = in.readLong();
         this.done = in.readByte() != 0;
-        this.due = fromNullable((Calendar) in.readSerializable());
+        this.due = in.readLong();
         long listId = in.readLong();
         Optional<ListMirakel> listMirakelOptional = ListMirakel.get(listId);
         if (listMirakelOptional.isPresent()) {
@@ -1021,10 +1122,10 @@ public class Task extends TaskBase {
         this.recurrence = in.readLong();
         this.recurringReminder = in.readLong();
         this.isRecurringShown = in.readByte() != 0;
-        this.reminder = fromNullable((Calendar) in.readSerializable());
+        this.reminder = in.readLong();
         final int tmpSyncState = in.readInt();
         this.syncState = tmpSyncState == -1 ? SYNC_STATE.NOTHING : SYNC_STATE.values()[tmpSyncState];
-        this.updatedAt = (Calendar) in.readSerializable();
+        this.updatedAt = in.readLong();
         this.uuid = in.readString();
         in.readTypedList(getTags(), Tag.CREATOR);
         this.setId(in.readLong());
@@ -1037,14 +1138,18 @@ public class Task extends TaskBase {
             additionalEntriesString = other.additionalEntriesString;
             content = other.content;
             createdAt = other.createdAt;
+            createdAtCalendar = other.createdAtCalendar;
             done = other.done;
             due = other.due;
+            dueCalendar = other.dueCalendar;
             list = other.list;
             priority = other.priority;
             progress = other.progress;
             reminder = other.reminder;
+            reminderCalendar = other.reminderCalendar;
             syncState = other.syncState;
             updatedAt = other.updatedAt;
+            updatedAtCalendar = other.updatedAtCalendar;
             setId(other.getId());
             setName(other.getName());
         } else if (!t.isPresent()) {
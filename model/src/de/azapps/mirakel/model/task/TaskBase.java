@@ -23,6 +23,7 @@ import android.content.ContentValues;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Optional;
 
 import java.text.ParseException;
@@ -30,9 +31,9 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import de.azapps.mirakel.DefinitionsHelper;
 import de.azapps.mirakel.DefinitionsHelper.NoSuchListException;
@@ -54,6 +55,7 @@ abstract class TaskBase extends ModelBase {
     public static final String CONTENT = "content";
     public static final String DONE = "done";
     public static final String DUE = "due";
+    public static final String DUE_DAY_SORT = "due_day_sort";
     public static final String LIST_ID = "list_id";
     public static final String PRIORITY = "priority";
     public static final String PROGRESS = "progress";
@@ -69,25 +71,56 @@ abstract class TaskBase extends ModelBase {
     protected String additionalEntriesString = "";
     @NonNull
     protected String content = "";
-    @NonNull
-    protected Calendar createdAt = new GregorianCalendar();
+    /**
+     * Marks an unset due date or reminder
+     */
+    static final long NO_DATE = Long.MIN_VALUE;
+    // The timestamps are kept as they are stored in the database (seconds since
+    // the epoch), these fields are the canonical value. The calendars are only
+    // created if a getter asks for one. Callers may modify them in place, so
+    // the get*Seconds() methods write a materialized calendar back first.
+    protected long createdAt;
+    @Nullable
+    protected Calendar createdAtCalendar;
     protected boolean done;
-    @NonNull
-    protected Optional<Calendar> due = absent();
+    protected long due = NO_DATE;
+    @Nullable
+    protected Calendar dueCalendar;
+    /**
+     * The columns passed to a setter, used to decide which side effects of a
+     * save are needed. Which columns are written is decided by comparing
+     * with loadedValues.
+     */
     @NonNull
     protected final Map<String, Boolean> edited = new HashMap<>();
+    /**
+     * The row as it is stored in the database. Taken only before the first
+     * change of a loaded task, null while the fields still match the row.
+     */
+    @Nullable
+    private ContentValues loadedValues = null;
+    @NonNull
+    private String loadedAdditionalEntriesString = "";
+    @Nullable
+    private Map<String, String> loadedAdditionalEntries = null;
+    /**
+     * True if loadedValues, or the fields while it is null, match the row
+     */
+    private boolean loaded;
     protected ListMirakel list;
     protected int priority;
     protected int progress;
     protected long recurrence;
     protected long recurringReminder;
     protected boolean isRecurringShown;
-    @NonNull
-    protected Optional<Calendar> reminder = absent();
+    protected long reminder = NO_DATE;
+    @Nullable
+    protected Calendar reminderCalendar;
     @NonNull
     protected SYNC_STATE syncState = SYNC_STATE.NOTHING;
-    @NonNull
-    protected Calendar updatedAt = new GregorianCalendar();
+    protected long updatedAt;
+    @Nullable
+    protected Calendar updatedAtCalendar;
     @NonNull
     protected String uuid = "";
     @NonNull
@@ -116,8 +149,8 @@ abstract class TaskBase extends ModelBase {
         setDue(newDue);
         setReminder(newReminder);
         setPriority(newPriority);
-        this.createdAt = newCreatedAt;
-        this.updatedAt = newUpdatedAt;
+        setCreatedAt(newCreatedAt);
+        setUpdatedAt(newUpdatedAt);
         syncState = newSyncState;
         this.additionalEntriesString = newAdditionalEntriesString;
         this.recurrence = recurring;
@@ -138,8 +171,8 @@ abstract class TaskBase extends ModelBase {
         setDue(Optional.<Calendar>absent());
         setReminder(Optional.<Calendar>absent());
         this.priority = 0;
-        this.createdAt = new GregorianCalendar();
-        this.updatedAt = new GregorianCalendar();
+        this.createdAt = System.currentTimeMillis() / 1000L;
+        this.updatedAt = this.createdAt;
         syncState = SYNC_STATE.NOTHING;
         this.recurrence = -1L;
         this.recurringReminder = -1L;
@@ -149,7 +182,7 @@ abstract class TaskBase extends ModelBase {
     }
 
     public void addAdditionalEntry(@NonNull final String key, final String value) {
-        initAdditionalEntries();
+        markEdited(TaskBase.ADDITIONAL_ENTRIES);
         Log.d(TaskBase.TAG, "add: " + key + ':' + value);
         this.additionalEntries.put(key, value);
     }
@@ -158,6 +191,198 @@ abstract class TaskBase extends ModelBase {
         this.edited.clear();
     }
 
+    /**
+     * Called when the fields of this task match its row in the database,
+     * either after loading or after saving it. The snapshot of the row is
+     * taken by {@link #snapshotRow()} before the first change, unless a
+     * calendar was handed out already, which can be changed without a setter.
+     * The additional entries are only copied if they were parsed.
+     */
+    void markLoaded() {
+        clearEdited();
+        this.loadedValues = null;
+        this.loadedAdditionalEntriesString = this.additionalEntriesString;
+        this.loadedAdditionalEntries = (this.additionalEntries == null) ? null :
+                                       new HashMap<>(this.additionalEntries);
+        this.loaded = true;
+        if ((this.dueCalendar != null) || (this.reminderCalendar != null)
+            || (this.createdAtCalendar != null) || (this.updatedAtCalendar != null)) {
+            snapshotRow();
+        }
+    }
+
+    /**
+     * Take the snapshot of the row if the fields still match it. Call this
+     * before changing a field of a loaded task.
+     */
+    private void snapshotRow() {
+        if (this.loaded && (this.loadedValues == null)) {
+            this.loadedValues = getRowValues();
+        }
+    }
+
+    @NonNull
+    private ContentValues getRowValues() {
+        final ContentValues cv = new ContentValues();
+        cv.put(ModelBase.NAME, getName());
+        for (final String column : ROW_COLUMNS) {
+            putColumn(cv, column);
+        }
+        return cv;
+    }
+
+    /**
+     * Take the values of another instance of this task, e.g. one with edits
+     * which are not written yet. The snapshot of the row is kept, so the next
+     * save writes the differences.
+     */
+    public void takeValuesFrom(@NonNull final Task source) {
+        final TaskBase other = source;
+        snapshotRow();
+        super.setName(other.getName());
+        this.uuid = other.uuid;
+        this.list = other.list;
+        this.content = other.content;
+        this.done = other.done;
+        this.due = other.getDueSeconds();
+        this.dueCalendar = null;
+        this.reminder = other.getReminderSeconds();
+        this.reminderCalendar = null;
+        this.createdAt = other.getCreatedAtSeconds();
+        this.createdAtCalendar = null;
+        this.updatedAt = other.getUpdatedAtSeconds();
+        this.updatedAtCalendar = null;
+        this.priority = other.priority;
+        this.progress = other.progress;
+        this.recurrence = other.recurrence;
+        this.recurringReminder = other.recurringReminder;
+        this.isRecurringShown = other.isRecurringShown;
+        this.syncState = other.syncState;
+        this.additionalEntriesString = other.getAdditionalEntriesString();
+        this.additionalEntries = null;
+        this.tags = other.tags.isPresent() ? of((List<Tag>) new ArrayList<>(other.tags.get())) :
+                    Optional.<List<Tag>>absent();
+        this.isStub = other.isStub;
+        this.edited.putAll(other.edited);
+    }
+
+    /**
+     * Take the snapshot of the row from other, so this instance can be saved
+     * instead of other
+     */
+    void takeRowFrom(@NonNull final TaskBase other) {
+        // an unchanged task is its own snapshot
+        this.loadedValues = (other.loadedValues != null) ? new ContentValues(other.loadedValues) :
+                            (other.loaded ? other.getRowValues() : null);
+        this.loadedAdditionalEntriesString = other.loadedAdditionalEntriesString;
+        this.loadedAdditionalEntries = (other.loadedAdditionalEntries == null) ? null :
+                                       new HashMap<>(other.loadedAdditionalEntries);
+        this.loaded = other.loaded;
+    }
+
+    /**
+     * @return The current value of every column, including the serialized
+     * additional entries
+     */
+    @NonNull
+    public ContentValues getColumnValues() {
+        final ContentValues cv = getRowValues();
+        cv.put(TaskBase.ADDITIONAL_ENTRIES, getAdditionalEntriesString());
+        return cv;
+    }
+
+    /**
+     * Called after a copy of this task was saved. Columns which did not change
+     * since the copy was taken get the values written by the save, edits made
+     * in the meantime stay unsaved.
+     *
+     * @param source The saved copy
+     * @param before The column values of this task when the copy was taken
+     */
+    public void takeSavedState(@NonNull final Task source, @NonNull final ContentValues before) {
+        final TaskBase saved = source;
+        if (saved.getId() != getId()) {
+            // the recurrence handling moved the task to another row
+            super.setId(saved.getId());
+        }
+        final ContentValues now = getColumnValues();
+        if (unchanged(now, before, DatabaseHelper.SYNC_STATE_FIELD)) {
+            this.syncState = saved.syncState;
+        }
+        if (unchanged(now, before, DatabaseHelper.UPDATED_AT)) {
+            this.updatedAt = saved.getUpdatedAtSeconds();
+            this.updatedAtCalendar = null;
+        }
+        if (unchanged(now, before, TaskBase.RECURRING_SHOWN)) {
+            this.isRecurringShown = saved.isRecurringShown;
+        }
+        final Iterator<String> keys = this.edited.keySet().iterator();
+        while (keys.hasNext()) {
+            final String key = keys.next();
+            if (!before.containsKey(key) || unchanged(now, before, key)) {
+                keys.remove();
+            }
+        }
+        takeRowFrom(saved);
+    }
+
+    private static boolean unchanged(@NonNull final ContentValues now,
+                                     @NonNull final ContentValues before, @NonNull final String column) {
+        return Objects.equal(now.get(column), before.get(column));
+    }
+
+    private void markEdited(@NonNull final String column) {
+        snapshotRow();
+        if (TaskBase.ADDITIONAL_ENTRIES.equals(column)) {
+            initAdditionalEntries();
+        }
+        this.edited.put(column, true);
+    }
+
+    /**
+     * Compares the fields with the snapshot from {@link #snapshotRow()}, so
+     * reverted edits are left out and changes made without a setter (e.g. to
+     * the calendar returned by getDue()) are found. The additional entries
+     * are only serialized if one of them changed.
+     *
+     * @return The changed columns or absent if the task was not loaded from
+     * the database, then the whole row has to be written
+     */
+    @NonNull
+    Optional<ContentValues> getChangedValues() {
+        if (!this.loaded) {
+            return absent();
+        }
+        if (this.loadedValues == null) {
+            // nothing changed since the task was loaded
+            final ContentValues cv = new ContentValues();
+            if (additionalEntriesChanged()) {
+                cv.put(TaskBase.ADDITIONAL_ENTRIES, getAdditionalEntriesString());
+            }
+            return of(cv);
+        }
+        final ContentValues cv = getRowValues();
+        for (final String column : this.loadedValues.keySet()) {
+            if (Objects.equal(cv.get(column), this.loadedValues.get(column))) {
+                cv.remove(column);
+            }
+        }
+        if (additionalEntriesChanged()) {
+            cv.put(TaskBase.ADDITIONAL_ENTRIES, getAdditionalEntriesString());
+        }
+        return of(cv);
+    }
+
+    private boolean additionalEntriesChanged() {
+        if (this.additionalEntries == null) {
+            // not parsed, so only setAdditionalEntries could change them
+            return !this.additionalEntriesString.equals(this.loadedAdditionalEntriesString);
+        }
+        final Map<String, String> loadedEntries = (this.loadedAdditionalEntries == null) ?
+                parseAdditionalEntries(this.loadedAdditionalEntriesString) : this.loadedAdditionalEntries;
+        return !loadedEntries.equals(this.additionalEntries);
+    }
+
     /**
      * Use getAdditional[Type] instead
      *
@@ -165,6 +390,7 @@ abstract class TaskBase extends ModelBase {
      */
     @Deprecated
     public Map<String, String> getAdditionalEntries() {
+        // changes to the map are found by getChangedValues()
         initAdditionalEntries();
         return this.additionalEntries;
     }
@@ -186,7 +412,7 @@ abstract class TaskBase extends ModelBase {
         if (str == null) {
             return null;
         }
-        return str.substring(1, str.length() - 1);
+        return AdditionalEntries.unquote(str);
     }
 
     @Nullable
@@ -204,6 +430,10 @@ abstract class TaskBase extends ModelBase {
     }
 
     void setIsRecurringShown(final boolean shown) {
+        if (this.isRecurringShown == shown) {
+            return;
+        }
+        markEdited(TaskBase.RECURRING_SHOWN);
         this.isRecurringShown = shown;
     }
 
@@ -213,8 +443,10 @@ abstract class TaskBase extends ModelBase {
 
     @NonNull
     protected String getAdditionalEntriesString() {
-        initAdditionalEntries();
-        this.additionalEntriesString = serializeAdditionalEntries(this.additionalEntries);
+        // nobody looked at the entries, so the stored string is still valid
+        if (this.additionalEntries != null) {
+            this.additionalEntriesString = serializeAdditionalEntries(this.additionalEntries);
+        }
         return this.additionalEntriesString;
     }
 
@@ -222,14 +454,7 @@ abstract class TaskBase extends ModelBase {
     @NonNull
     public static String serializeAdditionalEntries(
         @NonNull final Map<String, String> additionalEntries) {
-        final StringBuilder additionalEntriesStr = new StringBuilder("{");
-        boolean first = true;
-        for (final Entry<String, String> p : additionalEntries.entrySet()) {
-            additionalEntriesStr.append(first ? "" : ",").append('"').append(p.getKey()).append("\":").append(
-                p.getValue());
-            first = false;
-        }
-        return additionalEntriesStr.toString() + '}';
+        return AdditionalEntries.serialize(additionalEntries);
     }
 
     @NonNull
@@ -241,46 +466,132 @@ abstract class TaskBase extends ModelBase {
     @NonNull
     public ContentValues getContentValues() throws NoSuchListException {
         final ContentValues cv = super.getContentValues();
-        cv.put(TaskBase.UUID, this.uuid);
-        cv.put(TaskBase.LIST_ID, this.list.getId());
-        cv.put(TaskBase.CONTENT, this.content);
-        cv.put(TaskBase.DONE, this.done);
-        if (this.due.isPresent()) {
-            if ((this.due.get().get(Calendar.HOUR) == 0)
-                && (this.due.get().get(Calendar.MINUTE) == 0)
-                && (this.due.get().get(Calendar.SECOND) == 0)) {
-                cv.put(TaskBase.DUE, this.due.get().getTimeInMillis() / 1000L);
-            } else {
-                cv.put(TaskBase.DUE, DateTimeHelper.getUTCTime(this.due));
-            }
-        } else {
-            cv.put(TaskBase.DUE, (Integer) null);
-        }
-        cv.put(TaskBase.REMINDER, DateTimeHelper.getUTCTime(this.reminder));
-        cv.put(TaskBase.PRIORITY, this.priority);
-        cv.put(DatabaseHelper.CREATED_AT,
-               this.createdAt.getTimeInMillis() / 1000L);
-        cv.put(DatabaseHelper.UPDATED_AT,
-               this.updatedAt.getTimeInMillis() / 1000L);
-        cv.put(DatabaseHelper.SYNC_STATE_FIELD, this.syncState.toInt());
-        cv.put(TaskBase.RECURRING, this.recurrence);
-        cv.put(TaskBase.RECURRING_REMINDER, this.recurringReminder);
-        cv.put(TaskBase.PROGRESS, this.progress);
-        cv.put(TaskBase.RECURRING_SHOWN, this.isRecurringShown);
-        cv.put("additional_entries", getAdditionalEntriesString());
+        for (final String column : ROW_COLUMNS) {
+            putColumn(cv, column);
+        }
+        cv.put(TaskBase.ADDITIONAL_ENTRIES, getAdditionalEntriesString());
         return cv;
     }
 
+    private static final String[] ROW_COLUMNS = {TaskBase.UUID, TaskBase.LIST_ID,
+                                                 TaskBase.CONTENT, TaskBase.DONE, TaskBase.DUE, TaskBase.REMINDER,
+                                                 TaskBase.PRIORITY, DatabaseHelper.CREATED_AT, DatabaseHelper.UPDATED_AT,
+                                                 DatabaseHelper.SYNC_STATE_FIELD, TaskBase.RECURRING, TaskBase.RECURRING_REMINDER,
+                                                 TaskBase.PROGRESS, TaskBase.RECURRING_SHOWN
+                                                };
+
+    /**
+     * Put the current value of a column into the content values. The additional
+     * entries are not handled here, they are serialized only when needed.
+     */
+    private void putColumn(@NonNull final ContentValues cv, @NonNull final String column) {
+        switch (column) {
+        case ModelBase.ID:
+            cv.put(ModelBase.ID, getId());
+            break;
+        case ModelBase.NAME:
+            cv.put(ModelBase.NAME, getName());
+            break;
+        case TaskBase.UUID:
+            cv.put(TaskBase.UUID, this.uuid);
+            break;
+        case TaskBase.LIST_ID:
+            cv.put(TaskBase.LIST_ID, this.list.getId());
+            break;
+        case TaskBase.CONTENT:
+            cv.put(TaskBase.CONTENT, this.content);
+            break;
+        case TaskBase.DONE:
+            cv.put(TaskBase.DONE, this.done);
+            break;
+        case TaskBase.DUE:
+            final long dueSeconds = getDueSeconds();
+            cv.put(TaskBase.DUE, (dueSeconds == NO_DATE) ? null : dueSeconds);
+            break;
+        case TaskBase.REMINDER:
+            final long reminderSeconds = getReminderSeconds();
+            cv.put(TaskBase.REMINDER, (reminderSeconds == NO_DATE) ? null : reminderSeconds);
+            break;
+        case TaskBase.PRIORITY:
+            cv.put(TaskBase.PRIORITY, this.priority);
+            break;
+        case DatabaseHelper.CREATED_AT:
+            cv.put(DatabaseHelper.CREATED_AT, getCreatedAtSeconds());
+            break;
+        case DatabaseHelper.UPDATED_AT:
+            cv.put(DatabaseHelper.UPDATED_AT, getUpdatedAtSeconds());
+            break;
+        case DatabaseHelper.SYNC_STATE_FIELD:
+            cv.put(DatabaseHelper.SYNC_STATE_FIELD, this.syncState.toInt());
+            break;
+        case TaskBase.RECURRING:
+            cv.put(TaskBase.RECURRING, this.recurrence);
+            break;
+        case TaskBase.RECURRING_REMINDER:
+            cv.put(TaskBase.RECURRING_REMINDER, this.recurringReminder);
+            break;
+        case TaskBase.PROGRESS:
+            cv.put(TaskBase.PROGRESS, this.progress);
+            break;
+        case TaskBase.RECURRING_SHOWN:
+            cv.put(TaskBase.RECURRING_SHOWN, this.isRecurringShown);
+            break;
+        default:
+            // not a column (e.g. the tags)
+            break;
+        }
+    }
+
     @NonNull
     public Calendar getCreatedAt() {
+        if (this.createdAtCalendar == null) {
+            // the calendar can be changed without a setter
+            snapshotRow();
+            this.createdAtCalendar = new GregorianCalendar();
+            this.createdAtCalendar.setTimeInMillis(this.createdAt * 1000L);
+        }
+        return this.createdAtCalendar;
+    }
+
+    long getCreatedAtSeconds() {
+        if (this.createdAtCalendar != null) {
+            this.createdAt = this.createdAtCalendar.getTimeInMillis() / 1000L;
+        }
         return this.createdAt;
     }
 
     @NonNull
     public Optional<Calendar> getDue() {
+        if (this.dueCalendar == null) {
+            if (this.due == NO_DATE) {
+                return absent();
+            }
+            snapshotRow();
+            this.dueCalendar = DateTimeHelper.createLocalCalendar(this.due, true);
+        }
+        return of(this.dueCalendar);
+    }
+
+    /**
+     * @return The due as it is stored in the database or NO_DATE
+     */
+    long getDueSeconds() {
+        if (this.dueCalendar != null) {
+            this.due = dueToSeconds(this.dueCalendar);
+        }
         return this.due;
     }
 
+    private static long dueToSeconds(@NonNull final Calendar due) {
+        // dates without time are stored as local midnight
+        if ((due.get(Calendar.HOUR) == 0)
+            && (due.get(Calendar.MINUTE) == 0)
+            && (due.get(Calendar.SECOND) == 0)) {
+            return due.getTimeInMillis() / 1000L;
+        }
+        return DateTimeHelper.getUTCTime(of(due));
+    }
+
     @NonNull
     public ListMirakel getList() {
         if (this.list == null) {
@@ -317,6 +628,23 @@ abstract class TaskBase extends ModelBase {
 
     @NonNull
     public Optional<Calendar> getReminder() {
+        if (this.reminderCalendar == null) {
+            if (this.reminder == NO_DATE) {
+                return absent();
+            }
+            snapshotRow();
+            this.reminderCalendar = DateTimeHelper.createLocalCalendar(this.reminder);
+        }
+        return of(this.reminderCalendar);
+    }
+
+    /**
+     * @return The reminder as it is stored in the database or NO_DATE
+     */
+    long getReminderSeconds() {
+        if (this.reminderCalendar != null) {
+            this.reminder = DateTimeHelper.getUTCTime(of(this.reminderCalendar));
+        }
         return this.reminder;
     }
 
@@ -327,6 +655,18 @@ abstract class TaskBase extends ModelBase {
 
     @NonNull
     public Calendar getUpdatedAt() {
+        if (this.updatedAtCalendar == null) {
+            snapshotRow();
+            this.updatedAtCalendar = new GregorianCalendar();
+            this.updatedAtCalendar.setTimeInMillis(this.updatedAt * 1000L);
+        }
+        return this.updatedAtCalendar;
+    }
+
+    long getUpdatedAtSeconds() {
+        if (this.updatedAtCalendar != null) {
+            this.updatedAt = this.updatedAtCalendar.getTimeInMillis() / 1000L;
+        }
         return this.updatedAt;
     }
 
@@ -348,35 +688,15 @@ abstract class TaskBase extends ModelBase {
         }
     }
 
-    protected void setAdditionalEntries(@NonNull final String additional) {
-        this.additionalEntriesString = additional;
-        initAdditionalEntries();
+    protected void setAdditionalEntries(@Nullable final String additional) {
+        this.additionalEntriesString = (additional == null) ? "" : additional;
+        this.additionalEntries = null;
     }
 
     @NonNull
     public static Map<String, String> parseAdditionalEntries(
-        @NonNull final String additionalEntriesString) {
-        final Map<String, String> ret = new HashMap<>();
-        if ((additionalEntriesString != null)
-            && !additionalEntriesString.trim().equals("")
-            && !additionalEntriesString.trim().equals("null")) {
-            final String t = additionalEntriesString.substring(1,
-                             additionalEntriesString.length() - 1);// remove {
-            // and }
-            final String[] parts = t.split(",");
-            String key = null;
-            for (final String p : parts) {
-                final String[] keyValue = p.split(":");
-                if (keyValue.length == 2) {
-                    key = keyValue[0];
-                    key = key.replaceAll("\"", "");
-                    ret.put(key, keyValue[1]);
-                } else if ((keyValue.length == 1) && (key != null)) {
-                    ret.put(key, ret.get(key) + ',' + keyValue[0]);
-                }
-            }
-        }
-        return ret;
+        @Nullable final String additionalEntriesString) {
+        return AdditionalEntries.parse(additionalEntriesString);
     }
 
     public boolean isDone() {
@@ -397,12 +717,14 @@ abstract class TaskBase extends ModelBase {
         }
         newContent = newContent.trim().replace("\\n", "\n");
         newContent = newContent.replace("\\\"", "\"");
+        markEdited(TaskBase.CONTENT);
         this.content = newContent.replace("\b", "");
-        this.edited.put(TaskBase.CONTENT, true);
     }
 
     public void setCreatedAt(@NonNull final Calendar created_at) {
-        this.createdAt = created_at;
+        markEdited(DatabaseHelper.CREATED_AT);
+        this.createdAtCalendar = created_at;
+        this.createdAt = created_at.getTimeInMillis() / 1000L;
     }
 
 
@@ -412,39 +734,67 @@ abstract class TaskBase extends ModelBase {
      */
     @NonNull
     public Optional<Task> setDone(final boolean newDone) {
-        if (this.done == newDone) {
+        if (!markDone(newDone) || !needsNextRecurrence()) {
             return absent();
         }
+        return createNextRecurrence();
+    }
+
+    /**
+     * Set the done state without touching the database. If
+     * {@link #needsNextRecurrence()} is true afterwards, the caller has to
+     * call {@link #createNextRecurrence()}.
+     *
+     * @return false if nothing changed
+     */
+    public boolean markDone(final boolean newDone) {
+        if (this.done == newDone) {
+            return false;
+        }
+        markEdited(TaskBase.DONE);
         this.done = newDone;
-        this.edited.put(TaskBase.DONE, true);
-        if (newDone && (this.recurrence != -1) && this.due.isPresent()) {
-            if (getRecurrence().isPresent()) {
-                final Optional<Task> oldTask = Task.get(getId());
-                if (!oldTask.isPresent()) {
-                    return absent();
-                }
-                final Task newTask = getRecurrence().get().incrementRecurringDue(
-                                         oldTask.get());
-                // set the sync state of the old task to recurring, only show
-                // the new one
-                this.done = true;
-                return of(newTask);
-            }
+        if (!needsNextRecurrence()) {
+            this.setProgress(newDone ? 100 : 0);
+        }
+        return true;
+    }
+
+    public boolean needsNextRecurrence() {
+        return this.done && (this.recurrence != -1) && (getDueSeconds() != NO_DATE);
+    }
+
+    /**
+     * Create the next occurrence of this done recurring task. This reads and
+     * writes the database, so do not call it on the ui thread.
+     *
+     * @return The new task if one was created
+     */
+    @NonNull
+    public Optional<Task> createNextRecurrence() {
+        if (!needsNextRecurrence()) {
+            return absent();
+        }
+        final Optional<Recurring> recurring = getRecurrence();
+        if (!recurring.isPresent()) {
             Log.wtf(TaskBase.TAG, "Recurring vanish");
-        } else if (newDone) {
-            this.setProgress(100);
-        } else {
-            this.setProgress(0);
+            return absent();
+        }
+        final Optional<Task> oldTask = Task.get(getId());
+        if (!oldTask.isPresent()) {
+            return absent();
         }
-        return absent();
+        // set the sync state of the old task to recurring, only show the new one
+        return of(recurring.get().incrementRecurringDue(oldTask.get()));
     }
 
     public void setDue(final @NonNull Optional<Calendar> newDue) {
-        if (DateTimeHelper.equalsCalendar(this.due, newDue)) {
+        final long newSeconds = newDue.isPresent() ? dueToSeconds(newDue.get()) : NO_DATE;
+        if (getDueSeconds() == newSeconds) {
             return;
         }
-        this.due = newDue;
-        this.edited.put(TaskBase.DUE, true);
+        markEdited(TaskBase.DUE);
+        this.due = newSeconds;
+        this.dueCalendar = newDue.orNull();
         if (!newDue.isPresent()) {
             setRecurrence(-1L);
         }
@@ -469,16 +819,14 @@ abstract class TaskBase extends ModelBase {
         if ((this.list != null) && (this.list.getId() == newList.getId())) {
             return;
         }
+        markEdited(TaskBase.LIST_ID);
         if (newList.isSpecial()) {
             this.list = ((SpecialList) newList).getDefaultList();
         } else {
             this.list = newList;
         }
-        this.edited.put(TaskBase.LIST_ID, true);
         if (removeNoListFlag) {
-            if (this.additionalEntries == null) {
-                initAdditionalEntries();
-            }
+            markEdited(TaskBase.ADDITIONAL_ENTRIES);
             this.additionalEntries.remove(DefinitionsHelper.TW_NO_PROJECT);
         }
     }
@@ -488,11 +836,21 @@ abstract class TaskBase extends ModelBase {
         if (getName().equals(newName)) {
             return;
         }
-        super.setName(newName);
         // This can not happen (it's final!! – but we are in a constructor), but hey, that's java
         if (edited != null) {
-            this.edited.put(ModelBase.NAME, true);
+            markEdited(ModelBase.NAME);
+        }
+        super.setName(newName);
+    }
+
+    @Override
+    protected void setId(final long newId) {
+        // The object now belongs to another row, so the whole row has to be written
+        if ((edited != null) && (newId != getId())) {
+            this.loaded = false;
+            this.edited.put(ModelBase.ID, true);
         }
+        super.setId(newId);
     }
 
     public void setPriority(final int priority) {
@@ -503,15 +861,15 @@ abstract class TaskBase extends ModelBase {
             throw new IllegalArgumentException(
                 "Priority is not in Range [-2,2]");
         }
+        markEdited(TaskBase.PRIORITY);
         this.priority = priority;
-        this.edited.put(TaskBase.PRIORITY, true);
     }
 
     public void setProgress(final int newProgress) {
         if (this.progress == newProgress) {
             return;
         }
-        this.edited.put("progress", true);
+        markEdited(TaskBase.PROGRESS);
         this.progress = newProgress;
     }
 
@@ -519,16 +877,16 @@ abstract class TaskBase extends ModelBase {
         if (this.recurrence == newRecurrence) {
             return;
         }
+        markEdited(TaskBase.RECURRING);
         this.recurrence = newRecurrence;
-        this.edited.put(TaskBase.RECURRING, true);
     }
 
     public void setRecurringReminder(final long newRecurrence) {
         if (this.recurringReminder == newRecurrence) {
             return;
         }
+        markEdited(TaskBase.RECURRING_REMINDER);
         this.recurringReminder = newRecurrence;
-        this.edited.put(TaskBase.RECURRING_REMINDER, true);
     }
 
     public void setReminder(final @NonNull Optional<Calendar> newReminder) {
@@ -536,27 +894,36 @@ abstract class TaskBase extends ModelBase {
     }
 
     public void setReminder(final @NonNull Optional<Calendar> newReminder, final boolean force) {
-        if (this.reminder.or(new GregorianCalendar()).equals(newReminder.or(new GregorianCalendar()))
-            && !force) {
+        final long newSeconds = newReminder.isPresent() ? DateTimeHelper.getUTCTime(newReminder) :
+                                NO_DATE;
+        if ((getReminderSeconds() == newSeconds) && !force) {
             return;
         }
-        this.reminder = newReminder;
-        this.edited.put(TaskBase.REMINDER, true);
+        markEdited(TaskBase.REMINDER);
+        this.reminder = newSeconds;
+        this.reminderCalendar = newReminder.orNull();
         if (!newReminder.isPresent()) {
             setRecurringReminder(-1L);
         }
     }
 
     public void setSyncState(@NonNull final SYNC_STATE sync_state) {
+        markEdited(DatabaseHelper.SYNC_STATE_FIELD);
         this.syncState = sync_state;
     }
 
     public void setUpdatedAt(@NonNull final Calendar updated_at) {
-        this.updatedAt = updated_at;
+        markEdited(DatabaseHelper.UPDATED_AT);
+        this.updatedAtCalendar = updated_at;
+        this.updatedAt = updated_at.getTimeInMillis() / 1000L;
     }
 
 
     public void setUUID(@NonNull final String newUuid) {
+        if (this.uuid.equals(newUuid)) {
+            return;
+        }
+        markEdited(TaskBase.UUID);
         this.uuid = newUuid;
     }
 
@@ -603,15 +970,14 @@ abstract class TaskBase extends ModelBase {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        result = prime
-                 * result
-                 + ((this.additionalEntries == null) ? 0 : this.additionalEntries
-                    .hashCode());
-        result = prime * result + (this.additionalEntriesString.hashCode());
+        initAdditionalEntries();
+        result = prime * result + this.additionalEntries.hashCode();
         result = prime * result + this.content.hashCode();
-        result = prime * result + (this.createdAt.hashCode());
+        final long createdAtSeconds = getCreatedAtSeconds();
+        result = prime * result + (int) (createdAtSeconds ^ (createdAtSeconds >>> 32));
         result = prime * result + (this.done ? 1231 : 1237);
-        result = prime * result + (this.due.isPresent() ? this.due.get().hashCode() : 0);
+        final long dueSeconds = getDueSeconds();
+        result = prime * result + (int) (dueSeconds ^ (dueSeconds >>> 32));
         result = prime * result + (this.edited.hashCode());
         result = prime * result + (int) (this.getId() ^ (this.getId() >>> 32));
         result = prime * result + (this.isRecurringShown ? 1231 : 1237);
@@ -621,12 +987,13 @@ abstract class TaskBase extends ModelBase {
         result = prime * result + this.progress;
         result = prime * result + (int) this.recurrence;
         result = prime * result + (int) this.recurringReminder;
-        result = prime * result
-                 + (this.reminder.isPresent() ? this.reminder.get().hashCode() : 0);
+        final long reminderSeconds = getReminderSeconds();
+        result = prime * result + (int) (reminderSeconds ^ (reminderSeconds >>> 32));
         result = prime * result + (this.syncState.hashCode());
         result = prime * result
                  + (!this.tags.isPresent() ? 0 : this.tags.get().hashCode());
-        result = prime * result + (this.updatedAt.hashCode());
+        final long updatedAtSeconds = getUpdatedAtSeconds();
+        result = prime * result + (int) (updatedAtSeconds ^ (updatedAtSeconds >>> 32));
         result = prime * result + (this.uuid.hashCode());
         return result;
     }
@@ -643,15 +1010,10 @@ abstract class TaskBase extends ModelBase {
             return false;
         }
         final TaskBase other = (TaskBase) o;
-        if (this.additionalEntries == null) {
-            if (other.additionalEntries != null) {
-                return false;
-            }
-        } else if (!this.additionalEntries.equals(other.additionalEntries)) {
-            return false;
-        }
-        if (!this.additionalEntriesString
-            .equals(other.additionalEntriesString)) {
+        // the entries are parsed lazily, so compare them and not the strings
+        initAdditionalEntries();
+        other.initAdditionalEntries();
+        if (!this.additionalEntries.equals(other.additionalEntries)) {
             return false;
         }
         if (!this.content.equals(other.content)) {
@@ -661,7 +1023,7 @@ abstract class TaskBase extends ModelBase {
         if (this.done != other.done) {
             return false;
         }
-        if (!DateTimeHelper.equalsCalendar(this.due, other.due)) {
+        if (getDueSeconds() != other.getDueSeconds()) {
             return false;
         }
         if (this.getId() != other.getId()) {
@@ -698,7 +1060,7 @@ abstract class TaskBase extends ModelBase {
             return false;
         }
 
-        if (!DateTimeHelper.equalsCalendar(this.reminder, other.reminder)) {
+        if (getReminderSeconds() != other.getReminderSeconds()) {
             return false;
         }
         if (this.syncState != other.syncState) {
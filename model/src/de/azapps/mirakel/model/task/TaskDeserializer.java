@@ -161,7 +161,7 @@ public class TaskDeserializer implements JsonDeserializer<Task> {
             } else if (p.isJsonNull()) {
                 t.addAdditionalEntry(key, "null");
             } else if (p.isString()) {
-                t.addAdditionalEntry(key, '"' + val.getAsString() + '"');
+                t.addAdditionalEntry(key, AdditionalEntries.quote(val.getAsString()));
             } else {
                 Log.w(TAG, "unknown json-type");
             }
@@ -178,7 +178,7 @@ public class TaskDeserializer implements JsonDeserializer<Task> {
                     } else if (p.isNumber()) {
                         add = String.valueOf(p.getAsInt());
                     } else if (p.isString()) {
-                        add = '"' + p.getAsString() + '"';
+                        add = AdditionalEntries.quote(p.getAsString());
                     } else if (p.isJsonNull()) {
                         add = "null";
                     } else {
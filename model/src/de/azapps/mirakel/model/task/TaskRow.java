@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Mirakel is an Android App for managing your ToDo-Lists
+ *
+ * Copyright (c) 2013-2014 Anatolij Zelenin, Georg Semmler.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package de.azapps.mirakel.model.task;
+
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+
+import com.google.common.base.Optional;
+
+import java.util.Calendar;
+
+import de.azapps.mirakel.helper.DateTimeHelper;
+import de.azapps.mirakel.model.ModelBase;
+import de.azapps.mirakel.model.file.FileMirakel;
+
+/**
+ * A read-only view of a task for showing it in a list.
+ *
+ * Only the columns of {@link #PROJECTION} are queried and nothing else is
+ * resolved: no list, no calendars, no additional entries. Use
+ * {@link de.azapps.mirakel.model.query_builder.MirakelQueryBuilder#getRows()}
+ * to load the rows and {@link Task#get(long)} if the full task is needed.
+ */
+public final class TaskRow {
+    public static final String HAS_CONTENT = "has_content";
+
+    /**
+     * The order matters, the rows are read by the column index
+     */
+    public static final String[] PROJECTION = {
+        ModelBase.ID, ModelBase.NAME, TaskBase.LIST_ID, TaskBase.DUE, TaskBase.PRIORITY,
+        TaskBase.DONE,
+        '(' + TaskBase.CONTENT + "!='' OR EXISTS (SELECT 1 FROM " + Task.SUBTASK_TABLE
+        + " WHERE parent_id=" + Task.TABLE + '.' + ModelBase.ID + ") OR EXISTS (SELECT 1 FROM "
+        + FileMirakel.TABLE + " WHERE " + FileMirakel.TASK + '=' + Task.TABLE + '.' + ModelBase.ID
+        + ")) AS " + HAS_CONTENT
+    };
+
+    private final long id;
+    @NonNull
+    private final String name;
+    private final long listId;
+    private final boolean hasDue;
+    // utc time in s as stored in the database
+    private final long due;
+    private final int priority;
+    private final boolean done;
+    private final boolean hasContent;
+
+    /**
+     * @param c A cursor queried with {@link #PROJECTION}
+     */
+    public TaskRow(@NonNull final Cursor c) {
+        this.id = c.getLong(0);
+        final String rowName = c.getString(1);
+        this.name = (rowName == null) ? "" : rowName;
+        this.listId = c.getLong(2);
+        this.hasDue = !c.isNull(3);
+        this.due = this.hasDue ? c.getLong(3) : 0L;
+        this.priority = c.getInt(4);
+        this.done = c.getShort(5) == 1;
+        this.hasContent = c.getShort(6) == 1;
+    }
+
+    public long getId() {
+        return this.id;
+    }
+
+    @NonNull
+    public String getName() {
+        return this.name;
+    }
+
+    public long getListId() {
+        return this.listId;
+    }
+
+    public boolean hasDue() {
+        return this.hasDue;
+    }
+
+    /**
+     * @return The due as stored in the database (utc in seconds)
+     */
+    public long getDueTime() {
+        return this.due;
+    }
+
+    /**
+     * Creates a new calendar on every call, the same way {@link Task} does
+     */
+    @NonNull
+    public Optional<Calendar> getDue() {
+        if (!this.hasDue) {
+            return Optional.absent();
+        }
+        return Optional.of(DateTimeHelper.createLocalCalendar(this.due, true));
+    }
+
+    public int getPriority() {
+        return this.priority;
+    }
+
+    public boolean isDone() {
+        return this.done;
+    }
+
+    /**
+     * @return True if the task has a content, subtasks or files
+     */
+    public boolean hasContent() {
+        return this.hasContent;
+    }
+}
@@ -33,19 +33,24 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.support.annotation.NonNull;
 import android.support.v4.app.NotificationCompat;
-import android.util.Pair;
 
 import com.google.common.base.Optional;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import de.azapps.mirakel.DefinitionsHelper;
-import de.azapps.mirakel.DefinitionsHelper.NoSuchTaskException;
 import de.azapps.mirakel.helper.DateTimeHelper;
 import de.azapps.mirakel.helper.Helpers;
 import de.azapps.mirakel.helper.MirakelCommonPreferences;
@@ -58,7 +63,6 @@ import de.azapps.mirakel.model.task.Task;
 import de.azapps.mirakel.services.NotificationService;
 import de.azapps.mirakel.services.TaskService;
 import de.azapps.tools.Log;
-import de.azapps.tools.OptionalUtils;
 
 import static com.google.common.base.Optional.absent;
 import static com.google.common.base.Optional.of;
@@ -70,7 +74,7 @@ public class ReminderAlarm extends BroadcastReceiver {
     public static final String SHOW_TASK = "de.azapps.mirakel.reminders.ReminderAlarm.SHOW_TASK";
     public static final String EXTRA_ID = "de.azapps.mirakel.reminders.ReminderAlarm.EXTRA_ID";
     @NonNull
-    private static final Set<Long> allReminders = new HashSet<>();
+    private static final Set<Long> allReminders = Collections.synchronizedSet(new HashSet<Long>());
     @NonNull
     private static Optional<MirakelContentObserver> observer = absent();
 
@@ -95,6 +99,14 @@ public class ReminderAlarm extends BroadcastReceiver {
         } else {
             createNotification(context, task.get());
         }
+        // one of the next alarms fired, register the following ones
+        final Context appContext = context.getApplicationContext();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                registerNextAlarms(appContext);
+            }
+        });
     }
 
     private static void createNotification(final Context context,
@@ -188,9 +200,68 @@ public class ReminderAlarm extends BroadcastReceiver {
 
     private static AlarmManager alarmManager;
 
-    private static List<Pair<Task, PendingIntent>> activeAlarms = new CopyOnWriteArrayList<>();
+    /**
+     * How many reminders in the future are registered at the AlarmManager,
+     * the next ones are registered when one of them fired
+     */
+    private static final int MAX_FUTURE_ALARMS = 5;
+
+    /**
+     * All following fields are only touched on this executor
+     */
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private static final AtomicBoolean reloadPending = new AtomicBoolean(false);
+    // all reminders ordered by their time
+    private static final TreeSet<Reminder> reminders = new TreeSet<>();
+    private static final Map<Long, Reminder> remindersById = new HashMap<>();
+    // the reminders registered at the AlarmManager
+    private static final Map<Long, Reminder> registered = new HashMap<>();
+
+    private static class Reminder implements Comparable<Reminder> {
+        private final long taskId;
+        private final long time;
+        @NonNull
+        private final Optional<Recurring> recurring;
+        @NonNull
+        private final String name;
+
+        private Reminder(@NonNull final Task task) {
+            this.taskId = task.getId();
+            this.time = task.getReminder().get().getTimeInMillis();
+            // do not query for every task without recurrence
+            this.recurring = (task.getRecurringReminderId() < 0L) ? Optional.<Recurring>absent() :
+                             task.getRecurringReminder();
+            this.name = task.getName();
+        }
+
+        private boolean isSame(@NonNull final Reminder other) {
+            return (this.time == other.time) && this.recurring.equals(other.recurring);
+        }
+
+        @Override
+        public int compareTo(@NonNull final Reminder another) {
+            if (this.time != another.time) {
+                return (this.time < another.time) ? -1 : 1;
+            }
+            return (this.taskId < another.taskId) ? -1 : ((this.taskId == another.taskId) ? 0 : 1);
+        }
+    }
 
     public static void init(final Context ctx) {
+        alarmManager = (AlarmManager) ctx
+                       .getSystemService(Context.ALARM_SERVICE);
+        // Update the Notifications at midnight
+        final Intent intent = new Intent(ctx, ReminderAlarm.class);
+        intent.setAction(UPDATE_NOTIFICATION);
+        final PendingIntent pendingIntent = PendingIntent.getBroadcast(
+                                                ctx, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+        final Calendar triggerCal = new GregorianCalendar();
+        triggerCal.set(Calendar.HOUR_OF_DAY, 0);
+        triggerCal.set(Calendar.MINUTE, 0);
+        triggerCal.add(Calendar.DAY_OF_MONTH, 1);
+        alarmManager.setRepeating(AlarmManager.RTC,
+                                  triggerCal.getTimeInMillis(),
+                                  AlarmManager.INTERVAL_DAY, pendingIntent);
         observer = of(new MirakelContentObserver(new Handler(ctx.getMainLooper()), ctx, Task.URI,
         new MirakelContentObserver.ObserverCallBack() {
             @Override
@@ -200,17 +271,12 @@ public class ReminderAlarm extends BroadcastReceiver {
 
             @Override
             public void handleChange(final long id) {
-                final Optional<Task> t = Task.get(id);
-                final Calendar c = new GregorianCalendar();
-                if (t.isPresent()) {
-                    final Task task = t.get();
-                    if (task.getReminder().isPresent() && c.after(task.getReminder().get())) {
-                        updateAlarm(ctx, t.get());
-                    } else {
-                        cancelAlarm(ctx, t.get());
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        updateAlarm(ctx, id);
                     }
-                }
-
+                });
             }
         }));
         updateAlarms(ctx);
@@ -223,158 +289,138 @@ public class ReminderAlarm extends BroadcastReceiver {
         }
     }
 
-
-
-    private  static void updateAlarms(final Context ctx) {
-        new Thread(new Runnable() {
+    /**
+     * Reload all reminders with one query, several requests are merged as
+     * long as the reload did not start
+     */
+    private static void updateAlarms(final Context ctx) {
+        if (!reloadPending.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(new Runnable() {
             @Override
             public void run() {
-                Log.e(TAG, "update");
-                alarmManager = (AlarmManager) ctx
-                               .getSystemService(Context.ALARM_SERVICE);
-                // Update the Notifications at midnight
-                final Intent intent = new Intent(ctx, ReminderAlarm.class);
-                intent.setAction(UPDATE_NOTIFICATION);
-                final PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                                                        ctx, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
-                final Calendar triggerCal = new GregorianCalendar();
-                triggerCal.set(Calendar.HOUR_OF_DAY, 0);
-                triggerCal.set(Calendar.MINUTE, 0);
-                triggerCal.add(Calendar.DAY_OF_MONTH, 1);
-                alarmManager.setRepeating(AlarmManager.RTC,
-                                          triggerCal.getTimeInMillis(),
-                                          AlarmManager.INTERVAL_DAY, pendingIntent);
-                // Alarms
-                final List<Task> tasks = Task.getTasksWithReminders();
-                final Calendar now = new GregorianCalendar();
-                for (final Pair<Task, PendingIntent> p : activeAlarms) {
-                    final Task t = p.first;
-                    final Task newTask = Task.get(t.getId()).orNull();
-                    if ((newTask == null)
-                        || !newTask.getReminder().isPresent()
-                        || newTask.isDone()
-                        || newTask.getReminder().get().after(
-                            new GregorianCalendar())) {
-                        cancelAlarm(ctx, t, newTask, p, p.second);
-                    } else if (newTask.getReminder().isPresent()) {
-                        if (newTask.getReminder().get().after(now)
-                            && !newTask.getRecurringReminder().isPresent()) {
-                            closeNotificationFor(ctx, t.getId());
-                            updateAlarm(ctx, newTask);
-                        } else if (newTask.getReminder().get().after(now)
-                                   && newTask.getRecurringReminder().isPresent()
-                                   && (newTask.getReminder().get().compareTo(
-                                           newTask.getRecurringReminder().get()
-                                           .addRecurring(
-                                               newTask.getReminder()).orNull()) > 0)
-                                   && !now.after(newTask.getReminder())) {
-                            updateAlarm(ctx, newTask);
-                        } else if ((t.getRecurringReminderId() != newTask
-                                    .getRecurringReminderId())
-                                   || t.getRecurringReminder().isPresent()
-                                  ) {
-                            if (t.getRecurringReminder().isPresent() && newTask.getRecurringReminder().isPresent()) {
-                                if (!t.getRecurringReminder().get().equals(newTask.getRecurringReminder().get())) {
-                                    updateAlarm(ctx, newTask);
-                                    cancelAlarm(ctx, t, newTask, p, p.second);
-                                }
-                            } else if (t.getRecurringReminder().isPresent() != newTask.getRecurringReminder().isPresent()) {
-                                updateAlarm(ctx, newTask);
-                                cancelAlarm(ctx, t, newTask, p, p.second);
-                            }
-                        } else {
-                            updateAlarm(ctx, newTask);
-                        }
+                reloadPending.set(false);
+                final Map<Long, Reminder> current = new HashMap<>();
+                for (final Task task : Task.getTasksWithReminders()) {
+                    current.put(task.getId(), new Reminder(task));
+                }
+                for (final Reminder old : new ArrayList<>(remindersById.values())) {
+                    final Reminder reminder = current.get(old.taskId);
+                    if ((reminder == null) || !reminder.isSame(old)) {
+                        removeReminder(ctx, old);
                     }
                 }
-                for (final Task t : tasks) {
-                    try {
-                        if (!isAlarm(t)) {
-                            Log.d(TAG, "add: " + t.getName());
-                            Log.i(TAG, "id " + t.getId());
-                            final PendingIntent p = updateAlarm(ctx, t);
-                            activeAlarms
-                            .add(new Pair<>(t, p));
-                        }
-                    } catch (final NoSuchTaskException e) {
-                        Log.wtf(TAG, "Task not found", e);
+                for (final Reminder reminder : current.values()) {
+                    if (!remindersById.containsKey(reminder.taskId)) {
+                        addReminder(reminder);
                     }
                 }
+                registerNextAlarms(ctx);
             }
-        }).start();
+        });
     }
 
-
-    private static boolean isAlarm(final Task t2) throws NoSuchTaskException {
-        for (final Pair<Task, PendingIntent> pair : activeAlarms) {
-            final Task t = pair.first;
-            if ((t == null) || (t2 == null)) {
-                throw new NoSuchTaskException();
-            }
-            if (t.getId() == t2.getId()) {
-                return true;
-            }
+    /**
+     * Apply the changes of one task to the index, must run on the executor
+     */
+    private static void updateAlarm(final Context ctx, final long taskId) {
+        final Optional<Task> task = Task.get(taskId);
+        final Reminder old = remindersById.get(taskId);
+        Reminder reminder = null;
+        if (task.isPresent() && !task.get().isDone() && task.get().getReminder().isPresent()) {
+            reminder = new Reminder(task.get());
         }
-        return false;
+        if ((old != null) && ((reminder == null) || !reminder.isSame(old))) {
+            removeReminder(ctx, old);
+        }
+        if ((reminder != null) && !remindersById.containsKey(taskId)) {
+            addReminder(reminder);
+        }
+        registerNextAlarms(ctx);
     }
 
-    private static void cancelAlarm(final Context ctx, final Task t,
-                                    final Task newTask, final Pair<Task, PendingIntent> p,
-                                    final PendingIntent pendingIntent) {
-        activeAlarms.remove(p);
-        closeNotificationFor(ctx, t.getId());
-        if (newTask == null) {
-            return;
+    private static void addReminder(final Reminder reminder) {
+        reminders.add(reminder);
+        remindersById.put(reminder.taskId, reminder);
+    }
+
+    private static void removeReminder(final Context ctx, final Reminder reminder) {
+        reminders.remove(reminder);
+        remindersById.remove(reminder.taskId);
+        if (registered.remove(reminder.taskId) != null) {
+            alarmManager.cancel(getPendingIntent(ctx, reminder.taskId));
         }
-        alarmManager.cancel(pendingIntent);
+        closeNotificationFor(ctx, reminder.taskId);
     }
 
-    public static void cancelAlarm(final Context ctx, final Task task) {
-        try {
-            final Pair<Task, PendingIntent> p = findTask(task.getId());
-            final Optional<Task> taskOptional = Task.get(task.getId());
-            OptionalUtils.withOptional(taskOptional, new OptionalUtils.Procedure<Task>() {
-                @Override
-                public void apply(Task input) {
-                    cancelAlarm(ctx, task, input, p, p.second);
+    /**
+     * Registers all reminders which are due (they fire at once) and the next
+     * few in the future, all other alarms are canceled
+     */
+    private static void registerNextAlarms(final Context ctx) {
+        final long now = System.currentTimeMillis();
+        final Set<Long> wanted = new HashSet<>();
+        int future = 0;
+        for (final Reminder reminder : reminders) {
+            if (reminder.time > now) {
+                if (future >= MAX_FUTURE_ALARMS) {
+                    break;
                 }
-            });
-        } catch (final IndexOutOfBoundsException e) {
-            Log.d(TAG, "task not found", e);
+                future++;
+            }
+            wanted.add(reminder.taskId);
+            if (!registered.containsKey(reminder.taskId)) {
+                setAlarm(ctx, reminder);
+                registered.put(reminder.taskId, reminder);
+            }
+        }
+        final Iterator<Long> it = registered.keySet().iterator();
+        while (it.hasNext()) {
+            final long taskId = it.next();
+            if (!wanted.contains(taskId)) {
+                alarmManager.cancel(getPendingIntent(ctx, taskId));
+                it.remove();
+            }
         }
     }
 
-    private static Pair<Task, PendingIntent> findTask(final long id) {
-        for (final Pair<Task, PendingIntent> p : activeAlarms) {
-            if (id == p.first.getId()) {
-                return p;
-            }
+    public static void cancelAlarm(final Context ctx, final Task task) {
+        if (task == null) {
+            return;
         }
-        throw new IndexOutOfBoundsException();
+        final long taskId = task.getId();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Reminder reminder = remindersById.get(taskId);
+                if (reminder == null) {
+                    closeNotificationFor(ctx, taskId);
+                } else {
+                    removeReminder(ctx, reminder);
+                    registerNextAlarms(ctx);
+                }
+            }
+        });
     }
 
-    private static PendingIntent updateAlarm(final Context ctx, final Task task) {
+    private static PendingIntent getPendingIntent(final Context ctx, final long taskId) {
         final Intent intent = new Intent(ctx, ReminderAlarm.class);
         intent.setAction(SHOW_TASK);
-        intent.putExtra(EXTRA_ID, task.getId());
+        intent.putExtra(EXTRA_ID, taskId);
         intent.setData(Uri.parse(intent.toUri(Intent.URI_INTENT_SCHEME)));
-        final PendingIntent pendingIntent = PendingIntent.getBroadcast(ctx, 0,
-                                            intent, PendingIntent.FLAG_UPDATE_CURRENT);
-        if ((pendingIntent == null) || !task.getReminder().isPresent()) {
-            return null;
-        }
-        Log.v(TAG, "Set alarm for " + task.getName() + " on "
-              + task.getReminder().get().getTimeInMillis());
-        final Optional<Recurring> recurringReminder = task.getRecurringReminder();
-        if (!recurringReminder.isPresent()) {
-            alarmManager.set(AlarmManager.RTC_WAKEUP, task.getReminder().get()
-                             .getTimeInMillis(), pendingIntent);
+        return PendingIntent.getBroadcast(ctx, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    private static void setAlarm(final Context ctx, final Reminder reminder) {
+        final PendingIntent pendingIntent = getPendingIntent(ctx, reminder.taskId);
+        Log.v(TAG, "Set alarm for " + reminder.name + " on " + reminder.time);
+        if (!reminder.recurring.isPresent()) {
+            alarmManager.set(AlarmManager.RTC_WAKEUP, reminder.time, pendingIntent);
         } else {
-            alarmManager.setRepeating(AlarmManager.RTC_WAKEUP, task
-                                      .getReminder().get().getTimeInMillis(), recurringReminder.get().getInterval(),
-                                      pendingIntent);
+            alarmManager.setRepeating(AlarmManager.RTC_WAKEUP, reminder.time,
+                                      reminder.recurring.get().getInterval(), pendingIntent);
         }
-        return pendingIntent;
     }
 
     public static void closeNotificationFor(final Context context,
@@ -390,11 +436,18 @@ public class ReminderAlarm extends BroadcastReceiver {
                                        .getSystemService(Context.NOTIFICATION_SERVICE);
         // This hack is a must because otherwise we get a
         // concurrentModificationException
-        final Long[] reminders = allReminders.toArray(new Long[allReminders.size()]);
-        for (final Long id : reminders) {
+        final Long[] shownReminders = allReminders.toArray(new Long[allReminders.size()]);
+        for (final Long id : shownReminders) {
             nm.cancel(DefinitionsHelper.NOTIF_REMINDER + id.intValue());
-            cancelAlarm(context, Task.get(id).orNull());
         }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (final Reminder reminder : new ArrayList<>(reminders)) {
+                    removeReminder(context, reminder);
+                }
+            }
+        });
         updateAlarms(context);
     }
 }
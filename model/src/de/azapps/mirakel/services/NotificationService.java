@@ -34,19 +34,43 @@ import android.support.v4.app.NotificationCompat;
 import com.google.common.base.Optional;
 
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import de.azapps.mirakel.DefinitionsHelper;
 import de.azapps.mirakel.helper.Helpers;
 import de.azapps.mirakel.helper.MirakelCommonPreferences;
+import de.azapps.mirakel.model.MirakelInternalContentProvider;
 import de.azapps.mirakel.model.R;
 import de.azapps.mirakel.model.list.ListMirakel;
 import de.azapps.mirakel.model.task.Task;
+import de.azapps.mirakel.model.task.TaskRow;
 import de.azapps.tools.Log;
 
 public class NotificationService extends Service {
     private static final String TAG = "NotificationService";
     private boolean existsNotification = false;
     public static NotificationService notificationService;
+    /**
+     * The context of an update requested inside a deferred scope of this
+     * thread, absent if none was requested and null if there is no scope
+     */
+    private static final ThreadLocal<Optional<Context>> deferredUpdate = new ThreadLocal<>();
+
+    private static final ScheduledExecutorService updateExecutor = Executors
+            .newSingleThreadScheduledExecutor();
+    private static ScheduledFuture<?> scheduledUpdate = null;
+    private static long requestedUpdates = 0L;
+    private static long executedUpdates = 0L;
+
+    // the tasks shown in the notification, reused while the data is unchanged
+    // and the query of a date-based list stays the same
+    private List<TaskRow> snapshot = null;
+    private long snapshotListId = 0L;
+    private long snapshotVersion = -1L;
+    private long snapshotValidUntil = 0L;
 
     @Override
     public IBinder onBind(final Intent intent) {
@@ -104,7 +128,7 @@ public class NotificationService extends Service {
         final PendingIntent pOpenIntent = PendingIntent.getActivity(this, 0,
                                           openIntent, PendingIntent.FLAG_UPDATE_CURRENT);
 
-        final List<Task> todayTasks = showList.get().tasks(false);
+        final List<TaskRow> todayTasks = getTasks(showList.get());
         final String notificationTitle;
         final String notificationText;
         if (todayTasks.isEmpty()) {
@@ -134,7 +158,7 @@ public class NotificationService extends Service {
         if ((todayTasks.size() > 1)
             && (VERSION.SDK_INT >= VERSION_CODES.JELLY_BEAN)) {
             final NotificationCompat.InboxStyle inboxStyle = new NotificationCompat.InboxStyle();
-            for (final Task task : todayTasks) {
+            for (final TaskRow task : todayTasks) {
                 inboxStyle.addLine(task.getName());
             }
             noti.setStyle(inboxStyle);
@@ -151,6 +175,20 @@ public class NotificationService extends Service {
         }
     }
 
+    private synchronized List<TaskRow> getTasks(final ListMirakel list) {
+        // read the version first, a concurrent write causes a reload next time
+        final long version = MirakelInternalContentProvider.getDataVersion();
+        if ((this.snapshot == null) || (this.snapshotListId != list.getId())
+            || (this.snapshotVersion != version)
+            || (System.currentTimeMillis() >= this.snapshotValidUntil)) {
+            this.snapshotValidUntil = list.getQueryValidUntil();
+            this.snapshot = Task.getTaskRows(list, list.getSortBy(), false);
+            this.snapshotListId = list.getId();
+            this.snapshotVersion = version;
+        }
+        return this.snapshot;
+    }
+
     /**
      * Set the NotificationService
      *
@@ -162,12 +200,77 @@ public class NotificationService extends Service {
         }
     }
 
+    /**
+     * Defer all calls of {@link #updateServices(Context)} on this thread until
+     * {@link #endDeferredUpdate()} is called
+     *
+     * @return False if the updates are already deferred by an outer call
+     */
+    public static boolean beginDeferredUpdate() {
+        if (deferredUpdate.get() != null) {
+            return false;
+        }
+        deferredUpdate.set(Optional.<Context>absent());
+        return true;
+    }
+
+    /**
+     * Runs the deferred update once, if there was one
+     */
+    public static void endDeferredUpdate() {
+        final Optional<Context> context = deferredUpdate.get();
+        deferredUpdate.remove();
+        if ((context != null) && context.isPresent()) {
+            updateServices(context.get());
+        }
+    }
+
     /**
      * Update the Mirakel–Notifications, Reminders and the widgets
      *
+     * The update runs in the background after a short delay, all calls during
+     * this delay are merged into it.
+     *
      * @param context
      */
     public static void updateServices(final Context context) {
+        if (deferredUpdate.get() != null) {
+            deferredUpdate.set(Optional.of(context));
+            return;
+        }
+        synchronized (NotificationService.class) {
+            requestedUpdates++;
+            if (scheduledUpdate != null) {
+                // the scheduled update has not started yet and covers this call
+                return;
+            }
+            final Context appContext = context.getApplicationContext();
+            scheduledUpdate = updateExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (NotificationService.class) {
+                        executedUpdates++;
+                        scheduledUpdate = null;
+                    }
+                    try {
+                        doUpdateServices(appContext);
+                    } catch (final RuntimeException e) {
+                        Log.e(TAG, "failed to update the services", e);
+                    }
+                }
+            }, MirakelCommonPreferences.getNotificationUpdateDelay(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public static synchronized long getRequestedUpdates() {
+        return requestedUpdates;
+    }
+
+    public static synchronized long getExecutedUpdates() {
+        return executedUpdates;
+    }
+
+    private static void doUpdateServices(final Context context) {
         // Widget update
         final Intent widgetIntent;
         try {
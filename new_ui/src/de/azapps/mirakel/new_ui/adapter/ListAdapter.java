@@ -28,6 +28,7 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import de.azapps.mirakel.model.list.ListMirakel;
+import de.azapps.mirakel.model.list.ListTaskCounts;
 import de.azapps.mirakel.new_ui.R;
 
 public class ListAdapter extends CursorAdapter {
@@ -52,7 +53,7 @@ public class ListAdapter extends CursorAdapter {
         ListMirakel listMirakel = new ListMirakel(cursor);
         viewHolder.list = listMirakel;
         viewHolder.name.setText(listMirakel.getName());
-        viewHolder.count.setText(listMirakel.countTasks() + "");
+        viewHolder.count.setText(ListTaskCounts.get(context, listMirakel) + "");
     }
 
     public static class ViewHolder {
@@ -31,6 +31,7 @@ import android.widget.TextView;
 
 import de.azapps.mirakel.helper.DateTimeHelper;
 import de.azapps.mirakel.helper.TaskHelper;
+import de.azapps.mirakel.model.SaveQueue;
 import de.azapps.mirakel.model.task.Task;
 import de.azapps.mirakel.new_ui.R;
 import de.azapps.mirakel.new_ui.interfaces.OnTaskSelectedListener;
@@ -85,9 +86,7 @@ public class TaskAdapter extends CursorAdapter<TaskAdapter.TaskViewHolder> {
         holder.priorityDone.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
             @Override
             public void onCheckedChanged(final CompoundButton buttonView, final boolean isChecked) {
-                final Task task = holder.getTask();
-                task.setDone(isChecked);
-                task.save();
+                SaveQueue.setDone(holder.getTask(), isChecked, null);
             }
         });
     }
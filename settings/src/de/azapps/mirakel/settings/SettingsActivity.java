@@ -58,6 +58,7 @@ import de.azapps.mirakel.helper.error.ErrorType;
 import de.azapps.mirakel.helper.export_import.AnyDoImport;
 import de.azapps.mirakel.helper.export_import.ExportImport;
 import de.azapps.mirakel.helper.export_import.WunderlistImport;
+import de.azapps.mirakel.model.MirakelInternalContentProvider;
 import de.azapps.mirakel.settings.fragments.AboutSettingsFragment;
 import de.azapps.mirakel.settings.fragments.BackupSettingsFragment;
 import de.azapps.mirakel.settings.fragments.CreditsFragment;
@@ -352,9 +353,23 @@ public class SettingsActivity extends PreferenceActivity {
             // Do the import in a background-task
             new AsyncTask<String, Void, Boolean>() {
                 ProgressDialog dialog;
+                boolean imported;
 
                 @Override
                 protected Boolean doInBackground(final String... params) {
+                    // the widgets and notifications are updated once after the import
+                    // instead of once per imported task
+                    MirakelInternalContentProvider.withNotificationScope(new
+                    MirakelInternalContentProvider.DBTransaction() {
+                        @Override
+                        public void exec() {
+                            imported = importFile();
+                        }
+                    });
+                    return imported;
+                }
+
+                private boolean importFile() {
                     switch (requestCode) {
                     case FILE_ASTRID:
                         return ExportImport.importAstrid(SettingsActivity.this,
@@ -22,6 +22,7 @@ package de.azapps.mirakel.settings.fragments;
 import android.app.AlertDialog;
 import android.content.DialogInterface;
 import android.content.SharedPreferences;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.preference.CheckBoxPreference;
 import android.preference.EditTextPreference;
@@ -41,6 +42,7 @@ import de.azapps.mirakel.helper.MirakelModelPreferences;
 import de.azapps.mirakel.helper.MirakelPreferences;
 import de.azapps.mirakel.helper.export_import.AnyDoImport;
 import de.azapps.mirakel.helper.export_import.ExportImport;
+import de.azapps.mirakel.model.SaveQueue;
 import de.azapps.mirakel.model.list.ListMirakel;
 import de.azapps.mirakel.settings.R;
 import de.azapps.mirakel.settings.SettingsActivity;
@@ -137,7 +139,21 @@ public class BackupSettingsFragment extends PreferenceFragment {
         backup.setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
             @Override
             public boolean onPreferenceClick(final Preference preference) {
-                ExportImport.exportDB(getActivity());
+                // the backup has to contain the tasks which are not written yet
+                new AsyncTask<Void, Void, Void>() {
+                    @Override
+                    protected Void doInBackground(final Void... params) {
+                        SaveQueue.awaitPending();
+                        return null;
+                    }
+
+                    @Override
+                    protected void onPostExecute(final Void result) {
+                        if (getActivity() != null) {
+                            ExportImport.exportDB(getActivity());
+                        }
+                    }
+                }.execute();
                 return true;
             }
         });
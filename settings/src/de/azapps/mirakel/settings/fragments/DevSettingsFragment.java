@@ -142,15 +142,10 @@ public class DevSettingsFragment extends PreferenceFragment {
                                     .getString(
                                         R.string.undo_number_summary,
                                         val));
+                        editor.commit();
                         if (old_val > val) {
-                            for (int i = val; i < max; i++) {
-                                editor.putString(
-                                    UndoHistory.UNDO
-                                    + i,
-                                    "");
-                            }
+                            UndoHistory.trim(getActivity());
                         }
-                        editor.commit();
                     }
                 }).setNegativeButton(android.R.string.cancel, null).show();
                 return true;
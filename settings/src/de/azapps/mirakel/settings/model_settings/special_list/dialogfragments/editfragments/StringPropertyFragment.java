@@ -41,6 +41,7 @@ public class StringPropertyFragment extends BasePropertyFragement<SpecialListsSt
     private RadioGroup type;
     private RadioButton begin;
     private RadioButton contain;
+    private RadioButton words;
     private RadioButton end;
 
     public static StringPropertyFragment newInstance(SpecialListsStringProperty property) {
@@ -82,6 +83,9 @@ public class StringPropertyFragment extends BasePropertyFragement<SpecialListsSt
         case CONTAINS:
             type.check(R.id.where_like_contain);
             break;
+        case WORDS:
+            type.check(R.id.where_like_words);
+            break;
         }
 
         type.setOnCheckedChangeListener(new RadioGroup.OnCheckedChangeListener() {
@@ -93,6 +97,8 @@ public class StringPropertyFragment extends BasePropertyFragement<SpecialListsSt
                     property.setType(SpecialListsStringProperty.Type.END);
                 } else if (checkedId == R.id.where_like_contain) {
                     property.setType(SpecialListsStringProperty.Type.CONTAINS);
+                } else if (checkedId == R.id.where_like_words) {
+                    property.setType(SpecialListsStringProperty.Type.WORDS);
                 }
             }
         });
@@ -110,6 +116,9 @@ public class StringPropertyFragment extends BasePropertyFragement<SpecialListsSt
         begin = (RadioButton)rootView.findViewById(R.id.where_like_begin);
         contain = (RadioButton)rootView.findViewById(R.id.where_like_contain);
         end = (RadioButton)rootView.findViewById(R.id.where_like_end);
+        words = (RadioButton)rootView.findViewById(R.id.where_like_words);
+        // only the name and the content are in the full text index
+        words.setVisibility(property.isFullTextIndexed() ? View.VISIBLE : View.GONE);
         updateText();
         return rootView;
     }
@@ -121,5 +130,7 @@ public class StringPropertyFragment extends BasePropertyFragement<SpecialListsSt
                                                 "\"" + property.getSearchString() + "\""));
         end.setText(getActivity().getString(R.string.where_like_end_text,
                                             "\"" + property.getSearchString() + "\""));
+        words.setText(getActivity().getString(R.string.where_like_words_text,
+                                              "\"" + property.getSearchString() + "\""));
     }
 }
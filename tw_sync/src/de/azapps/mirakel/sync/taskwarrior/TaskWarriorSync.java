@@ -23,28 +23,32 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.content.OperationApplicationException;
 import android.database.Cursor;
+import android.net.Uri;
 import android.os.Looper;
 import android.os.RemoteException;
 import android.support.annotation.NonNull;
 import android.text.TextUtils;
 
 import com.google.common.base.Optional;
-import com.google.common.base.Predicate;
-import com.google.common.collect.Collections2;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.charset.MalformedInputException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.security.cert.CertificateException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -55,7 +59,9 @@ import de.azapps.mirakel.DefinitionsHelper;
 import de.azapps.mirakel.helper.Helpers;
 import de.azapps.mirakel.helper.MirakelCommonPreferences;
 import de.azapps.mirakel.helper.export_import.ExportImport;
+import de.azapps.mirakel.model.DatabaseHelper;
 import de.azapps.mirakel.model.MirakelInternalContentProvider;
+import de.azapps.mirakel.model.SaveQueue;
 import de.azapps.mirakel.model.list.ListMirakel;
 import de.azapps.mirakel.model.query_builder.MirakelQueryBuilder;
 import de.azapps.mirakel.model.query_builder.MirakelQueryBuilder.Operation;
@@ -66,6 +72,7 @@ import de.azapps.mirakel.services.NotificationService;
 import de.azapps.mirakel.sync.taskwarrior.model.TaskWarriorRecurrence;
 import de.azapps.mirakel.sync.taskwarrior.model.TaskWarriorTask;
 import de.azapps.mirakel.sync.taskwarrior.model.TaskWarriorTaskDeserializer;
+import de.azapps.mirakel.sync.taskwarrior.model.TaskWarriorTaskRelations;
 import de.azapps.mirakel.sync.taskwarrior.model.TaskWarriorTaskSerializer;
 import de.azapps.mirakel.sync.taskwarrior.network_helper.Msg;
 import de.azapps.mirakel.sync.taskwarrior.network_helper.TLSClient;
@@ -76,7 +83,6 @@ import de.azapps.mirakel.sync.taskwarrior.utilities.TaskWarriorSyncFailedExcepti
 import de.azapps.mirakel.sync.taskwarrior.utilities.TaskWarriorTaskDeletedException;
 import de.azapps.tools.FileUtils;
 import de.azapps.tools.Log;
-import de.azapps.tools.OptionalUtils;
 
 import static com.google.common.base.Optional.absent;
 import static com.google.common.base.Optional.of;
@@ -86,6 +92,12 @@ public class TaskWarriorSync {
     private static final String TW_PROTOCOL_VERSION = "v1";
 
     private int clientSyncKeyFailResyncCount = 0;
+    private int appliedUpdates = 0;
+    private int skippedUpdates = 0;
+    private int receivedTasks = 0;
+    private int keptReferences = 0;
+    @NonNull
+    private Optional<String> receivedSyncKey = absent();
 
     private static final int MAX_TASKS_PER_TRANSACTION = 100;
 
@@ -97,13 +109,67 @@ public class TaskWarriorSync {
 
     private final Context mContext;
 
+    /**
+     * A subtask relation whose subtask was not written yet
+     */
+    private static class PendingDependency {
+        final Long parentId;
+        @NonNull
+        final String childUUID;
+
+        PendingDependency(final Long parentId, @NonNull final String childUUID) {
+            this.parentId = parentId;
+            this.childUUID = childUUID;
+        }
+    }
+
+    /**
+     * A recurring child whose master was not read yet
+     */
+    private static class PendingChild {
+        @NonNull
+        final String uuid;
+        final Long id;
+        final String parentUUID;
+        final int imask;
+        final boolean unchanged;
+
+        PendingChild(@NonNull final String uuid, final Long id, final String parentUUID, final int imask,
+                     final boolean unchanged) {
+            this.uuid = uuid;
+            this.id = id;
+            this.parentUUID = parentUUID;
+            this.imask = imask;
+            this.unchanged = unchanged;
+        }
+    }
+
+    /**
+     * What is needed from the earlier chunks of a response to write the
+     * references of the later ones. Only the recurring masters and the
+     * unresolved references are kept, not the tasks.
+     */
+    private static class PendingReferences {
+        /**
+         * The recurrences of the written masters by uuid
+         */
+        final Map<String, Long> recurringMapping = new HashMap<>(0);
+        final Set<String> unchangedMasters = new HashSet<>(0);
+        final List<PendingDependency> dependencies = new ArrayList<>(0);
+        final List<PendingChild> children = new ArrayList<>(0);
+    }
+
     public TaskWarriorSync(final Context ctx) {
         this.mContext = ctx;
     }
 
     private void doSync(final TaskWarriorAccount taskWarriorAccount, final Msg syncMessage)
     throws TaskWarriorSyncFailedException {
-        Log.longInfo(syncMessage.getPayload());
+        if (MirakelCommonPreferences.isDumpTw()) {
+            Log.longInfo(syncMessage.getPayload());
+        }
+        // everything changed after this point is not acknowledged by this sync
+        final long requestTime = new GregorianCalendar().getTimeInMillis() / 1000L;
         final TLSClient client = setupConnection(taskWarriorAccount);
         final Msg remotes = queryServer(syncMessage, client);
 
@@ -124,7 +190,7 @@ public class TaskWarriorSync {
                     taskWarriorAccount.setSyncKey(Optional.<String>absent());
 
                     // sync
-                    sync(taskWarriorAccount, true);
+                    sync(taskWarriorAccount, true, true);
                     throw new TaskWarriorSyncFailedException(
                         TW_ERRORS.COULD_NOT_FIND_COMMON_ANCESTOR,
                         "sync() throwed error");
@@ -136,6 +202,9 @@ public class TaskWarriorSync {
         }
         if ("Client sync key not found.".equals(remotes.getHeader("status").or(""))) {
             Log.d(TAG, "reset sync-key");
+            // the payload of this response is not needed, so do not hold the
+            // connection while syncing again
+            client.close();
             clientSyncKeyFailResyncCount++;
             // How this could happen? Nobody knows but one user was able to do this…
             if (clientSyncKeyFailResyncCount > 2) {
@@ -145,119 +214,55 @@ public class TaskWarriorSync {
             }
             taskWarriorAccount.setSyncKey(Optional.<String>absent());
             try {
-                sync(taskWarriorAccount, false);
+                sync(taskWarriorAccount, false, true);
             } catch (final TaskWarriorSyncFailedException e) {
                 if (e.getError() != TW_ERRORS.NOT_ENABLED) {
-                    client.close();
                     throw new TaskWarriorSyncFailedException(e.getError(), e);
                 }
             } finally {
                 clientSyncKeyFailResyncCount = 0;
             }
+            return;
+        }
+        appliedUpdates = 0;
+        skippedUpdates = 0;
+        receivedTasks = 0;
+        keptReferences = 0;
+        receivedSyncKey = absent();
+        try {
+            receiveTasks(taskWarriorAccount, remotes);
+        } finally {
+            client.close();
         }
-        // parse tasks
-        if ((remotes.getPayload() == null) || remotes.getPayload().isEmpty()) {
+        if ((receivedTasks == 0) && !receivedSyncKey.isPresent()) {
             Log.i(TAG, "there is no Payload");
         } else {
-            final Map<String, TaskWarriorTask> remoteTasks = new HashMap<>(0);
-
-            final Optional<String> newSyncKey = parseTasks(remotes, remoteTasks);
-
-            // lookup tables
-            final Map<String, Long> projectMapping = createProjects(taskWarriorAccount, remoteTasks);
-            final Map<String, Long> tagMapping = createTags(remoteTasks);
-            final Map<String, Long> idMapping = new HashMap<>(remoteTasks.size());
-
-            final ListMirakel inbox = ListMirakel.getInboxList(taskWarriorAccount.getAccountMirakel());
-
-            // lists for deletion
-            final List<Long> allUpdatedTasks = new ArrayList<>(remoteTasks.size());
-            final List<Long> allDeletedTasks = new ArrayList<>(remoteTasks.size());
-
-            final List<String> uuids = new ArrayList<>(remoteTasks.keySet());
-            if (!uuids.isEmpty()) {
-                for (int i = 0; i < ((remoteTasks.size() / MAX_TASKS_PER_TRANSACTION) + 1); i++) {
-                    int end = (i + 1) * MAX_TASKS_PER_TRANSACTION;
-                    if (end > uuids.size()) {
-                        end = uuids.size();
-                    }
-                    if (end <= i * MAX_TASKS_PER_TRANSACTION) {
-                        break;
-                    }
-                    final List<String> transactionUUIDS = uuids.subList(i * MAX_TASKS_PER_TRANSACTION, end);
-                    final List<String> newUUIDS = new ArrayList<>(0);
-
-                    // updated tasks
-                    final ArrayList<ContentProviderOperation> pendingOperations = handleUpdatedTasks(remoteTasks,
-                            projectMapping, inbox, allUpdatedTasks, allDeletedTasks, transactionUUIDS, idMapping);
-
-                    handleInsertNewTasks(remoteTasks, projectMapping, inbox, transactionUUIDS, newUUIDS,
-                                         pendingOperations);
-
-                    try {
-                        mContext.getContentResolver().applyBatch(DefinitionsHelper.AUTHORITY_INTERNAL, pendingOperations);
-                    } catch (RemoteException | OperationApplicationException e) {
-                        Log.wtf(TAG, "failed to execute sync operations", e);
-                        throw new TaskWarriorSyncFailedException(TW_ERRORS.CANNOT_PARSE_MESSAGE, e);
-                    }
-                    if (!newUUIDS.isEmpty()) {
-                        final Cursor cursor = new MirakelQueryBuilder(mContext).select(Task.UUID, Task.ID).and(Task.UUID,
-                                Operation.IN,
-                                newUUIDS).query(Task.URI);
-                        final int uuidColumn = cursor.getColumnIndex(Task.UUID);
-                        final int idColumn = cursor.getColumnIndex(Task.ID);
-                        while (cursor.moveToNext()) {
-                            idMapping.put(cursor.getString(uuidColumn), cursor.getLong(idColumn));
-                        }
-                        cursor.close();
-                    }
-                }
-                // delete deleted tasks
-                mContext.getContentResolver().delete(Task.URI, Task.ID + " IN (" + TextUtils.join(",",
-                                                     allDeletedTasks) + ')', null);
-                handleReferences(remoteTasks, tagMapping, allUpdatedTasks, idMapping);
+            Log.d(TAG, "updated " + appliedUpdates + " tasks, skipped " + skippedUpdates
+                  + " unchanged tasks, kept the references of " + keptReferences + " tasks");
+            taskWarriorAccount.setSyncKey(receivedSyncKey);
+            if (receivedSyncKey.isPresent()) {
+                taskWarriorAccount.setLastAcknowledged(requestTime);
             }
-            taskWarriorAccount.setSyncKey(newSyncKey);
         }
         final Optional<String> message = remotes.getHeader("message");
         if (message.isPresent() && !message.get().isEmpty()) {
             Log.v(TAG, "Message from Server: " + message.get());
         }
-        client.close();
         NotificationService.updateServices(this.mContext);
     }
 
     @NonNull
     private Msg queryServer(final @NonNull Msg syncMessage,
                             final @NonNull TLSClient client) throws TaskWarriorSyncFailedException {
-        client.send(syncMessage.serialize());
-        final String response = client.recv();
-        if (MirakelCommonPreferences.isEnabledDebugMenu()
-            && MirakelCommonPreferences.isDumpTw()) {
-            Log.longInfo(response);
-            try {
-                FileUtils.writeToFile(new File(FileUtils.getLogDir(), getTime()
-                                               + ".tw_down.log"), response);
-            } catch (final IOException e) {
-                Log.e(TAG, "Error writing tw_down.log", e);
-            }
-        }
-        final Msg remotes = new Msg();
-        try {
-            remotes.parse(response);
-        } catch (final MalformedInputException e) {
-            Log.e(TAG, "cannot parse message", e);
-            client.close();
-            throw new TaskWarriorSyncFailedException(
-                TW_ERRORS.CANNOT_PARSE_MESSAGE, "cannot parse message", e);
-        } catch (final NullPointerException e) {
-            Log.wtf(TAG, "remotes.parse throwed NullPointer", e);
+        client.send(syncMessage);
+        final Optional<Msg> remotes = client.recv();
+        if (!remotes.isPresent()) {
+            Log.e(TAG, "cannot parse message");
             client.close();
             throw new TaskWarriorSyncFailedException(
-                TW_ERRORS.CANNOT_PARSE_MESSAGE,
-                "remotes.parse throwed NullPointer", e);
+                TW_ERRORS.CANNOT_PARSE_MESSAGE, "cannot parse message");
         }
-        return remotes;
+        return remotes.get();
     }
 
     @NonNull
@@ -292,34 +297,170 @@ public class TaskWarriorSync {
         return client;
     }
 
-    @NonNull
-    private static Optional<String> parseTasks(final @NonNull Msg remotes,
-            final @NonNull Map<String, TaskWarriorTask> remoteTasks) {
-        Optional<String> newSyncKey = absent();
-        final String tasksString[] = remotes.getPayload().split("\n");
+    /**
+     * Reads the tasks of the response and writes them in chunks of
+     * MAX_TASKS_PER_TRANSACTION while the payload is streamed from the
+     * server, so only one chunk of tasks is held in memory. References to
+     * tasks of later chunks are kept in pending and resolved after the whole
+     * payload was read.
+     */
+    private void receiveTasks(final @NonNull TaskWarriorAccount taskWarriorAccount,
+                              final @NonNull Msg remotes) throws TaskWarriorSyncFailedException {
         final Gson gson = new GsonBuilder().registerTypeAdapter(TaskWarriorTask.class,
                 new TaskWarriorTaskDeserializer()).create();
+        final ListMirakel inbox = ListMirakel.getInboxList(taskWarriorAccount.getAccountMirakel());
+        final PendingReferences pending = new PendingReferences();
+        final Map<String, TaskWarriorTask> remoteTasks = new HashMap<>(MAX_TASKS_PER_TRANSACTION);
+        FileWriter dump = null;
+        try {
+            if (MirakelCommonPreferences.isEnabledDebugMenu()
+                && MirakelCommonPreferences.isDumpTw()) {
+                try {
+                    dump = new FileWriter(new File(FileUtils.getLogDir(), getTime()
+                                                   + ".tw_down.log"));
+                } catch (final IOException e) {
+                    Log.e(TAG, "Error writing tw_down.log", e);
+                }
+            }
+            boolean hasMore = true;
+            while (hasMore) {
+                remoteTasks.clear();
+                hasMore = parseTasks(remotes, remoteTasks, gson, dump);
+                if (!remoteTasks.isEmpty()) {
+                    receivedTasks += remoteTasks.size();
+                    writeTasks(taskWarriorAccount, inbox, remoteTasks, pending);
+                }
+            }
+        } finally {
+            if (dump != null) {
+                try {
+                    dump.close();
+                } catch (final IOException e) {
+                    Log.e(TAG, "Error writing tw_down.log", e);
+                }
+            }
+        }
+        handlePendingReferences(pending);
+    }
 
-        // parse tasks
-        for (final String taskString : tasksString) {
-            if (taskString.charAt(0) != '{') {
-                Log.d(TAG, "Key: " + taskString);
-                newSyncKey = of(taskString);
-                continue;
+    /**
+     * Reads the payload of the message line by line until remoteTasks holds
+     * MAX_TASKS_PER_TRANSACTION tasks. The sync key is stored in
+     * receivedSyncKey.
+     *
+     * @return False if the whole payload was read
+     */
+    private boolean parseTasks(final @NonNull Msg remotes,
+                               final @NonNull Map<String, TaskWarriorTask> remoteTasks, final @NonNull Gson gson,
+                               final FileWriter dump) throws TaskWarriorSyncFailedException {
+        try {
+            Optional<String> taskString;
+            while (remoteTasks.size() < MAX_TASKS_PER_TRANSACTION) {
+                taskString = remotes.readPayloadLine();
+                if (!taskString.isPresent()) {
+                    return false;
+                }
+                if (dump != null) {
+                    dump.write(taskString.get());
+                    dump.write('\n');
+                }
+                if (taskString.get().charAt(0) != '{') {
+                    Log.d(TAG, "Key: " + taskString.get());
+                    receivedSyncKey = taskString;
+                    continue;
+                }
+                final TaskWarriorTask t = gson.fromJson(taskString.get(), TaskWarriorTask.class);
+                remoteTasks.put(t.getUUID(), t);
             }
-            final TaskWarriorTask t = gson.fromJson(taskString, TaskWarriorTask.class);
-            remoteTasks.put(t.getUUID(), t);
+            return true;
+        } catch (final IOException e) {
+            Log.e(TAG, "cannot read payload", e);
+            throw new TaskWarriorSyncFailedException(
+                TW_ERRORS.CANNOT_PARSE_MESSAGE, "cannot read payload", e);
+        }
+    }
+
+    /**
+     * Writes one chunk of received tasks and their references
+     */
+    private void writeTasks(final @NonNull TaskWarriorAccount taskWarriorAccount,
+                            final @NonNull ListMirakel inbox, final @NonNull Map<String, TaskWarriorTask> remoteTasks,
+                            final @NonNull PendingReferences pending) throws TaskWarriorSyncFailedException {
+        // lookup tables
+        final Map<String, Long> projectMapping = createProjects(taskWarriorAccount, remoteTasks);
+        final Map<String, Long> tagMapping = createTags(remoteTasks);
+        final Map<String, Long> idMapping = new HashMap<>(remoteTasks.size());
+
+        // lists for deletion
+        final List<Long> updatedTasks = new ArrayList<>(remoteTasks.size());
+        final List<Long> deletedTasks = new ArrayList<>(0);
+        final Set<String> unchangedTasks = new HashSet<>(0);
+
+        final List<String> uuids = new ArrayList<>(remoteTasks.keySet());
+        final List<String> newUUIDS = new ArrayList<>(0);
+
+        // updated tasks
+        final ArrayList<ContentProviderOperation> pendingOperations = handleUpdatedTasks(remoteTasks,
+                projectMapping, inbox, updatedTasks, deletedTasks, uuids, idMapping, unchangedTasks);
+
+        handleInsertNewTasks(remoteTasks, projectMapping, inbox, uuids, newUUIDS, pendingOperations);
+
+        applyOperations(pendingOperations);
+        resolveIds(newUUIDS, idMapping);
+        // delete deleted tasks
+        if (!deletedTasks.isEmpty()) {
+            mContext.getContentResolver().delete(Task.URI, Task.ID + " IN (" + TextUtils.join(",",
+                                                 deletedTasks) + ')', null);
+        }
+        handleReferences(remoteTasks, tagMapping, updatedTasks, idMapping, unchangedTasks, pending);
+        keptReferences += unchangedTasks.size();
+    }
+
+    private void applyOperations(final @NonNull ArrayList<ContentProviderOperation> operations) throws
+        TaskWarriorSyncFailedException {
+        if (operations.isEmpty()) {
+            return;
+        }
+        try {
+            mContext.getContentResolver().applyBatch(DefinitionsHelper.AUTHORITY_INTERNAL, operations);
+        } catch (RemoteException | OperationApplicationException e) {
+            Log.wtf(TAG, "failed to execute sync operations", e);
+            throw new TaskWarriorSyncFailedException(TW_ERRORS.CANNOT_PARSE_MESSAGE, e);
+        }
+    }
+
+    /**
+     * Looks up the local ids of the uuids which are not in idMapping yet
+     */
+    private void resolveIds(final @NonNull Collection<String> uuids,
+                            final @NonNull Map<String, Long> idMapping) {
+        final List<String> missing = new ArrayList<>(0);
+        for (final String uuid : uuids) {
+            if ((uuid != null) && !idMapping.containsKey(uuid)) {
+                missing.add(uuid);
+            }
+        }
+        for (int start = 0; start < missing.size(); start += MAX_TASKS_PER_TRANSACTION) {
+            final List<String> slice = missing.subList(start, Math.min(missing.size(),
+                                       start + MAX_TASKS_PER_TRANSACTION));
+            final Cursor cursor = new MirakelQueryBuilder(mContext).select(Task.UUID, Task.ID).and(Task.UUID,
+                                  Operation.IN, slice).query(Task.URI);
+            while (cursor.moveToNext()) {
+                idMapping.put(cursor.getString(0), cursor.getLong(1));
+            }
+            cursor.close();
         }
-        return newSyncKey;
     }
 
     private void handleReferences(final @NonNull Map<String, TaskWarriorTask> remoteTasks,
-                                  final @NonNull Map<String, Long> tagMapping, @NonNull final List<Long> allUpdatedTasks,
-                                  final @NonNull Map<String, Long> idMapping) throws TaskWarriorSyncFailedException {
-        final String taskList = TextUtils.join(",", allUpdatedTasks);
-        // delete all subtasks
+                                  final @NonNull Map<String, Long> tagMapping, @NonNull final List<Long> updatedTasks,
+                                  final @NonNull Map<String, Long> idMapping,
+                                  final @NonNull Set<String> unchangedTasks,
+                                  final @NonNull PendingReferences pending) throws TaskWarriorSyncFailedException {
+        final String taskList = TextUtils.join(",", updatedTasks);
+        // delete all subtasks, they are inserted for the parent below
         mContext.getContentResolver().delete(MirakelInternalContentProvider.SUBTASK_URI,
-                                             "child_id IN(" + taskList + ')', null);
+                                             "parent_id IN(" + taskList + ')', null);
         // delete all tags
         mContext.getContentResolver().delete(MirakelInternalContentProvider.TAG_CONNECTION_URI,
                                              "task_id IN(" + taskList + ')', null);
@@ -328,9 +469,21 @@ public class TaskWarriorSync {
                                              Recurring.CHILD + " IN(" + taskList + ')', null);
 
         final ArrayList<ContentProviderOperation> pendingOperations = new ArrayList<>(remoteTasks.size());
-        final Map<String, Long> recurringMapping = new HashMap<>(0);
+        final List<PendingDependency> dependencies = new ArrayList<>(0);
+        final List<PendingChild> recurringChilds = new ArrayList<>(0);
         for (final TaskWarriorTask t : remoteTasks.values()) {
-            if (t.isNotDeleted()) {
+            final boolean unchanged = unchangedTasks.contains(t.getUUID());
+            if (t.isRecurringChild()) {
+                recurringChilds.add(new PendingChild(t.getUUID(), idMapping.get(t.getUUID()), t.getParent(),
+                                                     t.getImask(), unchanged));
+            }
+            if (unchanged) {
+                // the references of unchanged tasks were not deleted above
+                if (t.isRecurringMaster()) {
+                    // its children may come in a later chunk
+                    pending.unchangedMasters.add(t.getUUID());
+                }
+            } else if (t.isNotDeleted()) {
                 for (final String tag : t.getTags()) {
                     final ContentValues cv = new ContentValues();
                     cv.put("task_id", idMapping.get(t.getUUID()));
@@ -339,18 +492,16 @@ public class TaskWarriorSync {
                                               MirakelInternalContentProvider.TAG_CONNECTION_URI).withValues(cv).build());
                 }
                 for (final String child : t.getDependencies()) {
-                    final ContentValues cv = new ContentValues();
-                    cv.put("parent_id", idMapping.get(t.getUUID()));
-                    cv.put("child_id", idMapping.get(child));
-                    pendingOperations.add(ContentProviderOperation.newInsert(
-                                              MirakelInternalContentProvider.SUBTASK_URI).withValues(cv).build());
+                    dependencies.add(new PendingDependency(idMapping.get(t.getUUID()), child));
                 }
                 if (t.isRecurringMaster()) {
+                    // a master without a supported recurrence removes it from its children
+                    pending.recurringMapping.put(t.getUUID(), null);
                     try {
                         final Optional<TaskWarriorRecurrence> r = t.getRecurrence();
                         if (r.isPresent()) {
                             r.get().create();
-                            recurringMapping.put(t.getUUID(), r.get().getId());
+                            pending.recurringMapping.put(t.getUUID(), r.get().getId());
                             final ContentValues cv = new ContentValues();
                             cv.put(Task.RECURRING, r.get().getId());
                             pendingOperations.add(ContentProviderOperation.newUpdate(Task.URI).withSelection(Task.UUID + "=?",
@@ -363,32 +514,123 @@ public class TaskWarriorSync {
                 }
             }
         }
-        final Collection<TaskWarriorTask> recurringChilds = Collections2.filter(remoteTasks.values(),
-        new Predicate<TaskWarriorTask>() {
-            @Override
-            public boolean apply(TaskWarriorTask input) {
-                return input.isRecurringChild();
+        // the subtasks and masters may be in this chunk, in an earlier one or
+        // already in the database
+        final List<String> referenced = new ArrayList<>(dependencies.size() + recurringChilds.size());
+        for (final PendingDependency dependency : dependencies) {
+            referenced.add(dependency.childUUID);
+        }
+        for (final PendingChild child : recurringChilds) {
+            referenced.add(child.parentUUID);
+        }
+        resolveIds(referenced, idMapping);
+        for (final PendingDependency dependency : dependencies) {
+            if (!addDependency(dependency, idMapping, pendingOperations)) {
+                pending.dependencies.add(dependency);
+            }
+        }
+        for (final PendingChild child : recurringChilds) {
+            if (!linkRecurringChild(child, idMapping, pending, pendingOperations, false)) {
+                pending.children.add(child);
             }
-        });
-        for (final TaskWarriorTask t : recurringChilds) {
-            final String parentUUID = t.getParent();
+        }
+        applyOperations(pendingOperations);
+    }
+
+    /**
+     * Inserts the references to tasks which came after the referencing task,
+     * or which were not part of the response at all
+     */
+    private void handlePendingReferences(final @NonNull PendingReferences pending) throws
+        TaskWarriorSyncFailedException {
+        if (pending.dependencies.isEmpty() && pending.children.isEmpty()) {
+            return;
+        }
+        final Map<String, Long> idMapping = new HashMap<>(pending.dependencies.size() +
+                pending.children.size());
+        final List<String> referenced = new ArrayList<>(pending.dependencies.size() +
+                pending.children.size());
+        for (final PendingDependency dependency : pending.dependencies) {
+            referenced.add(dependency.childUUID);
+        }
+        for (final PendingChild child : pending.children) {
+            referenced.add(child.parentUUID);
+        }
+        resolveIds(referenced, idMapping);
+        final ArrayList<ContentProviderOperation> pendingOperations = new ArrayList<>(referenced.size());
+        for (final PendingDependency dependency : pending.dependencies) {
+            if (!addDependency(dependency, idMapping, pendingOperations)) {
+                Log.w(TAG, "subtask " + dependency.childUUID + " does not exist");
+            }
+        }
+        for (final PendingChild child : pending.children) {
+            linkRecurringChild(child, idMapping, pending, pendingOperations, true);
+        }
+        applyOperations(pendingOperations);
+    }
+
+    private static boolean addDependency(final @NonNull PendingDependency dependency,
+                                         final @NonNull Map<String, Long> idMapping,
+                                         final @NonNull List<ContentProviderOperation> pendingOperations) {
+        final Long childId = idMapping.get(dependency.childUUID);
+        if (childId == null) {
+            return false;
+        }
+        final ContentValues cv = new ContentValues();
+        cv.put("parent_id", dependency.parentId);
+        cv.put("child_id", childId);
+        pendingOperations.add(ContentProviderOperation.newInsert(
+                                  MirakelInternalContentProvider.SUBTASK_URI).withValues(cv).build());
+        return true;
+    }
+
+    /**
+     * Sets the recurrence of the master on the child and inserts the mask
+     *
+     * @param force Link the child even if its master was not read, then the
+     *              recurrence is taken from the database
+     * @return False if the master was not read yet
+     */
+    private boolean linkRecurringChild(final @NonNull PendingChild child,
+                                       final @NonNull Map<String, Long> idMapping, final @NonNull PendingReferences pending,
+                                       final @NonNull List<ContentProviderOperation> pendingOperations, final boolean force) {
+        final boolean changedMaster = pending.recurringMapping.containsKey(child.parentUUID);
+        if (!changedMaster && !force && !pending.unchangedMasters.contains(child.parentUUID)) {
+            return false;
+        }
+        // an unchanged child of an unchanged master kept its recurrence
+        if (changedMaster || !child.unchanged) {
             final ContentValues updateCV = new ContentValues();
-            updateCV.put(Task.RECURRING, recurringMapping.get(parentUUID));
+            // the master was not written, so take its recurrence from the db
+            updateCV.put(Task.RECURRING, changedMaster ? pending.recurringMapping.get(child.parentUUID) :
+                         getLocalRecurrence(child.parentUUID));
             pendingOperations.add(ContentProviderOperation.newUpdate(Task.URI).withSelection(Task.UUID + "=?",
-                                  new String[] {t.getUUID()}).withValues(updateCV).build());
+                                  new String[] {child.uuid}).withValues(updateCV).build());
+        }
+        // and an unchanged child its mask
+        if (!child.unchanged) {
             final ContentValues insertCV = new ContentValues();
-            insertCV.put(Recurring.CHILD, idMapping.get(t.getUUID()));
-            insertCV.put(Recurring.PARENT, idMapping.get(parentUUID));
-            insertCV.put(Recurring.OFFSET_COUNT, t.getImask());
+            insertCV.put(Recurring.CHILD, child.id);
+            insertCV.put(Recurring.PARENT, idMapping.get(child.parentUUID));
+            insertCV.put(Recurring.OFFSET_COUNT, child.imask);
             pendingOperations.add(ContentProviderOperation.newInsert(
                                       MirakelInternalContentProvider.RECURRING_TW_URI).withValues(insertCV).build());
         }
-        try {
-            mContext.getContentResolver().applyBatch(DefinitionsHelper.AUTHORITY_INTERNAL, pendingOperations);
-        } catch (RemoteException | OperationApplicationException e) {
-            Log.wtf(TAG, "failed to execute sync operations", e);
-            throw new TaskWarriorSyncFailedException(TW_ERRORS.CANNOT_PARSE_MESSAGE, e);
+        return true;
+    }
+
+    /**
+     * @return The recurrence of the local task with this uuid, -1 if it has none
+     */
+    private long getLocalRecurrence(final @NonNull String uuid) {
+        final Cursor c = new MirakelQueryBuilder(mContext).select(Task.RECURRING)
+        .and(Task.UUID, Operation.EQ, uuid).query(Task.URI);
+        long recurrence = -1L;
+        if (c.moveToFirst()) {
+            recurrence = c.getLong(0);
         }
+        c.close();
+        return recurrence;
     }
 
     private void handleInsertNewTasks(final @NonNull Map<String, TaskWarriorTask> remoteTasks,
@@ -410,25 +652,53 @@ public class TaskWarriorSync {
             Map<String, TaskWarriorTask> remoteTasks, final @NonNull Map<String, Long> projectMapping,
             final @NonNull ListMirakel inbox, final @NonNull List<Long> allUpdatedTasks,
             final @NonNull List<Long> allDeletedTasks, final @NonNull List<String> uuids,
-            final @NonNull Map<String, Long> idMapping) {
-        final Cursor cursor = new MirakelQueryBuilder(mContext).select(Task.UUID, Task.ID,
-                Task.ADDITIONAL_ENTRIES).and(Task.UUID, Operation.IN, uuids).query(Task.URI);
+            final @NonNull Map<String, Long> idMapping, final @NonNull Set<String> unchangedTasks) {
+        final Cursor cursor = new MirakelQueryBuilder(mContext).select(TaskWarriorTask.LOCAL_COLUMNS)
+        .and(Task.UUID, Operation.IN, uuids).query(Task.URI);
         final ArrayList<ContentProviderOperation> pendingOperations = new ArrayList<>(remoteTasks.size());
 
         final int uuidColumn = cursor.getColumnIndex(Task.UUID);
         final int idColumn = cursor.getColumnIndex(Task.ID);
-        final int additionalColumn = cursor.getColumnIndex(Task.ADDITIONAL_ENTRIES);
+        final int updatedAtColumn = cursor.getColumnIndex(DatabaseHelper.UPDATED_AT);
 
+        final List<Long> localIds = new ArrayList<>(cursor.getCount());
+        while (cursor.moveToNext()) {
+            localIds.add(cursor.getLong(idColumn));
+        }
+        final Map<Long, List<String>> localTags = getLocalReferences(localIds,
+                Tag.TAG_CONNECTION_TABLE + ".task_id", Tag.TABLE + '.' + Tag.NAME,
+                MirakelInternalContentProvider.TASK_TAG_JOIN_URI);
+        final Map<Long, List<String>> localDependencies = getLocalReferences(localIds,
+                Task.SUBTASK_TABLE + ".parent_id", Task.TABLE + '.' + Task.UUID,
+                MirakelInternalContentProvider.TASK_SUBTASK_URI);
+
+        cursor.moveToPosition(-1);
         while (cursor.moveToNext()) {
             final String uuid = cursor.getString(uuidColumn);
             final long localId = cursor.getLong(idColumn);
-            final String additionals = cursor.getString(additionalColumn);
             final TaskWarriorTask remoteTask = remoteTasks.get(uuid);
-            if (remoteTask.isNotDeleted()) {
+            if (remoteTask.isNotDeleted() && remoteTask.isModifiedAt(cursor.getLong(updatedAtColumn))) {
+                // we already have this version, do not rewrite the row
+                idMapping.put(uuid, localId);
+                unchangedTasks.add(uuid);
+                skippedUpdates++;
+            } else if (remoteTask.isNotDeleted()) {
                 try {
-                    pendingOperations.add(remoteTask.getUpdate(localId, additionals, projectMapping, inbox.getId()));
-                    allUpdatedTasks.add(localId);
+                    final Optional<ContentProviderOperation> update = remoteTask.getUpdate(cursor, projectMapping,
+                            inbox.getId());
+                    if (update.isPresent()) {
+                        pendingOperations.add(update.get());
+                        appliedUpdates++;
+                    } else {
+                        skippedUpdates++;
+                    }
                     idMapping.put(uuid, localId);
+                    if (remoteTask.hasSameReferences(getOrEmpty(localTags, localId),
+                                                     getOrEmpty(localDependencies, localId))) {
+                        unchangedTasks.add(uuid);
+                    } else {
+                        allUpdatedTasks.add(localId);
+                    }
                 } catch (final TaskWarriorTaskDeletedException e) {
                     Log.w(TAG, "however this task can be deleted here, anyway delete it", e);
                     allDeletedTasks.add(localId);
@@ -442,6 +712,41 @@ public class TaskWarriorSync {
         return pendingOperations;
     }
 
+    /**
+     * Loads a reference of the tasks (tag names, uuids of subtasks) grouped by
+     * the task id
+     */
+    @NonNull
+    private Map<Long, List<String>> getLocalReferences(final @NonNull List<Long> ids,
+            final @NonNull String idColumn, final @NonNull String valueColumn, final @NonNull Uri uri) {
+        final Map<Long, List<String>> references = new HashMap<>(ids.size());
+        if (ids.isEmpty()) {
+            return references;
+        }
+        final Cursor cursor = new MirakelQueryBuilder(mContext).select(idColumn, valueColumn).and(idColumn,
+                Operation.IN, ids).query(uri);
+        while (cursor.moveToNext()) {
+            final long id = cursor.getLong(0);
+            List<String> values = references.get(id);
+            if (values == null) {
+                values = new ArrayList<>();
+                references.put(id, values);
+            }
+            values.add(cursor.getString(1));
+        }
+        cursor.close();
+        return references;
+    }
+
+    @NonNull
+    private static List<String> getOrEmpty(final @NonNull Map<Long, List<String>> map, final long key) {
+        final List<String> values = map.get(key);
+        if (values == null) {
+            return Collections.emptyList();
+        }
+        return values;
+    }
+
     private Map<String, Long> createProjects(final @NonNull TaskWarriorAccount taskWarriorAccount,
             final @NonNull Map<String, TaskWarriorTask> remoteTasks) {
         final Set<String> projects = new HashSet<>(0);
@@ -508,37 +813,80 @@ public class TaskWarriorSync {
 
     public void sync(final @NonNull TaskWarriorAccount taskWarriorAccount,
                      final boolean couldNotFindCommonAncestorWorkaround) throws TaskWarriorSyncFailedException {
+        // send the done toggles the ui has not written yet
+        SaveQueue.awaitPending();
+        sync(taskWarriorAccount, couldNotFindCommonAncestorWorkaround, false);
+    }
+
+    /**
+     * @return The number of local tasks the last sync wrote
+     */
+    public int getAppliedUpdates() {
+        return appliedUpdates;
+    }
+
+    /**
+     * @return The number of received tasks the last sync left alone, because
+     * the local row was up to date
+     */
+    public int getSkippedUpdates() {
+        return skippedUpdates;
+    }
+
+    /**
+     * @param recovery True if the sync key was reset, then we send all tasks
+     *                 changed since the server acknowledged our last sync
+     */
+    private void sync(final @NonNull TaskWarriorAccount taskWarriorAccount,
+                      final boolean couldNotFindCommonAncestorWorkaround,
+                      final boolean recovery) throws TaskWarriorSyncFailedException {
         final Msg sync = new Msg();
         sync.set("protocol", TW_PROTOCOL_VERSION);
         sync.set("type", "sync");
         sync.set("org", taskWarriorAccount.getOrg());
         sync.set("user", taskWarriorAccount.getUser());
         sync.set("key", taskWarriorAccount.getUserPassword());
-        final StringBuilder payload = new StringBuilder();
-        OptionalUtils.withOptional(taskWarriorAccount.getSyncKey(), new OptionalUtils.Procedure<String>() {
-            @Override
-            public void apply(final String input) {
-                payload.append(input).append('\n');
-            }
-        });
         final List<Task> localTasks;
-        if (couldNotFindCommonAncestorWorkaround) {
+        final Optional<Long> lastAcknowledged = taskWarriorAccount.getLastAcknowledged();
+        if (couldNotFindCommonAncestorWorkaround && !(recovery && lastAcknowledged.isPresent())) {
             localTasks = new ArrayList<>(0);
+        } else if (recovery && lastAcknowledged.isPresent()) {
+            localTasks = Task.getTasksModifiedSince(taskWarriorAccount.getAndroidAccount(),
+                                                    lastAcknowledged.get());
         } else {
             localTasks = Task.getTasksToSync(taskWarriorAccount.getAndroidAccount());
-            for (final Task task : localTasks) {
-                payload.append(taskToJson(task)).append('\n');
+        }
+        // all tasks are encoded directly into the payload of the message
+        final Writer payload = sync.getPayloadWriter();
+        try {
+            final Optional<String> syncKey = taskWarriorAccount.getSyncKey();
+            if (syncKey.isPresent()) {
+                payload.append(syncKey.get()).append('\n');
+            }
+            if (!localTasks.isEmpty()) {
+                final TaskWarriorTaskRelations relations = TaskWarriorTaskRelations.load(this.mContext,
+                        localTasks);
+                final TaskWarriorTaskSerializer serializer = new TaskWarriorTaskSerializer(this.mContext);
+                final JsonWriter writer = TaskWarriorTaskSerializer.createWriter(payload);
+                for (final Task task : localTasks) {
+                    serializer.write(writer, task, relations);
+                    payload.append('\n');
+                }
             }
+            payload.flush();
+        } catch (final IOException e) {
+            // the payload is kept in memory, this does not throw
+            Log.wtf(TAG, "cannot serialize task", e);
+            throw new TaskWarriorSyncFailedException(TW_ERRORS.CANNOT_PARSE_MESSAGE, e);
         }
 
         // Build sync-request
-        sync.setPayload(payload.toString());
         if (MirakelCommonPreferences.isDumpTw()) {
             try {
-                final FileWriter fileWriter = new FileWriter(new File(
+                final FileOutputStream dump = new FileOutputStream(new File(
                             FileUtils.getLogDir(), getTime() + ".tw_up.log"));
-                fileWriter.write(payload.toString());
-                fileWriter.close();
+                sync.writePayloadTo(dump);
+                dump.close();
             } catch (final IOException e) {
                 Log.e(TAG, "Eat it", e);
                 // eat it
@@ -562,9 +910,14 @@ public class TaskWarriorSync {
      */
     @NonNull
     String taskToJson(@NonNull final Task task) {
-        return new GsonBuilder()
-               .registerTypeAdapter(Task.class,
-                                    new TaskWarriorTaskSerializer(this.mContext)).create()
-               .toJson(task);
+        final StringWriter json = new StringWriter();
+        try {
+            new TaskWarriorTaskSerializer(this.mContext).write(TaskWarriorTaskSerializer.createWriter(json),
+                    task, TaskWarriorTaskRelations.load(this.mContext, Collections.singletonList(task)));
+        } catch (final IOException e) {
+            // a StringWriter does not throw
+            Log.wtf(TAG, "cannot serialize task", e);
+        }
+        return json.toString();
     }
 }
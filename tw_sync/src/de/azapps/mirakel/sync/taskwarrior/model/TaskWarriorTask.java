@@ -21,6 +21,7 @@ package de.azapps.mirakel.sync.taskwarrior.model;
 
 import android.content.ContentProviderOperation;
 import android.content.ContentValues;
+import android.database.Cursor;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.TextUtils;
@@ -32,10 +33,13 @@ import com.google.common.collect.Collections2;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import de.azapps.mirakel.DefinitionsHelper;
 import de.azapps.mirakel.helper.DateTimeHelper;
@@ -57,6 +61,14 @@ public class TaskWarriorTask {
 
     private static final String TAG = "TaskWarriorTask";
 
+    /**
+     * All columns a remote task writes, the local row must be queried with
+     * these to compute an update
+     */
+    public static final List<String> LOCAL_COLUMNS = Arrays.asList(Task.ID, Task.UUID, Task.NAME,
+            DatabaseHelper.CREATED_AT, DatabaseHelper.UPDATED_AT, Task.DONE, Task.RECURRING_SHOWN, Task.PRIORITY,
+            Task.LIST_ID, Task.DUE, Task.REMINDER, Task.PROGRESS, Task.CONTENT, Task.ADDITIONAL_ENTRIES);
+
     private enum Priority {
         H, M, L;
 
@@ -279,12 +291,85 @@ public class TaskWarriorTask {
         return UUID;
     }
 
+    /**
+     * Creates an update which contains only the columns differing from the
+     * local row
+     *
+     * @param local Cursor pointing to the local row, queried with {@link #LOCAL_COLUMNS}
+     * @return The update or absent if the local row is up to date. If only the
+     * modification time differs, the update writes just that, so the next sync
+     * can skip the task with {@link #isModifiedAt(long)}.
+     */
     @NonNull
-    public ContentProviderOperation getUpdate(final long localId,
-            final @NonNull String additionalColumn, final @NonNull Map<String, Long> projectMapping,
+    public Optional<ContentProviderOperation> getUpdate(final @NonNull Cursor local,
+            final @NonNull Map<String, Long> projectMapping,
             final long inboxID) throws TaskWarriorTaskDeletedException {
-        return ContentProviderOperation.newUpdate(Task.URI).withValues(getContentValues(projectMapping,
-                of(additionalColumn), inboxID)).withSelection(Task.ID + "=?", new String[] {String.valueOf(localId)}).build();
+        final long localId = local.getLong(local.getColumnIndex(Task.ID));
+        final ContentValues cv = getContentValues(projectMapping,
+                                 Optional.fromNullable(local.getString(local.getColumnIndex(Task.ADDITIONAL_ENTRIES))),
+                                 inboxID);
+        boolean changed = false;
+        for (final String key : new ArrayList<>(cv.keySet())) {
+            if (DatabaseHelper.UPDATED_AT.equals(key)) {
+                // a new modification stamp alone is no change
+                continue;
+            }
+            if (isEqual(key, cv.get(key), local)) {
+                cv.remove(key);
+            } else {
+                changed = true;
+            }
+        }
+        if (!changed) {
+            // without a modification time from the server there is nothing to remember
+            if (!modified.isPresent() || isEqual(DatabaseHelper.UPDATED_AT, modified.get(), local)) {
+                return absent();
+            }
+            cv.clear();
+            cv.put(DatabaseHelper.UPDATED_AT, modified.get());
+        }
+        return of(ContentProviderOperation.newUpdate(Task.URI).withValues(cv).withSelection(Task.ID + "=?",
+                  new String[] {String.valueOf(localId)}).build());
+    }
+
+    private static boolean isEqual(final @NonNull String key, final @Nullable Object value,
+                                   final @NonNull Cursor local) {
+        final int column = local.getColumnIndex(key);
+        if (column == -1) {
+            return false;
+        } else if (value == null || local.isNull(column)) {
+            return (value == null) && local.isNull(column);
+        } else if (Task.ADDITIONAL_ENTRIES.equals(key)) {
+            // the order of the entries does not matter
+            return Task.parseAdditionalEntries(local.getString(column)).equals(Task.parseAdditionalEntries((
+                        String) value));
+        } else if (value instanceof Boolean) {
+            return (Boolean) value == (local.getInt(column) != 0);
+        } else if (value instanceof Number) {
+            return ((Number) value).longValue() == local.getLong(column);
+        }
+        return value.toString().equals(local.getString(column));
+    }
+
+    /**
+     * Recurrences are recreated on every sync, so recurring tasks never have
+     * the same references.
+     *
+     * @param tagNames The names of the local tags
+     * @param dependencies The uuids of the local subtasks
+     * @return True if the tags and dependencies of the local task are the same
+     */
+    public boolean hasSameReferences(final @NonNull Collection<String> tagNames,
+                                     final @NonNull Collection<String> dependencies) {
+        if (isRecurringMaster() || isRecurringChild()) {
+            return false;
+        }
+        final Set<String> remoteTags = new HashSet<>(tags.size());
+        for (final String tag : tags) {
+            remoteTags.add(tag.replace("_", " "));
+        }
+        return remoteTags.equals(new HashSet<>(tagNames))
+               && new HashSet<>(depends).equals(new HashSet<>(dependencies));
     }
 
     @NonNull
@@ -425,6 +510,17 @@ public class TaskWarriorTask {
         additionalEntries.putAll(uda);
     }
 
+    /**
+     * Remote tasks we applied locally carry their modification time in
+     * updated_at, so equal stamps mean the row is already up to date.
+     *
+     * @param updatedAt The local modification time in seconds
+     * @return True if the server sent the same version we have
+     */
+    public boolean isModifiedAt(final long updatedAt) {
+        return modified.isPresent() && (modified.get() == updatedAt);
+    }
+
     public boolean isNotDeleted() {
         return status != Status.DELETED;
     }
@@ -0,0 +1,348 @@
+/*******************************************************************************
+ * Mirakel is an Android App for managing your ToDo-Lists
+ *
+ * Copyright (c) 2013-2014 Anatolij Zelenin, Georg Semmler.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package de.azapps.mirakel.sync.taskwarrior.model;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.util.Pair;
+
+import com.google.common.base.Optional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.azapps.mirakel.DefinitionsHelper.SYNC_STATE;
+import de.azapps.mirakel.model.MirakelInternalContentProvider;
+import de.azapps.mirakel.model.query_builder.MirakelQueryBuilder;
+import de.azapps.mirakel.model.query_builder.MirakelQueryBuilder.Operation;
+import de.azapps.mirakel.model.query_builder.MirakelQueryBuilder.Sorting;
+import de.azapps.mirakel.model.recurring.Recurring;
+import de.azapps.mirakel.model.tags.Tag;
+import de.azapps.mirakel.model.task.Task;
+import de.azapps.tools.Log;
+
+/**
+ * The relations of all tasks of one upload to the taskwarrior server.
+ *
+ * Everything the serializer needs besides the task itself is loaded here
+ * with a few IN-queries, so writing the tasks does not touch the database.
+ * Broken data (missing uuids, duplicate recurrence offsets, orphaned
+ * recurrence childs) is repaired while loading.
+ */
+public class TaskWarriorTaskRelations {
+
+    private static final String TAG = "TaskWarriorTaskRelations";
+    // stay below the limit of sqlite for variables in one statement
+    private static final int MAX_IDS_PER_QUERY = 500;
+
+    private final Map<Long, List<String>> tagNames = new HashMap<>();
+    private final Map<Long, List<String>> subtaskUUIDs = new HashMap<>();
+    private final Map<Long, Recurring> recurrences = new HashMap<>();
+    private final Set<Long> recurringChilds = new HashSet<>();
+    // child id -> (master id, offset)
+    private final Map<Long, Pair<Long, Integer>> masters = new HashMap<>();
+    // master id -> (child id, offset) ordered by offset
+    private final Map<Long, List<Pair<Long, Integer>>> childs = new HashMap<>();
+    private final Map<Long, Task> relatedTasks = new HashMap<>();
+
+    private TaskWarriorTaskRelations() {
+        // use load()
+    }
+
+    /**
+     * Loads the relations of all tasks
+     *
+     * @param ctx   The context
+     * @param tasks The tasks to upload
+     * @return The relations
+     */
+    @NonNull
+    public static TaskWarriorTaskRelations load(@NonNull final Context ctx,
+            @NonNull final List<Task> tasks) {
+        final TaskWarriorTaskRelations relations = new TaskWarriorTaskRelations();
+        if (tasks.isEmpty()) {
+            return relations;
+        }
+        final List<Long> ids = new ArrayList<>(tasks.size());
+        final Set<Long> recurrenceIds = new HashSet<>();
+        for (final Task task : tasks) {
+            if (task.getUUID().trim().isEmpty()) {
+                task.setUUID(java.util.UUID.randomUUID().toString());
+                task.save(false);
+            }
+            ids.add(task.getId());
+            if (task.getRecurrenceId() != -1L) {
+                recurrenceIds.add(task.getRecurrenceId());
+            }
+        }
+        relations.loadRecurrences(ctx, recurrenceIds);
+        relations.loadRecurringMasks(ctx, ids);
+        // the other tasks we need: the masters of the childs and the childs of the masters
+        final Set<Long> relatedIds = new HashSet<>();
+        for (final Pair<Long, Integer> master : relations.masters.values()) {
+            relatedIds.add(master.first);
+        }
+        for (final List<Pair<Long, Integer>> masterChilds : relations.childs.values()) {
+            for (final Pair<Long, Integer> child : masterChilds) {
+                relatedIds.add(child.first);
+            }
+        }
+        relations.loadRelatedTasks(ctx, relatedIds);
+        // childs inherit the subtasks of their master
+        final Set<Long> parentIds = new HashSet<>(ids);
+        for (final Long child : ids) {
+            final Pair<Long, Integer> master = relations.masters.get(child);
+            if (master != null) {
+                parentIds.add(master.first);
+            }
+        }
+        relations.loadSubtasks(ctx, parentIds);
+        relations.loadTags(ctx, ids);
+        relations.removeDuplicateOffsets();
+        relations.removeOrphanedChilds(tasks);
+        return relations;
+    }
+
+    private static List<List<Long>> partition(@NonNull final Collection<Long> ids) {
+        final List<Long> all = new ArrayList<>(ids);
+        final List<List<Long>> parts = new ArrayList<>((all.size() / MAX_IDS_PER_QUERY) + 1);
+        for (int i = 0; i < all.size(); i += MAX_IDS_PER_QUERY) {
+            parts.add(all.subList(i, Math.min(i + MAX_IDS_PER_QUERY, all.size())));
+        }
+        return parts;
+    }
+
+    private void loadRecurrences(final Context ctx, final Set<Long> recurrenceIds) {
+        for (final List<Long> part : partition(recurrenceIds)) {
+            for (final Recurring recurring : new MirakelQueryBuilder(ctx).and(Recurring.ID, Operation.IN,
+                    part).getList(Recurring.class)) {
+                this.recurrences.put(recurring.getId(), recurring);
+            }
+        }
+    }
+
+    private void loadRecurringMasks(final Context ctx, final List<Long> ids) {
+        for (final List<Long> part : partition(ids)) {
+            // the childs of the masters
+            Cursor cursor = new MirakelQueryBuilder(ctx).select(Recurring.PARENT, Recurring.CHILD,
+                            Recurring.OFFSET_COUNT).and(Recurring.PARENT, Operation.IN, part)
+                            .sort(Recurring.OFFSET_COUNT, Sorting.ASC)
+                            .query(MirakelInternalContentProvider.RECURRING_TW_URI);
+            while (cursor.moveToNext()) {
+                final long parent = cursor.getLong(0);
+                List<Pair<Long, Integer>> masterChilds = this.childs.get(parent);
+                if (masterChilds == null) {
+                    masterChilds = new ArrayList<>();
+                    this.childs.put(parent, masterChilds);
+                }
+                masterChilds.add(new Pair<>(cursor.getLong(1), cursor.getInt(2)));
+            }
+            cursor.close();
+            // the masters of the childs
+            cursor = new MirakelQueryBuilder(ctx).select(Recurring.PARENT, Recurring.CHILD,
+                     Recurring.OFFSET_COUNT).and(Recurring.CHILD, Operation.IN, part)
+                     .sort(Recurring.OFFSET_COUNT, Sorting.ASC)
+                     .query(MirakelInternalContentProvider.RECURRING_TW_URI);
+            while (cursor.moveToNext()) {
+                final long child = cursor.getLong(1);
+                this.recurringChilds.add(child);
+                if (!this.masters.containsKey(child)) {
+                    this.masters.put(child, new Pair<>(cursor.getLong(0), cursor.getInt(2)));
+                }
+            }
+            cursor.close();
+        }
+    }
+
+    private void loadRelatedTasks(final Context ctx, final Set<Long> relatedIds) {
+        for (final List<Long> part : partition(relatedIds)) {
+            for (final Task task : new MirakelQueryBuilder(ctx).and(Task.ID, Operation.IN,
+                    part).getList(Task.class)) {
+                this.relatedTasks.put(task.getId(), task);
+            }
+        }
+    }
+
+    private void loadSubtasks(final Context ctx, final Set<Long> parentIds) {
+        for (final List<Long> part : partition(parentIds)) {
+            final Cursor cursor = new MirakelQueryBuilder(ctx).select(Task.SUBTASK_TABLE + ".parent_id",
+                                  Task.TABLE + '.' + Task.UUID).and(Task.SUBTASK_TABLE + ".parent_id", Operation.IN, part)
+                                  .query(MirakelInternalContentProvider.TASK_SUBTASK_URI);
+            while (cursor.moveToNext()) {
+                add(this.subtaskUUIDs, cursor.getLong(0), cursor.getString(1));
+            }
+            cursor.close();
+        }
+    }
+
+    private void loadTags(final Context ctx, final List<Long> ids) {
+        for (final List<Long> part : partition(ids)) {
+            final Cursor cursor = new MirakelQueryBuilder(ctx).select(Tag.TAG_CONNECTION_TABLE + ".task_id",
+                                  Tag.TABLE + '.' + Tag.NAME).and(Tag.TAG_CONNECTION_TABLE + ".task_id", Operation.IN, part)
+                                  .query(MirakelInternalContentProvider.TASK_TAG_JOIN_URI);
+            while (cursor.moveToNext()) {
+                add(this.tagNames, cursor.getLong(0), cursor.getString(1));
+            }
+            cursor.close();
+        }
+    }
+
+    private static void add(final Map<Long, List<String>> map, final long key, final String value) {
+        List<String> values = map.get(key);
+        if (values == null) {
+            values = new ArrayList<>();
+            map.put(key, values);
+        }
+        values.add(value);
+    }
+
+    /**
+     * One offset must not be twice in the DB, destroy the later childs
+     */
+    private void removeDuplicateOffsets() {
+        for (final List<Pair<Long, Integer>> masterChilds : this.childs.values()) {
+            int oldOffset = -1;
+            final List<Pair<Long, Integer>> duplicates = new ArrayList<>(0);
+            for (final Pair<Long, Integer> child : masterChilds) {
+                if (child.second <= oldOffset) {
+                    duplicates.add(child);
+                    final Optional<Task> childTask = Task.get(child.first, true);
+                    if (childTask.isPresent()) {
+                        childTask.get().destroy(true);
+                    } else {
+                        // Whoa there is some garbage which we should destroy!
+                        Task.destroyRecurrenceGarbageForTask(child.first);
+                    }
+                } else {
+                    oldOffset = child.second;
+                }
+            }
+            masterChilds.removeAll(duplicates);
+        }
+    }
+
+    /**
+     * A child whose master is gone should not exist
+     */
+    private void removeOrphanedChilds(final List<Task> tasks) {
+        for (final Task task : tasks) {
+            final Pair<Long, Integer> master = this.masters.get(task.getId());
+            if (isRecurring(task) && task.getDue().isPresent() && !isMaster(task)
+                && (master != null) && !getTask(master.first).isPresent()) {
+                task.destroy();
+            }
+        }
+    }
+
+    @NonNull
+    private Optional<Task> getTask(final long id) {
+        final Task task = this.relatedTasks.get(id);
+        if ((task == null) || (task.getSyncState() == SYNC_STATE.DELETE)) {
+            return Optional.absent();
+        }
+        return Optional.of(task);
+    }
+
+    private boolean isRecurring(final Task task) {
+        return this.recurrences.containsKey(task.getRecurrenceId());
+    }
+
+    @NonNull
+    public Optional<Recurring> getRecurrence(@NonNull final Task task) {
+        return Optional.fromNullable(this.recurrences.get(task.getRecurrenceId()));
+    }
+
+    /**
+     * @return True if the task is recurring and not a child of another task
+     */
+    public boolean isMaster(@NonNull final Task task) {
+        return isRecurring(task) && !this.recurringChilds.contains(task.getId());
+    }
+
+    @NonNull
+    public List<String> getTagNames(@NonNull final Task task) {
+        final List<String> names = this.tagNames.get(task.getId());
+        return (names == null) ? new ArrayList<String>(0) : names;
+    }
+
+    /**
+     * @return The uuids of the subtasks, including the ones of the master
+     */
+    @NonNull
+    public List<String> getSubtaskUUIDs(@NonNull final Task task) {
+        final List<String> uuids = new ArrayList<>();
+        final List<String> own = this.subtaskUUIDs.get(task.getId());
+        if (own != null) {
+            uuids.addAll(own);
+        }
+        if (isRecurring(task)) {
+            final Pair<Long, Integer> master = this.masters.get(task.getId());
+            if ((master != null) && (master.first != task.getId())) {
+                final List<String> inherited = this.subtaskUUIDs.get(master.first);
+                if (inherited != null) {
+                    uuids.addAll(inherited);
+                }
+            }
+        }
+        return uuids;
+    }
+
+    /**
+     * @return The childs of a master with their offset, ordered by the offset
+     */
+    @NonNull
+    public List<Pair<Optional<Task>, Integer>> getChilds(@NonNull final Task master) {
+        final List<Pair<Long, Integer>> masterChilds = this.childs.get(master.getId());
+        if (masterChilds == null) {
+            return new ArrayList<>(0);
+        }
+        final List<Pair<Optional<Task>, Integer>> ret = new ArrayList<>(masterChilds.size());
+        for (final Pair<Long, Integer> child : masterChilds) {
+            final Optional<Task> childTask = getTask(child.first);
+            if (!childTask.isPresent()) {
+                Log.wtf(TAG, "childtask is null");
+            }
+            ret.add(new Pair<>(childTask, child.second));
+        }
+        return ret;
+    }
+
+    /**
+     * @return The master of a child and the offset of the child
+     */
+    @NonNull
+    public Optional<Pair<Task, Integer>> getMaster(@NonNull final Task child) {
+        final Pair<Long, Integer> master = this.masters.get(child.getId());
+        if (master == null) {
+            return Optional.absent();
+        }
+        final Optional<Task> masterTask = getTask(master.first);
+        if (!masterTask.isPresent()) {
+            return Optional.absent();
+        }
+        return Optional.of(new Pair<>(masterTask.get(), master.second));
+    }
+}
@@ -19,18 +19,15 @@
 package de.azapps.mirakel.sync.taskwarrior.model;
 
 import android.content.Context;
-import android.database.Cursor;
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
 import android.util.Pair;
 
 import com.google.common.base.Optional;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonPrimitive;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
+import com.google.gson.stream.JsonWriter;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
@@ -39,31 +36,32 @@ import java.util.Map;
 
 import de.azapps.mirakel.DefinitionsHelper.SYNC_STATE;
 import de.azapps.mirakel.helper.DateTimeHelper;
-import de.azapps.mirakel.model.MirakelInternalContentProvider;
-import de.azapps.mirakel.model.query_builder.MirakelQueryBuilder;
-import de.azapps.mirakel.model.query_builder.MirakelQueryBuilder.Operation;
 import de.azapps.mirakel.model.recurring.Recurring;
-import de.azapps.mirakel.model.tags.Tag;
 import de.azapps.mirakel.model.task.Task;
 import de.azapps.mirakel.sync.R;
 import de.azapps.tools.Log;
 
-public class TaskWarriorTaskSerializer implements JsonSerializer<Task> {
+/**
+ * Writes tasks in the taskwarrior format
+ *
+ * An instance holds a date formatter and must only be used by one thread.
+ */
+public class TaskWarriorTaskSerializer {
 
     private static final String TAG = "TaskWarriorTaskSerializer";
     private final Context mContext;
+    private final SimpleDateFormat dateFormat;
 
     public TaskWarriorTaskSerializer(final Context ctx) {
         this.mContext = ctx;
+        this.dateFormat = new SimpleDateFormat(ctx.getString(R.string.TWDateFormat));
     }
 
     private String formatCal(final Calendar calendar) {
-        final SimpleDateFormat df = new SimpleDateFormat(
-            this.mContext.getString(R.string.TWDateFormat));
         if (calendar.getTimeInMillis() < 0L) {
             calendar.setTimeInMillis(10L);
         }
-        return df.format(calendar.getTime());
+        return this.dateFormat.format(calendar.getTime());
     }
 
 
@@ -79,18 +77,39 @@ public class TaskWarriorTaskSerializer implements JsonSerializer<Task> {
         return str;
     }
 
-    @Override
-    public JsonElement serialize(final Task src, final Type typeOfSrc,
-                                 final JsonSerializationContext context) {
-        final JsonObject json = new JsonObject();
+    /**
+     * Creates a writer for the upload, every task is written as one top level
+     * value. The output is the same as the one of Gson.toJson.
+     */
+    @NonNull
+    public static JsonWriter createWriter(@NonNull final Writer out) {
+        final JsonWriter writer = new JsonWriter(out);
+        writer.setLenient(true);
+        writer.setHtmlSafe(true);
+        return writer;
+    }
+
+    /**
+     * Additional entries with the same key replace the fields we write
+     */
+    private static boolean isOverridden(final Map<String, String> additionals, final String key) {
+        return additionals.containsKey(key) && !Task.NO_PROJECT.equals(key) && !"status".equals(key);
+    }
+
+    /**
+     * Writes the task as json object
+     *
+     * This does not query the database, everything besides the task itself
+     * is taken from the relations.
+     *
+     * @param out       The writer, created with createWriter()
+     * @param src       The task to write
+     * @param relations The relations of all uploaded tasks
+     */
+    public void write(@NonNull final JsonWriter out, @NonNull final Task src,
+                      @NonNull final TaskWarriorTaskRelations relations) throws IOException {
         final Map<String, String> additionals = src.getAdditionalEntries();
-        boolean isMaster = false;
-        if (src.getRecurrence().isPresent()) {
-            if (new MirakelQueryBuilder(mContext).and(Recurring.CHILD, Operation.EQ,
-                    src).count(MirakelInternalContentProvider.RECURRING_TW_URI) == 0) {
-                isMaster = true;
-            }
-        }
+        final boolean isMaster = relations.isMaster(src);
         final Pair<String, String> statusEnd = getStatus(src, isMaster);
         final String status = statusEnd.second;
         final String end = statusEnd.first;
@@ -109,145 +128,116 @@ public class TaskWarriorTaskSerializer implements JsonSerializer<Task> {
         default:
             break;
         }
-        String uuid = src.getUUID();
-        if (uuid.trim().isEmpty()) {
-            uuid = java.util.UUID.randomUUID().toString();
-            src.setUUID(uuid);
-            src.save(false);
+        out.beginObject();
+        if (!isOverridden(additionals, "uuid")) {
+            out.name("uuid").value(src.getUUID());
+        }
+        out.name("status").value(status);
+        if (!isOverridden(additionals, "entry")) {
+            out.name("entry").value(formatCalUTC(src.getCreatedAt()));
+        }
+        if (!isOverridden(additionals, "description")) {
+            out.name("description").value(src.getName());
         }
-        json.addProperty("uuid", uuid);
-        json.addProperty("status", status);
-        json.addProperty("entry", formatCalUTC(src.getCreatedAt()));
-        json.addProperty("description", src.getName());
-        if (src.getDue().isPresent()) {
-            json.addProperty("due", formatCalUTC(src.getDue().get()));
+        if (src.getDue().isPresent() && !isOverridden(additionals, "due")) {
+            out.name("due").value(formatCalUTC(src.getDue().get()));
         }
-        if (!src.containsAdditional(Task.NO_PROJECT)) {
-            json.addProperty("project", src.getList().getName());
+        if (!src.containsAdditional(Task.NO_PROJECT) && !isOverridden(additionals, "project")) {
+            out.name("project").value(src.getList().getName());
         }
         if (priority != null) {
-            json.addProperty("priority", priority);
-            if ("L".equals(priority) && (src.getPriority() != -2)) {
-                json.addProperty("priorityNumber", src.getPriority());
+            if (!isOverridden(additionals, "priority")) {
+                out.name("priority").value(priority);
             }
+            if ("L".equals(priority) && (src.getPriority() != -2)
+                && !isOverridden(additionals, "priorityNumber")) {
+                out.name("priorityNumber").value(src.getPriority());
+            }
+        }
+        if (!isOverridden(additionals, "modified")) {
+            out.name("modified").value(formatCalUTC(src.getUpdatedAt()));
         }
-        json.addProperty("modified", formatCalUTC(src.getUpdatedAt()));
-        if (src.getReminder().isPresent()) {
-            json.addProperty("reminder", formatCalUTC(src.getReminder().get()));
+        if (src.getReminder().isPresent() && !isOverridden(additionals, "reminder")) {
+            out.name("reminder").value(formatCalUTC(src.getReminder().get()));
         }
-        if (end != null) {
-            json.addProperty("end", end);
+        if ((end != null) && !isOverridden(additionals, "end")) {
+            out.name("end").value(end);
         }
-        if (src.getProgress() != 0) {
-            json.addProperty("progress", src.getProgress());
+        if ((src.getProgress() != 0) && !isOverridden(additionals, "progress")) {
+            out.name("progress").value(src.getProgress());
         }
         // Tags
-        if (!src.getTags().isEmpty()) {
-            final JsonArray tags = new JsonArray();
-            for (final Tag t : src.getTags()) {
+        final List<String> tags = relations.getTagNames(src);
+        if (!tags.isEmpty() && !isOverridden(additionals, "tags")) {
+            out.name("tags").beginArray();
+            for (final String tag : tags) {
                 // taskwarrior does not like whitespaces
-                tags.add(new JsonPrimitive(t.getName().trim().replace(" ", "_")));
+                out.value(tag.trim().replace(" ", "_"));
             }
-            json.add("tags", tags);
+            out.endArray();
         }
         // End Tags
         // Annotations
-        if (!src.getContent().isEmpty()) {
-            final JsonArray annotations = new JsonArray();
+        if (!src.getContent().isEmpty() && !isOverridden(additionals, "annotations")) {
+            out.name("annotations").beginArray();
             /*
              * An annotation in taskd is a line of content in Mirakel!
              */
             final String annotationsList[] = src.getContent().split("\n");
             final Calendar updatedAt = src.getUpdatedAt();
             for (final String a : annotationsList) {
-                final JsonObject line = new JsonObject();
-                line.addProperty("entry", formatCalUTC(src.getUpdatedAt()));
-                line.addProperty("description", a.replace("\n", ""));
-                annotations.add(line);
+                out.beginObject();
+                out.name("entry").value(formatCalUTC(src.getUpdatedAt()));
+                out.name("description").value(a.replace("\n", ""));
+                out.endObject();
                 updatedAt.add(Calendar.SECOND, 1);
             }
-            json.add("annotations", annotations);
+            out.endArray();
         }
         // Anotations end
         // TW.depends==Mirakel.subtasks!
         // Dependencies
-        if (src.countSubtasks() > 0L) {
-            boolean first1 = true;
-            final List<Task> subTasks = src.getSubtasks();
-            final StringBuilder depends = new StringBuilder(subTasks.size() * 10);
-            for (final Task subtask : subTasks) {
-                if (first1) {
-                    first1 = false;
-                } else {
-                    depends.append(',');
-                }
-                depends.append(subtask.getUUID());
-            }
-            json.addProperty("depends", depends.toString());
+        final List<String> subtasks = relations.getSubtaskUUIDs(src);
+        if (!subtasks.isEmpty() && !isOverridden(additionals, "depends")) {
+            out.name("depends").value(TextUtils.join(",", subtasks));
         }
         // recurring tasks must have a due
-        if (src.getRecurrence().isPresent() && src.getDue().isPresent()) {
-            handleRecurrence(json, src.getRecurrence().get());
+        final Optional<Recurring> recurrence = relations.getRecurrence(src);
+        if (recurrence.isPresent() && src.getDue().isPresent()) {
+            final Optional<String> recur = getRecur(recurrence.get());
+            if (recur.isPresent() && !isOverridden(additionals, "recur")) {
+                out.name("recur").value(recur.get());
+            }
             if (isMaster) {
-                final Cursor cursor = mContext.getContentResolver()
-                                      .query(MirakelInternalContentProvider.RECURRING_TW_URI,
-                                             new String[] { "child", "offsetCount" },
-                                             "parent=?", new String[] {String.valueOf(src.getId())},
-                                             "offsetCount ASC");
-                final StringBuilder mask = new StringBuilder(cursor.getCount());
-                cursor.moveToFirst();
-                if (cursor.getCount() > 0) {
-                    int oldOffset = -1;
-                    do {
-                        final int currentOffset = cursor.getInt(1);
-                        if (currentOffset <= oldOffset) {
-                            final long childId = cursor.getLong(0);
-                            // This should not happen – it means that one offset is twice in the DB
-                            final Optional<Task> child = Task.get(childId, true);
-                            if (child.isPresent()) {
-                                child.get().destroy(true);
-                            } else {
-                                // Whoa there is some garbage which we should destroy!
-                                Task.destroyRecurrenceGarbageForTask(childId);
-                            }
-                            continue;
-                        }
-                        while (++oldOffset < currentOffset) {
-                            mask.append('X');
-                        }
-                        final Optional<Task> child = Task.get(cursor.getLong(0));
-                        if (!child.isPresent()) {
-                            Log.wtf(TAG, "childtask is null");
-                            mask.append('X');
-                        } else {
-                            mask.append(getRecurrenceStatus(getStatus(child.get(),
-                                                            false).second));
-                        }
-                    } while (cursor.moveToNext());
+                final List<Pair<Optional<Task>, Integer>> childs = relations.getChilds(src);
+                final StringBuilder mask = new StringBuilder(childs.size());
+                int oldOffset = -1;
+                for (final Pair<Optional<Task>, Integer> child : childs) {
+                    while (++oldOffset < child.second) {
+                        mask.append('X');
+                    }
+                    if (child.first.isPresent()) {
+                        mask.append(getRecurrenceStatus(getStatus(child.first.get(),
+                                                        false).second));
+                    } else {
+                        mask.append('X');
+                    }
+                }
+                if (!isOverridden(additionals, "mask")) {
+                    out.name("mask").value(mask.toString());
                 }
-                cursor.close();
-                json.addProperty("mask", mask.toString());
             } else {
-                final Cursor cursor = mContext.getContentResolver()
-                                      .query(MirakelInternalContentProvider.RECURRING_TW_URI,
-                                             new String[] { "parent", "offsetCount" },
-                                             "child=?", new String[] {String.valueOf(src.getId())},
-                                             null);
-                cursor.moveToFirst();
-                if (cursor.getCount() > 0) {
-                    final Optional<Task> master = Task.get(cursor.getLong(0));
-                    if (!master.isPresent()) {
-                        // The parent is gone. This should not happen and we
-                        // should delete the child then
-                        src.destroy();
-                    } else {
-                        json.addProperty("parent", master.get().getUUID());
-                        json.addProperty("imask", cursor.getInt(1));
+                final Optional<Pair<Task, Integer>> master = relations.getMaster(src);
+                if (master.isPresent()) {
+                    if (!isOverridden(additionals, "parent")) {
+                        out.name("parent").value(master.get().first.getUUID());
+                    }
+                    if (!isOverridden(additionals, "imask")) {
+                        out.name("imask").value(master.get().second);
                     }
                 } else {
                     Log.wtf(TAG, "no master found, but there must be a master");
                 }
-                cursor.close();
             }
         }
         // end Dependencies
@@ -255,11 +245,11 @@ public class TaskWarriorTaskSerializer implements JsonSerializer<Task> {
         for (final Map.Entry<String, String> entry : additionals.entrySet()) {
             if (!entry.getKey().equals(Task.NO_PROJECT)
                 && !"status".equals(entry.getKey())) {
-                json.addProperty(entry.getKey(), cleanQuotes(entry.getValue()));
+                out.name(entry.getKey()).value(cleanQuotes(entry.getValue()));
             }
         }
         // end Additional Strings
-        return json;
+        out.endObject();
     }
 
     private static String getRecurrenceStatus(final String s) {
@@ -279,51 +269,55 @@ public class TaskWarriorTaskSerializer implements JsonSerializer<Task> {
         return "";
     }
 
-    public static void handleRecurrence(final JsonObject json, final Recurring r) {
+    /**
+     * Converts the recurrence to the taskwarrior format
+     *
+     * @return The recur value or absent if taskwarrior does not support it
+     */
+    @NonNull
+    public static Optional<String> getRecur(final Recurring r) {
         if (r == null) {
             Log.wtf(TAG, "recurring is null");
-            return;
+            return Optional.absent();
         }
         if (!r.getWeekdays().isEmpty()) {
             switch (r.getWeekdays().size()) {
             case 1:
-                json.addProperty("recur", "weekly");
-                return;
+                return Optional.of("weekly");
             case 7:
-                json.addProperty("recur", "daily");
-                return;
+                return Optional.of("daily");
             case 5:
                 final List<Integer> weekdays = r.getWeekdays();
                 for (Integer i = Calendar.MONDAY; i <= Calendar.FRIDAY; i++) {
                     if (!weekdays.contains(i)) {
                         Log.w(TAG, "unsupported recurrence");
-                        return;
+                        return Optional.absent();
                     }
                 }
-                json.addProperty("recur", "weekdays");
-                return;
+                return Optional.of("weekdays");
             default:
                 Log.w(TAG, "unsupported recurrence");
-                return;
+                return Optional.absent();
             }
         }
         long interval = r.getInterval() / (1000L * 60L);
         if (interval > 0L) {
             if (r.getMinutes() > 0) {
-                json.addProperty("recur", interval + "mins");
+                return Optional.of(interval + "mins");
             } else if (r.getHours() > 0) {
                 interval /= 60L;
-                json.addProperty("recur", interval + "hours");
+                return Optional.of(interval + "hours");
             } else if (r.getDays() > 0) {
                 interval /= 60L * 24L;
-                json.addProperty("recur", interval + "days");
+                return Optional.of(interval + "days");
             } else if (r.getMonths() > 0) {
                 interval /= 60L * 24L * 30L;
-                json.addProperty("recur", interval + "months");
+                return Optional.of(interval + "months");
             } else {
-                json.addProperty("recur", r.getYears() + "years");
+                return Optional.of(r.getYears() + "years");
             }
         }
+        return Optional.absent();
     }
 
     private Pair<String, String> getStatus(final Task task,
@@ -344,7 +338,7 @@ public class TaskWarriorTaskSerializer implements JsonSerializer<Task> {
             } else {
                 end = formatCal(now);
             }
-        } else if (task.getRecurrence().isPresent() && isMaster) {
+        } else if (isMaster) {
             status = "recurring";
         } else if (task.containsAdditional("status")) {
             status = cleanQuotes(task.getAdditionalString("status"));
@@ -1,7 +1,16 @@
 package de.azapps.mirakel.sync.taskwarrior.network_helper;
 
+import android.support.annotation.NonNull;
+
+import com.google.common.base.Charsets;
 import com.google.common.base.Optional;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.MalformedInputException;
 import java.util.HashMap;
 import java.util.Map;
@@ -10,10 +19,13 @@ import de.azapps.mirakel.DefinitionsHelper;
 
 public class Msg {
     private final Map<String, String> _header = new HashMap<>(5);
-    private String _payload;
+    /**
+     * The payload of a message to send, already encoded as UTF-8
+     */
+    private final ByteArrayOutputStream _payload = new ByteArrayOutputStream();
+    private BufferedReader _payloadReader = null;
 
     public Msg() {
-        this._payload = "";
         // All messages are marked with the version number, so that the messages
         // may be properly evaluated in context.
         this._header.put("client", "Mirakel " + DefinitionsHelper.VERSIONS_NAME);
@@ -21,7 +33,8 @@ public class Msg {
 
     public void clear() {
         this._header.clear();
-        this._payload = "";
+        this._payload.reset();
+        this._payloadReader = null;
     }
 
     public void set(final String key, final int value) {
@@ -37,7 +50,19 @@ public class Msg {
     }
 
     public void setPayload(final String payload) {
-        this._payload = payload;
+        this._payload.reset();
+        final byte[] utf8 = payload.getBytes(Charsets.UTF_8);
+        this._payload.write(utf8, 0, utf8.length);
+    }
+
+    /**
+     * Appends to the payload. The chars are encoded while they are written,
+     * so the payload is not held as string. Flush the writer before the
+     * message is sent.
+     */
+    @NonNull
+    public Writer getPayloadWriter() {
+        return new OutputStreamWriter(this._payload, Charsets.UTF_8);
     }
 
 
@@ -50,37 +75,81 @@ public class Msg {
     }
 
     public String getPayload() {
-        return this._payload;
+        return new String(this._payload.toByteArray(), Charsets.UTF_8);
     }
 
+    public void writePayloadTo(@NonNull final OutputStream out) throws IOException {
+        this._payload.writeTo(out);
+    }
 
-    public String serialize() {
-        final StringBuilder output = new StringBuilder();
+    @NonNull
+    private byte[] serializeHeader() {
+        final StringBuilder output = new StringBuilder(256);
         for (final Map.Entry<String, String> entry : this._header.entrySet()) {
-            output.append(entry.getKey() + ": " + entry.getValue() + '\n');
+            output.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
         }
-        output.append('\n' + this._payload + '\n');
-        return output.toString();
+        return output.append('\n').toString().getBytes(Charsets.UTF_8);
     }
 
-    public void parse(final String input) throws MalformedInputException {
-        this._header.clear();
-        this._payload = "";
-        final int separator = input.indexOf("\n\n");
-        if (separator == -1) {
-            throw new MalformedInputException(input.length());
-        }
-        // Parse header.
-        final String[] a = input.substring(0, separator).split("\n");
-        for (final String s : a) {
-            final int delimiter = s.indexOf(':');
+    /**
+     * @return The number of bytes written by {@link #writeTo(OutputStream)}
+     */
+    public int getSize() {
+        return serializeHeader().length + this._payload.size() + 1;
+    }
+
+    /**
+     * Writes the header, an empty line and the payload, the payload is
+     * copied straight from its buffer
+     */
+    public void writeTo(@NonNull final OutputStream out) throws IOException {
+        out.write(serializeHeader());
+        this._payload.writeTo(out);
+        out.write('\n');
+    }
+
+    /**
+     * Parses the header of a received message. The payload is not read here,
+     * use readPayloadLine() to stream it line by line.
+     */
+    public void parse(@NonNull final BufferedReader input) throws IOException,
+        MalformedInputException {
+        clear();
+        String line;
+        while (((line = input.readLine()) != null) && !line.isEmpty()) {
+            final int delimiter = line.indexOf(':');
             if (delimiter == -1) {
-                throw new MalformedInputException(s.length());
+                throw new MalformedInputException(line.length());
+            }
+            this._header.put(line.substring(0, delimiter)
+                             .trim(), line.substring(delimiter + 1).trim());
+        }
+        if (line == null) {
+            // there must be an empty line between header and payload
+            throw new MalformedInputException(0);
+        }
+        this._payloadReader = input;
+    }
+
+    /**
+     * Returns the next non empty line of the received payload
+     *
+     * @return The line or absent if the whole payload was read
+     */
+    @NonNull
+    public Optional<String> readPayloadLine() throws IOException {
+        if (this._payloadReader == null) {
+            return Optional.absent();
+        }
+        String line;
+        while ((line = this._payloadReader.readLine()) != null) {
+            line = line.trim();
+            if (!line.isEmpty()) {
+                return Optional.of(line);
             }
-            this._header.put(s.substring(0, delimiter)
-                             .trim(), s.substring(delimiter + 1).trim());
         }
-        this._payload = input.substring(separator + 2).trim();
+        this._payloadReader = null;
+        return Optional.absent();
     }
 
 }
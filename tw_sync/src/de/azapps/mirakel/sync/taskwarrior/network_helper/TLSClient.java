@@ -3,15 +3,22 @@ package de.azapps.mirakel.sync.taskwarrior.network_helper;
 import android.annotation.SuppressLint;
 import android.util.Base64;
 
+import com.google.common.base.Optional;
+import com.google.common.io.ByteStreams;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.StringBufferInputStream;
 import java.net.ConnectException;
 import java.net.InetSocketAddress;
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.nio.charset.MalformedInputException;
 import java.security.KeyFactory;
 import java.security.KeyManagementException;
 import java.security.KeyStore;
@@ -33,7 +40,6 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Scanner;
 
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
@@ -302,39 +308,45 @@ public class TLSClient {
     }
 
     // //////////////////////////////////////////////////////////////////////////////
-    public String recv() {
+    /**
+     * Receives a message. Only the header is parsed here, the payload is read
+     * from the socket while the caller consumes it with
+     * {@link Msg#readPayloadLine()}, so it never has to fit into memory at
+     * once. The connection must stay open until the payload is consumed.
+     */
+    public Optional<Msg> recv() {
         Log.i(TAG, "reveive data from " + this._socket.getLocalAddress() + ':'
               + this._socket.getLocalPort());
         if (!this._socket.isConnected()) {
             Log.e(TAG, "not connected");
-            return null;
+            return Optional.absent();
         }
         try {
-            final byte[] header = new byte[4];
-            this.in.read(header);
-            final Scanner scanner = new Scanner(this.in);
-            final Scanner s = scanner.useDelimiter("\\A");
-            final String result = s.hasNext() ? s.next() : "";
-            s.close();
-            scanner.close();
-            return result;
+            // the size includes the 4 bytes of the header
+            final int size = new DataInputStream(this.in).readInt();
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        ByteStreams.limit(this.in, Math.max(size - 4, 0)), "UTF-8"));
+            final Msg msg = new Msg();
+            msg.parse(reader);
+            return Optional.of(msg);
+        } catch (final MalformedInputException e) {
+            Log.e(TAG, "cannot parse message", e);
         } catch (final IOException e) {
             Log.e(TAG, "cannot read Inputstream", e);
         }
-        return null;
+        return Optional.absent();
     }
 
     // //////////////////////////////////////////////////////////////////////////////
-    public void send(final String data) {
+    public void send(final Msg msg) {
         final DataOutputStream dos = new DataOutputStream(out);
         if (!this._socket.isConnected()) {
             Log.e(TAG, "socket not connected");
             return;
         }
         try {
-            final byte[] utf8 = data.getBytes("UTF-8");
-            dos.writeInt(utf8.length);
-            dos.write(utf8);
+            dos.writeInt(msg.getSize());
+            msg.writeTo(dos);
         } catch (final IOException e) {
             Log.e(TAG, "cannot write data to outputstream", e);
         }
@@ -120,7 +120,10 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
                 if (accountMirakel.isPresent()) {
                     final TaskWarriorAccount taskWarriorAccount = new TaskWarriorAccount(accountMirakel.get(),
                             getContext());
-                    new TaskWarriorSync(this.mContext).sync(taskWarriorAccount, false);
+                    final TaskWarriorSync sync = new TaskWarriorSync(this.mContext);
+                    sync.sync(taskWarriorAccount, false);
+                    syncResult.stats.numUpdates += sync.getAppliedUpdates();
+                    syncResult.stats.numSkippedEntries += sync.getSkippedUpdates();
                 }
             } catch (final TaskWarriorSyncFailedException e) {
                 Log.e(TAG, "SyncError", e);
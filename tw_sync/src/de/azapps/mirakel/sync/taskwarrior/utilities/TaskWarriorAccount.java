@@ -35,6 +35,7 @@ import de.azapps.tools.Log;
 
 public class TaskWarriorAccount {
     private static final String TAG = "TaskwarriorAccount";
+    private static final String BUNDLE_LAST_ACKNOWLEDGED = "de.azapps.mirakel.last_acknowledged";
     @NonNull
     private final AccountMirakel accountMirakel;
     @NonNull
@@ -94,6 +95,31 @@ public class TaskWarriorAccount {
         accountMirakel.save();
     }
 
+    /**
+     * The point in time (unix timestamp in seconds) when the server
+     * acknowledged our changes the last time. It survives a reset of the sync
+     * key, so a recovery sync does not need to send all tasks.
+     */
+    @NonNull
+    public Optional<Long> getLastAcknowledged() {
+        final String lastAcknowledged = this.accountManager.getUserData(this.account,
+                                        BUNDLE_LAST_ACKNOWLEDGED);
+        if (lastAcknowledged == null) {
+            return Optional.absent();
+        }
+        try {
+            return Optional.of(Long.parseLong(lastAcknowledged));
+        } catch (final NumberFormatException e) {
+            Log.w(TAG, "cannot parse last acknowledged sync", e);
+            return Optional.absent();
+        }
+    }
+
+    public void setLastAcknowledged(final long lastAcknowledged) {
+        this.accountManager.setUserData(this.account, BUNDLE_LAST_ACKNOWLEDGED,
+                                        String.valueOf(lastAcknowledged));
+    }
+
     public String getUser() {
         return this.account.name;
     }
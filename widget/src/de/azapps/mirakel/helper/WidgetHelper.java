@@ -18,52 +18,29 @@
  ******************************************************************************/
 package de.azapps.mirakel.helper;
 
-import android.app.PendingIntent;
 import android.content.Context;
-import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.Editor;
 import android.graphics.Bitmap;
 import android.graphics.Bitmap.Config;
 import android.graphics.Canvas;
 import android.graphics.drawable.GradientDrawable;
-import android.net.Uri;
 import android.os.Build;
-import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.view.View;
 import android.widget.RemoteViews;
 
 import com.google.common.base.Optional;
 
-import de.azapps.mirakel.DefinitionsHelper;
 import de.azapps.mirakel.model.list.ListMirakel;
 import de.azapps.mirakel.model.list.SpecialList;
-import de.azapps.mirakel.model.task.Task;
 import de.azapps.mirakel.widget.R;
+import de.azapps.mirakel.widget.WidgetTaskRow;
 
 public class WidgetHelper {
     public static RemoteViews configureItem(final RemoteViews rv,
-                                            final Task task, final Context context, final long listId,
+                                            final WidgetTaskRow task, final Context context, final long listId,
                                             final boolean isMinimal, final int widgetId) {
-
-        final Optional<Class<?>> main = Helpers.getMainActivity();
-        if (!main.isPresent()) {
-            return null;
-        }
-        final Intent openIntent = new Intent(context, main.get());
-
-
-        openIntent.setAction(DefinitionsHelper.SHOW_TASK);
-        final Bundle wrapper = new Bundle();
-        wrapper.putParcelable(DefinitionsHelper.EXTRA_TASK, task);
-        openIntent.putExtra(DefinitionsHelper.BUNDLE_WRAPPER, wrapper);
-        openIntent
-        .setData(Uri.parse(openIntent.toUri(Intent.URI_INTENT_SCHEME)));
-        final PendingIntent pOpenIntent = PendingIntent.getActivity(context, 0,
-                                          openIntent, 0);
-        rv.setOnClickPendingIntent(R.id.tasks_row, pOpenIntent);
-        rv.setOnClickPendingIntent(R.id.tasks_row_name, pOpenIntent);
         if (isMinimal) {
             if (task.getDue().isPresent()) {
                 rv.setViewVisibility(R.id.tasks_row_due, View.VISIBLE);
@@ -105,13 +82,11 @@ public class WidgetHelper {
             rv.setImageViewBitmap(R.id.label_bg, bitmap);
             if (listId <= 0L) {
                 rv.setViewVisibility(R.id.tasks_row_list_name, View.VISIBLE);
-                rv.setTextViewText(R.id.tasks_row_list_name, task.getList()
-                                   .getName());
+                rv.setTextViewText(R.id.tasks_row_list_name, task.getListName());
             } else {
                 rv.setViewVisibility(R.id.tasks_row_list_name, View.GONE);
             }
-            if ((!task.getContent().isEmpty()) || (task.countSubtasks() > 0L)
-                || (!task.getFiles().isEmpty())) {
+            if (task.hasContent()) {
                 rv.setViewVisibility(R.id.tasks_row_has_content, View.VISIBLE);
             } else {
                 rv.setViewVisibility(R.id.tasks_row_has_content, View.GONE);
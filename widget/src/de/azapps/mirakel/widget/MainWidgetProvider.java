@@ -49,7 +49,7 @@ import de.azapps.mirakel.model.task.Task;
 public class MainWidgetProvider extends AppWidgetProvider {
     private static final String TAG = "MainWidgetProvider";
     public static final String CLICK_TASK = "de.azapps.mirakel.CLICK_TASK",
-                               EXTRA_TASK = "de.azapps.mirakel.WIDGET.EXTRA_TASK",
+                               EXTRA_TASK_ID = "de.azapps.mirakel.WIDGET.EXTRA_TASK_ID",
                                EXTRA_WIDGET_LAYOUT = "de.azapps.mirakel.EXTRA_WIDGET_LAYOUT",
                                EXTRA_WIDGET_ID = "de.azapps.mirakel.EXTRA_WIDGET_ID";
 
@@ -227,15 +227,16 @@ public class MainWidgetProvider extends AppWidgetProvider {
     @Override
     public void onReceive(@NonNull final Context context, @NonNull final Intent intent) {
         if (CLICK_TASK.equals(intent.getAction())) {
-            final Task task = intent.getBundleExtra(DefinitionsHelper.BUNDLE_WRAPPER).getParcelable(EXTRA_TASK);
+            final long taskId = intent.getBundleExtra(DefinitionsHelper.BUNDLE_WRAPPER).getLong(EXTRA_TASK_ID);
+            final Optional<Task> task = Task.get(taskId);
             final Optional<Class<?>> main = Helpers.getMainActivity();
-            if (!main.isPresent()) {
+            if (!main.isPresent() || !task.isPresent()) {
                 return;
             }
 
             final Intent startMainIntent = new Intent(context, main.get());
             startMainIntent.setAction(DefinitionsHelper.SHOW_TASK_FROM_WIDGET);
-            startMainIntent.putExtra(DefinitionsHelper.EXTRA_TASK, task);
+            startMainIntent.putExtra(DefinitionsHelper.EXTRA_TASK, task.get());
             startMainIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
             startMainIntent.setData(Uri.parse(startMainIntent
                                               .toUri(Intent.URI_INTENT_SCHEME)));
@@ -18,6 +18,8 @@
  ******************************************************************************/
 package de.azapps.mirakel.widget;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import android.annotation.TargetApi;
@@ -28,14 +30,20 @@ import android.content.Intent;
 import android.os.Binder;
 import android.os.Build;
 import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.util.Log;
 import android.widget.RemoteViews;
 import android.widget.RemoteViewsService;
 
 import de.azapps.mirakel.DefinitionsHelper;
 import de.azapps.mirakel.helper.WidgetHelper;
+import de.azapps.mirakel.model.MirakelInternalContentProvider;
 import de.azapps.mirakel.model.list.ListMirakel;
+import de.azapps.mirakel.model.list.ListMirakel.SORT_BY;
+import de.azapps.mirakel.model.list.ListResolver;
 import de.azapps.mirakel.model.task.Task;
+import de.azapps.mirakel.model.task.TaskRow;
 
 @TargetApi(Build.VERSION_CODES.HONEYCOMB)
 public class MainWidgetService extends RemoteViewsService {
@@ -50,14 +58,28 @@ public class MainWidgetService extends RemoteViewsService {
 
 }
 
+/**
+ * The factory keeps a snapshot of the rows of the widget. The snapshot is only
+ * rebuilt in onDataSetChanged and only if the database, the list or the
+ * settings of the widget changed since the last one, or if the query of a
+ * date-based list moved on (e.g. "Today" after midnight).
+ */
 @TargetApi(Build.VERSION_CODES.HONEYCOMB)
 class MainWidgetViewsFactory implements RemoteViewsService.RemoteViewsFactory {
 
     private static final String TAG = "MainWidgetViewsFactory";
     private final Context mContext;
-    private List<Task> tasks;
+    @NonNull
+    private List<WidgetTaskRow> rows = Collections.emptyList();
     private final int widgetId;
     private ListMirakel list;
+    // what the snapshot was created from
+    private long snapshotVersion = -1L;
+    private long snapshotListId;
+    @Nullable
+    private SORT_BY snapshotSorting;
+    private boolean snapshotShowDone;
+    private long snapshotValidUntil = 0L;
 
     public MainWidgetViewsFactory(final Context context, final Intent intent) {
         if (intent.getIntExtra(MainWidgetProvider.EXTRA_WIDGET_LAYOUT,
@@ -80,8 +102,27 @@ class MainWidgetViewsFactory implements RemoteViewsService.RemoteViewsFactory {
     private void updateList() {
         final long identityToken = Binder.clearCallingIdentity();
         this.list = WidgetHelper.getList(this.mContext, this.widgetId);
+        final SORT_BY sorting = this.list.getSortBy();
+        final boolean showDone = WidgetHelper.showDone(this.mContext, this.widgetId);
+        // read the version before the tasks, a write in between only causes another refresh
+        final long version = MirakelInternalContentProvider.getDataVersion();
+        if ((version != this.snapshotVersion) || (this.list.getId() != this.snapshotListId)
+            || (sorting != this.snapshotSorting) || (showDone != this.snapshotShowDone)
+            || (System.currentTimeMillis() >= this.snapshotValidUntil)) {
+            this.snapshotValidUntil = this.list.getQueryValidUntil();
+            final List<TaskRow> tasks = Task.getTaskRows(this.list, sorting, showDone);
+            final List<WidgetTaskRow> newRows = new ArrayList<>(tasks.size());
+            final ListResolver lists = new ListResolver();
+            for (final TaskRow task : tasks) {
+                newRows.add(WidgetTaskRow.from(task, lists.get(task.getListId()).getName()));
+            }
+            this.rows = Collections.unmodifiableList(newRows);
+            this.snapshotVersion = version;
+            this.snapshotListId = this.list.getId();
+            this.snapshotSorting = sorting;
+            this.snapshotShowDone = showDone;
+        }
         Binder.restoreCallingIdentity(identityToken);
-        getCount();
     }
 
     @Override
@@ -91,22 +132,16 @@ class MainWidgetViewsFactory implements RemoteViewsService.RemoteViewsFactory {
 
     @Override
     public int getCount() {
-        final long identityToken = Binder.clearCallingIdentity();
-        // get the tasks here because sometimes this returns a wrong value, if
-        // the count is not refreshed
-        this.tasks = Task.getTasks(this.list, this.list.getSortBy(),
-                                   WidgetHelper.showDone(this.mContext, this.widgetId));
-        Binder.restoreCallingIdentity(identityToken);
-        return this.tasks.size();
+        return this.rows.size();
     }
 
     @Override
     public RemoteViews getViewAt(final int position) {
-        if (position >= this.tasks.size()) {
+        if (position >= this.rows.size()) {
             Log.w(TAG, "wrong position");
             return null;
         }
-        final Task task = this.tasks.get(position);
+        final WidgetTaskRow task = this.rows.get(position);
         // Get The Task
         final boolean isMinimalistic = WidgetHelper.isMinimalistic(
                                            this.mContext, this.widgetId);
@@ -121,8 +156,8 @@ class MainWidgetViewsFactory implements RemoteViewsService.RemoteViewsFactory {
         // the Service
         final Intent fillInIntent = new Intent(MainWidgetProvider.CLICK_TASK);
         final Bundle b = new Bundle();
-        b.putParcelable(MainWidgetProvider.EXTRA_TASK, task);
-        // dirty workaround to pass parcelables in pending intents
+        b.putLong(MainWidgetProvider.EXTRA_TASK_ID, task.getId());
+        // dirty workaround to pass extras in pending intents
         fillInIntent.putExtra(DefinitionsHelper.BUNDLE_WRAPPER, b);
         rv.setOnClickFillInIntent(R.id.tasks_row, fillInIntent);
         return rv;
@@ -141,12 +176,12 @@ class MainWidgetViewsFactory implements RemoteViewsService.RemoteViewsFactory {
 
     @Override
     public long getItemId(final int position) {
-        return position;
+        return this.rows.get(position).getId();
     }
 
     @Override
     public boolean hasStableIds() {
-        return false;
+        return true;
     }
 
     @Override
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Mirakel is an Android App for managing your ToDo-Lists
+ *
+ * Copyright (c) 2013-2014 Anatolij Zelenin, Georg Semmler.
+ *
+ *     This program is free software: you can redistribute it and/or modify
+ *     it under the terms of the GNU General Public License as published by
+ *     the Free Software Foundation, either version 3 of the License, or
+ *     any later version.
+ *
+ *     This program is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *     GNU General Public License for more details.
+ *
+ *     You should have received a copy of the GNU General Public License
+ *     along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+
+package de.azapps.mirakel.widget;
+
+import android.support.annotation.NonNull;
+
+import com.google.common.base.Optional;
+
+import java.util.Calendar;
+
+import de.azapps.mirakel.model.task.TaskRow;
+
+/**
+ * The part of a task the widget shows in one row.
+ *
+ * The rows are created once per refresh of the widget, so drawing a row does
+ * not touch the database anymore. The rows never change after creation.
+ */
+public final class WidgetTaskRow {
+    private final long id;
+    @NonNull
+    private final String name;
+    @NonNull
+    private final Optional<Calendar> due;
+    private final int priority;
+    private final boolean done;
+    @NonNull
+    private final String listName;
+    private final boolean hasContent;
+
+    private WidgetTaskRow(final long id, @NonNull final String name,
+                          @NonNull final Optional<Calendar> due, final int priority, final boolean done,
+                          @NonNull final String listName, final boolean hasContent) {
+        this.id = id;
+        this.name = name;
+        this.due = due;
+        this.priority = priority;
+        this.done = done;
+        this.listName = listName;
+        this.hasContent = hasContent;
+    }
+
+    @NonNull
+    public static WidgetTaskRow from(@NonNull final TaskRow row, @NonNull final String listName) {
+        return new WidgetTaskRow(row.getId(), row.getName(), row.getDue(), row.getPriority(), row.isDone(),
+                                 listName, row.hasContent());
+    }
+
+    public long getId() {
+        return this.id;
+    }
+
+    @NonNull
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return The due date, do not modify it
+     */
+    @NonNull
+    public Optional<Calendar> getDue() {
+        return this.due;
+    }
+
+    public int getPriority() {
+        return this.priority;
+    }
+
+    public boolean isDone() {
+        return this.done;
+    }
+
+    @NonNull
+    public String getListName() {
+        return this.listName;
+    }
+
+    public boolean hasContent() {
+        return this.hasContent;
+    }
+}